@@ -223,6 +223,11 @@ bool Display::addImage(const Image& img) {
 int Display::writeImagesToEEPROM() {
   int address = 0;
   
+  // Refuse to write past the end of the EEPROM
+  if (sizeof(int) + (unsigned int)imageCount * sizeof(Image) > EEPROM.length()) {
+    return -1;
+  }
+  
   // Write the image count first
   EEPROM.put(address, imageCount);
   address += sizeof(int);
@@ -245,7 +250,8 @@ bool Display::readImagesFromEEPROM() {
   address += sizeof(int);
   
   // Validate the count
-  if (readCount < 0 || readCount > MAX_IMAGES) {
+  if (readCount < 0 || readCount > MAX_IMAGES ||
+      sizeof(int) + (unsigned int)readCount * sizeof(Image) > EEPROM.length()) {
     imageCount = 0;
     return false; // Invalid count
   }
@@ -264,24 +270,41 @@ bool Display::readImagesFromEEPROM() {
   return true; // Successfully read
 }
 
+// Integer interpolation of one colour channel: floor(start + (end - start) * offset / span).
+// proportion is offset / span in Q16, rounded down; the remainder check corrects its rounding
+// error so the result is exact. Specified by FixedPointKernel in the Java project.
+static uint8_t interpolateColor(uint8_t start, uint8_t end, long offset, long span, long proportion) {
+  if (span == 0) {
+    return end;
+  }
+  long diff = (long)end - (long)start;
+  long step = (diff * proportion) >> 16;
+  long remainder = diff * offset - step * span;
+  while (remainder < 0) {
+    step--;
+    remainder += span;
+  }
+  while (remainder >= span) {
+    step++;
+    remainder -= span;
+  }
+  return (uint8_t)(start + step);
+}
+
 void Display::calculateColors(int rpm, const Image& img, ColorResult& result) {
   // Clamp RPM to the image's RPM range
   if (rpm < img.startRPM) rpm = img.startRPM;
   if (rpm > img.endRPM) rpm = img.endRPM;
   
-  // Calculate proportion (0.0 to 1.0) based on RPM between startRPM and endRPM
-  float proportion = 0.0;
-  if (img.endRPM != img.startRPM) {
-    proportion = (float)(rpm - img.startRPM) / (float)(img.endRPM - img.startRPM);
-  } else {
-    // If startRPM == endRPM, use proportion 1.0 (end color)
-    proportion = 1.0;
-  }
+  // Proportion (0 to 65536) of RPM between startRPM and endRPM, without float
+  long offset = (long)rpm - img.startRPM;
+  long span = (long)img.endRPM - img.startRPM;
+  long proportion = (span != 0) ? (offset << 16) / span : 65536L;
   
   // Interpolate color values
-  uint8_t calculatedRed = (uint8_t)(img.startRed + (img.endRed - img.startRed) * proportion);
-  uint8_t calculatedGreen = (uint8_t)(img.startGreen + (img.endGreen - img.startGreen) * proportion);
-  uint8_t calculatedBlue = (uint8_t)(img.startBlue + (img.endBlue - img.startBlue) * proportion);
+  uint8_t calculatedRed = interpolateColor(img.startRed, img.endRed, offset, span, proportion);
+  uint8_t calculatedGreen = interpolateColor(img.startGreen, img.endGreen, offset, span, proportion);
+  uint8_t calculatedBlue = interpolateColor(img.startBlue, img.endBlue, offset, span, proportion);
   
   // Extract blink rate from bits 14-15
   uint8_t blinkRateValue = (uint8_t)((img.bitmask >> 14) & 0x3);
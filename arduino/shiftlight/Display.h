@@ -45,7 +45,7 @@ class Display {
 
   public:
     Display(Adafruit_NeoPixel* strip);
-    int writeImagesToEEPROM();
+    int writeImagesToEEPROM();  // Returns the number of images written, or -1 if they don't fit in EEPROM
     bool readImagesFromEEPROM();
     void processRPM(int rpm);
     bool addImageFromString(const char* csvString);
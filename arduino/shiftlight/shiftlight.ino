@@ -229,7 +229,12 @@ void loop() {
       if (readingImages) {
         int imagesWritten = display.writeImagesToEEPROM();
         readingImages = false;
-        Serial.println("OK");
+        if (imagesWritten < 0) {
+          Serial.print(ERROR_PREFIX);
+          Serial.println("Program does not fit in EEPROM");
+        } else {
+          Serial.println("OK");
+        }
         //Serial.print(" wrote ");
         //Serial.print(imagesWritten);
         //Serial.println(" rows");
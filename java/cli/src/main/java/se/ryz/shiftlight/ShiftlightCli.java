@@ -0,0 +1,525 @@
+package se.ryz.shiftlight;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line interface for headless machines such as a flashing station. It never
+ * touches AWT or Swing, so it starts quickly and runs without a display.
+ * <p>
+ * Results go to stdout, as text or, with --json, as one JSON object; log output of the
+ * device protocol goes to stderr. The exit code tells scripts what happened, see the
+ * EXIT_ constants.
+ */
+public class ShiftlightCli {
+    public static final int EXIT_OK = 0;
+    /** The animation has invalid rows or variables, or doesn't fit on the device. */
+    public static final int EXIT_INVALID = 1;
+    public static final int EXIT_USAGE = 2;
+    /** The animation file can't be read. */
+    public static final int EXIT_FILE_ERROR = 3;
+    /** The port can't be opened or the device didn't answer as expected. */
+    public static final int EXIT_DEVICE_ERROR = 4;
+
+    private static final String USAGE = String.join("\n",
+        "Usage: shiftlight-cli [--json] <command> [options]",
+        "",
+        "Commands:",
+        "  validate FILE                    Check every row and the variables of an animation file",
+        "  compile [--device BOARD] FILE    Print the program that would be uploaded",
+        "  program --port PORT [--device BOARD] FILE",
+        "                                   Upload an animation file to a device",
+        "  list --port PORT                 Print the program stored on a device",
+        "  rpm --port PORT RPM              Send one RPM",
+        "  rpm --port PORT --sweep          Sweep the RPM up and down once",
+        "      [--from RPM] [--to RPM] [--step RPM] [--interval-ms MS]",
+        "  ports                            List serial ports",
+        "",
+        "PORT is a system port name, or " + EmulatorTransport.PORT_NAME + " for the built-in firmware emulator.",
+        "BOARD is one of " + boardIds() + ", the default is " + DeviceProfile.DEFAULT.getId() + ".",
+        "Exit codes: 0 ok, 1 invalid animation, 2 usage, 3 file error, 4 device error");
+
+    private final PrintStream out;
+    private final boolean json;
+    private final Map<String, Object> result;
+
+    private ShiftlightCli(PrintStream out, boolean json) {
+        this.out = out;
+        this.json = json;
+        this.result = new LinkedHashMap<>();
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @param args the command line
+     * @param out where to print results
+     * @return the exit code
+     */
+    public static int run(String[] args, PrintStream out) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        boolean json = arguments.remove("--json");
+        ShiftlightCli cli = new ShiftlightCli(out, json);
+        if (arguments.isEmpty() || arguments.contains("--help") || arguments.contains("-h")) {
+            out.println(USAGE);
+            return arguments.isEmpty() ? EXIT_USAGE : EXIT_OK;
+        }
+        String command = arguments.remove(0);
+        cli.result.put("command", command);
+        int exitCode;
+        try {
+            Options options = Options.parse(arguments);
+            switch (command) {
+                case "validate":
+                    exitCode = cli.validate(options);
+                    break;
+                case "compile":
+                    exitCode = cli.compile(options);
+                    break;
+                case "program":
+                    exitCode = cli.program(options);
+                    break;
+                case "list":
+                    exitCode = cli.list(options);
+                    break;
+                case "rpm":
+                    exitCode = cli.rpm(options);
+                    break;
+                case "ports":
+                    exitCode = cli.ports(options);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + command);
+            }
+        } catch (IllegalArgumentException e) {
+            exitCode = cli.fail(EXIT_USAGE, json ? e.getMessage() : e.getMessage() + "\n\n" + USAGE);
+        } catch (ProtocolException e) {
+            exitCode = cli.fail(EXIT_DEVICE_ERROR, e.getMessage());
+        } catch (IOException e) {
+            exitCode = cli.fail(EXIT_DEVICE_ERROR, e.getMessage());
+        }
+        if (json) {
+            cli.result.put("exitCode", exitCode);
+            out.println(Json.format(cli.result));
+        }
+        return exitCode;
+    }
+
+    private int validate(Options options) {
+        AnimationDocument document = loadDocument(options.singleFile());
+        if (document == null) {
+            return EXIT_FILE_ERROR;
+        }
+        List<Map<String, Object>> errors = collectErrors(document);
+        result.put("valid", errors.isEmpty());
+        result.put("rows", document.size());
+        result.put("errors", errors);
+        if (!json) {
+            for (Map<String, Object> error : errors) {
+                out.println(error.containsKey("row") ? "Row " + error.get("row") + ": " + error.get("error") : error.get("error"));
+            }
+            out.println(errors.isEmpty() ? "Valid, " + document.getCompiledImages().size() + " images" : errors.size() + " errors");
+        }
+        return errors.isEmpty() ? EXIT_OK : EXIT_INVALID;
+    }
+
+    private int compile(Options options) {
+        DeviceProgram deviceProgram = loadProgram(options.singleFile(), options.deviceProfile());
+        if (deviceProgram == null) {
+            return result.containsKey("errors") ? EXIT_INVALID : EXIT_FILE_ERROR;
+        }
+        String program = deviceProgram.getProgramOutput();
+        result.put("program", List.of(program.split("\n")));
+        if (!json) {
+            out.println(program);
+        }
+        return EXIT_OK;
+    }
+
+    private int program(Options options) throws IOException {
+        String port = options.requirePort();
+        DeviceProgram deviceProgram = loadProgram(options.singleFile(), options.deviceProfile());
+        if (deviceProgram == null) {
+            return result.containsKey("errors") ? EXIT_INVALID : EXIT_FILE_ERROR;
+        }
+        String program = deviceProgram.getProgramOutput();
+        result.put("port", port);
+        try (DeviceClient device = openDevice(port, options)) {
+            device.hello();
+            device.program(program);
+            ProtocolTimingStats stats = device.getTimingStats();
+            result.put("commands", stats.getCommandCount());
+            result.put("elapsedMillis", Math.round(stats.getElapsedMillis()));
+            if (!json) {
+                out.println("Programmed " + port + ": " + stats.describe());
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private int list(Options options) throws IOException {
+        options.noFiles();
+        String port = options.requirePort();
+        result.put("port", port);
+        try (DeviceClient device = openDevice(port, options)) {
+            List<String> images = device.list();
+            result.put("images", images);
+            if (!json) {
+                images.forEach(out::println);
+            }
+        }
+        return EXIT_OK;
+    }
+
+    private int rpm(Options options) throws IOException {
+        String port = options.requirePort();
+        List<Integer> values = new ArrayList<>();
+        if (options.sweep) {
+            options.noFiles();
+            if (options.step <= 0 || options.from > options.to) {
+                throw new IllegalArgumentException("Sweep needs --from <= --to and a positive --step");
+            }
+            for (int rpm = options.from; rpm <= options.to; rpm += options.step) {
+                values.add(rpm);
+            }
+            for (int i = values.size() - 2; i >= 0; i--) {
+                values.add(values.get(i));
+            }
+        } else {
+            values.add(parseInt("RPM", options.singleFile()));
+        }
+        for (int rpm : values) {
+            if (rpm < 0 || rpm > RenderEngine.MAX_RPM) {
+                throw new IllegalArgumentException("RPM must be between 0 and " + RenderEngine.MAX_RPM + ": " + rpm);
+            }
+        }
+        result.put("port", port);
+        try (DeviceClient device = openDevice(port, options)) {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    sleep(options.intervalMillis);
+                }
+                device.sendRpm(values.get(i));
+            }
+        }
+        result.put("sent", values.size());
+        if (!json) {
+            out.println("Sent " + values.size() + " RPM values to " + port);
+        }
+        return EXIT_OK;
+    }
+
+    private int ports(Options options) {
+        options.noFiles();
+        List<String> names = SerialTransport.getPortNames();
+        result.put("ports", names);
+        if (!json) {
+            names.forEach(out::println);
+        }
+        return EXIT_OK;
+    }
+
+    private static String boardIds() {
+        List<String> ids = new ArrayList<>();
+        for (DeviceProfile profile : DeviceProfile.getBuiltInProfiles()) {
+            ids.add(profile.getId());
+        }
+        return String.join(", ", ids);
+    }
+
+    /**
+     * Opens a device and waits for READY, logging its progress to stderr.
+     */
+    private static DeviceClient openDevice(String port, Options options) throws IOException {
+        DeviceClient device = DeviceClient.open(SerialTransport.forPortName(port), options.baudRate());
+        device.setLog(System.err::println);
+        return device;
+    }
+
+    /**
+     * Loads a document, builds its program and checks that it is valid and fits on the device.
+     *
+     * @return the program, or null after reporting why it can't be used
+     */
+    private DeviceProgram loadProgram(String path, DeviceProfile profile) {
+        AnimationDocument document = loadDocument(path);
+        if (document == null) {
+            return null;
+        }
+        List<Map<String, Object>> errors = collectErrors(document);
+        DeviceProgram program = null;
+        if (errors.isEmpty()) {
+            program = document.buildProgram();
+            FootprintPlanner.Footprint footprint = new FootprintPlanner(profile).plan(program.getImageCount());
+            result.put("device", profile.getBoard());
+            result.put("imageCount", footprint.getImageCount());
+            result.put("bytesUsed", footprint.getBytesUsed());
+            if (!footprint.fits()) {
+                errors.add(error(null, footprint.getOverflowReason()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            result.put("errors", errors);
+            for (Map<String, Object> error : errors) {
+                fail(EXIT_INVALID, error.containsKey("row") ? "Row " + error.get("row") + ": " + error.get("error") : (String) error.get("error"));
+            }
+            return null;
+        }
+        return program;
+    }
+
+    private AnimationDocument loadDocument(String path) {
+        result.put("file", path);
+        AnimationFile file;
+        try {
+            file = AnimationFile.load(new File(path));
+        } catch (IOException e) {
+            fail(EXIT_FILE_ERROR, "Can't read " + path + ": " + e.getMessage());
+            return null;
+        }
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(file.getVariablesText());
+        for (String csvLine : file.getCsvLines()) {
+            document.addRow(csvLine);
+        }
+        document.compileStaleRows();
+        return document;
+    }
+
+    private static List<Map<String, Object>> collectErrors(AnimationDocument document) {
+        List<Map<String, Object>> errors = new ArrayList<>();
+        if (document.getVariablesError() != null) {
+            errors.add(error(null, "Variables: " + document.getVariablesError()));
+        }
+        List<DocumentRow> rows = document.getRows();
+        boolean hasImages = false;
+        for (int i = 0; i < rows.size(); i++) {
+            DocumentRow row = rows.get(i);
+            if (row.isEmpty()) {
+                continue;
+            }
+            if (row.getResult().isValid()) {
+                hasImages = true;
+            } else {
+                errors.add(error(i + 1, row.getResult().getError()));
+            }
+        }
+        if (!hasImages && errors.isEmpty()) {
+            errors.add(error(null, "The animation has no rows"));
+        }
+        return errors;
+    }
+
+    private static Map<String, Object> error(Integer row, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        if (row != null) {
+            error.put("row", row);
+        }
+        error.put("error", message);
+        return error;
+    }
+
+    private int fail(int exitCode, String message) {
+        if (json) {
+            result.putIfAbsent("error", message);
+        } else {
+            System.err.println(message);
+        }
+        return exitCode;
+    }
+
+    private static void sleep(int millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+    }
+
+    /**
+     * The options and positional arguments after the command.
+     */
+    private static class Options {
+        private final List<String> files = new ArrayList<>();
+        private String port;
+        private Integer baudRate;
+        private String device;
+        private boolean sweep;
+        private int from = 0;
+        private int to = RenderEngine.MAX_RPM;
+        private int step = 100;
+        private int intervalMillis = 20;
+
+        static Options parse(List<String> arguments) {
+            Options options = new Options();
+            for (int i = 0; i < arguments.size(); i++) {
+                String argument = arguments.get(i);
+                switch (argument) {
+                    case "--sweep":
+                        options.sweep = true;
+                        break;
+                    case "--port":
+                        options.port = value(arguments, ++i, argument);
+                        break;
+                    case "--device":
+                        options.device = value(arguments, ++i, argument);
+                        break;
+                    case "--baud":
+                        options.baudRate = parseInt(argument, value(arguments, ++i, argument));
+                        break;
+                    case "--from":
+                        options.from = parseInt(argument, value(arguments, ++i, argument));
+                        break;
+                    case "--to":
+                        options.to = parseInt(argument, value(arguments, ++i, argument));
+                        break;
+                    case "--step":
+                        options.step = parseInt(argument, value(arguments, ++i, argument));
+                        break;
+                    case "--interval-ms":
+                        options.intervalMillis = parseInt(argument, value(arguments, ++i, argument));
+                        break;
+                    default:
+                        if (argument.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + argument);
+                        }
+                        options.files.add(argument);
+                }
+            }
+            return options;
+        }
+
+        private static String value(List<String> arguments, int index, String option) {
+            if (index >= arguments.size()) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return arguments.get(index);
+        }
+
+        String singleFile() {
+            if (files.size() != 1) {
+                throw new IllegalArgumentException("Expected one argument, got " + files.size());
+            }
+            return files.get(0);
+        }
+
+        void noFiles() {
+            if (!files.isEmpty()) {
+                throw new IllegalArgumentException("Unexpected argument: " + files.get(0));
+            }
+        }
+
+        String requirePort() {
+            if (port == null) {
+                throw new IllegalArgumentException("--port is required");
+            }
+            return port;
+        }
+
+        int baudRate() {
+            return baudRate != null ? baudRate : DeviceClient.BAUD_RATE;
+        }
+
+        /**
+         * Finds the built-in profile whose id is the --device value.
+         */
+        DeviceProfile deviceProfile() {
+            return device != null ? DeviceProfile.forId(device) : DeviceProfile.DEFAULT;
+        }
+    }
+
+    /**
+     * Formats maps, lists, strings, numbers, booleans and null as JSON.
+     */
+    static final class Json {
+        private Json() {
+        }
+
+        static String format(Object value) {
+            StringBuilder sb = new StringBuilder();
+            append(sb, value);
+            return sb.toString();
+        }
+
+        private static void append(StringBuilder sb, Object value) {
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                sb.append(value);
+            } else if (value instanceof Map) {
+                sb.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    appendString(sb, String.valueOf(entry.getKey()));
+                    sb.append(':');
+                    append(sb, entry.getValue());
+                }
+                sb.append('}');
+            } else if (value instanceof List) {
+                sb.append('[');
+                boolean first = true;
+                for (Object element : (List<?>) value) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    append(sb, element);
+                }
+                sb.append(']');
+            } else {
+                appendString(sb, value.toString());
+            }
+        }
+
+        private static void appendString(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShiftlightCliTest {
+    private static final List<String> VARIABLES = List.of("idle=900");
+    private static final List<String> ROWS = List.of(
+        "[1-13],0,idle+4099,0,0,40,0,0,255,0",
+        "[12,13],idle+4100,9999,255,0,0,255,0,0,2,50");
+
+    @TempDir
+    Path directory;
+
+    private String output;
+
+    private int run(String... args) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int exitCode = ShiftlightCli.run(args, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        output = bytes.toString(StandardCharsets.UTF_8).trim();
+        return exitCode;
+    }
+
+    private String write(String name, List<String> rows) throws IOException {
+        File file = directory.resolve(name).toFile();
+        new AnimationFile(VARIABLES, rows).save(file);
+        return file.getPath();
+    }
+
+    @Test
+    void validatesAValidAnimation() throws IOException {
+        assertEquals(0, run("validate", write("valid.txt", ROWS)));
+        assertEquals("Valid, 2 images", output);
+    }
+
+    @Test
+    void reportsInvalidRows() throws IOException {
+        String file = write("invalid.txt", List.of(ROWS.get(0), "[1],100,200,300,0,0,0,0,0,0"));
+        assertEquals(1, run("validate", file));
+        assertEquals(String.join(System.lineSeparator(), "Row 2: Start Red must be in range 0-255, got: 300", "1 errors"), output);
+    }
+
+    @Test
+    void reportsAnAnimationThatDoesNotFitTheDevice() throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            rows.add("[" + (i % 13 + 1) + "]," + i * 200 + "," + (i * 200 + 99) + "," + i + ",0,0," + i + ",0,0,0");
+        }
+        String file = write("large.txt", rows);
+        assertEquals(0, run("compile", "--device", "uno", file));
+        assertEquals(1, run("compile", "--device", "nano168", file));
+    }
+
+    @Test
+    void reportsUsageErrors() throws IOException {
+        assertEquals(2, run());
+        assertEquals(2, run("frobnicate"));
+        assertEquals(2, run("compile", "--device", "uno", "--bogus", write("valid.txt", ROWS)));
+        // Only exact ids select a device
+        assertEquals(2, run("compile", "--device", "atmega168", write("valid.txt", ROWS)));
+        assertEquals(0, run("--help"));
+    }
+
+    @Test
+    void reportsUnreadableFiles() {
+        assertEquals(3, run("validate", directory.resolve("missing.txt").toString()));
+    }
+
+    @Test
+    void reportsPortsThatCannotBeOpened() {
+        assertEquals(4, run("list", "--port", directory.resolve("no-such-port").toString()));
+    }
+
+    @Test
+    void printsTheResultAsJson() throws IOException {
+        String file = write("valid.txt", ROWS);
+        assertEquals(0, run("--json", "validate", file));
+        assertTrue(output.startsWith("{\"command\":\"validate\",\"file\":"), output);
+        assertTrue(output.endsWith(",\"valid\":true,\"rows\":2,\"errors\":[],\"exitCode\":0}"), output);
+
+        String invalid = write("invalid.txt", List.of(ROWS.get(0), "[1],100,200,300,0,0,0,0,0,0"));
+        assertEquals(1, run("--json", "validate", invalid));
+        assertTrue(output.contains(",\"valid\":false,\"rows\":2,\"errors\":[{\"row\":2,\"error\":"), output);
+        assertTrue(output.endsWith(",\"exitCode\":1}"), output);
+
+        assertEquals(2, run("--json", "frobnicate"));
+        assertEquals("{\"command\":\"frobnicate\",\"error\":\"Unknown command: frobnicate\",\"exitCode\":2}", output);
+    }
+
+    @Test
+    void programsAndListsTheEmulator() throws IOException {
+        String file = write("valid.txt", ROWS);
+        assertEquals(0, run("--json", "program", "--port", EmulatorTransport.PORT_NAME, file));
+        assertTrue(output.contains("\"device\":\"" + DeviceProfile.DEFAULT.getBoard() + "\",\"imageCount\":2,"), output);
+        assertTrue(output.endsWith(",\"exitCode\":0}"), output);
+
+        assertEquals(0, run("list", "--port", EmulatorTransport.PORT_NAME));
+        assertEquals(String.join(System.lineSeparator(),
+            "[0-12],0,4999,0,0,40,0,0,255,0,0",
+            "[11,12],5000,9999,255,0,0,255,0,0,2,50"), output);
+
+        assertEquals(0, run("--json", "list", "--port", EmulatorTransport.PORT_NAME));
+        assertEquals("{\"command\":\"list\",\"port\":\"" + EmulatorTransport.PORT_NAME + "\",\"images\":["
+            + "\"[0-12],0,4999,0,0,40,0,0,255,0,0\",\"[11,12],5000,9999,255,0,0,255,0,0,2,50\"],\"exitCode\":0}", output);
+    }
+}
@@ -0,0 +1,364 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class Animation {
+    /** Matches Display::MAX_IMAGES in the firmware. */
+    public static final int MAX_IMAGES = DeviceProfile.FIRMWARE_MAX_IMAGES;
+    /** Returned for lookups of Images that are not part of the Animation. */
+    public static final long NO_IMAGE_ID = -1;
+    
+    private List<Image> images;
+    private final List<Long> imageIds;
+    private final Map<Long, Integer> indexById;
+    private final Map<Image, Long> idByImage;
+    private long nextImageId;
+    private final List<AnimationListener> listeners;
+
+    public Animation() {
+        this.images = new ArrayList<>();
+        this.imageIds = new ArrayList<>();
+        this.indexById = new HashMap<>();
+        this.idByImage = new IdentityHashMap<>();
+        this.nextImageId = 1;
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds an Image to the Animation by parsing a CSV line.
+     * Throws IllegalArgumentException if the maximum number of images is reached.
+     * Emits an IMAGE_ADDED event to all registered listeners.
+     * 
+     * @param csvLine CSV line in the format: [1,2,4-6,8],startRPM,endRPM,startRed,startGreen,startBlue,endRed,endGreen,endBlue,blinkMode
+     * @return the stable ID assigned to the new Image
+     * @throws IllegalArgumentException if maximum images reached or CSV parsing fails
+     */
+    public long add(String csvLine) {
+        return add(csvLine, null);
+    }
+
+    public long add(String csvLine, VariableParser variableParser) {
+        return add(images.size(), csvLine, variableParser);
+    }
+
+    /**
+     * Inserts an Image at the given position by parsing a CSV line.
+     * Emits an IMAGE_ADDED event to all registered listeners.
+     * 
+     * @param index the position to insert the Image at, 0 to size()
+     * @param csvLine the CSV line to parse
+     * @param variableParser parser for variable expressions, or null for plain CSV
+     * @return the stable ID assigned to the new Image
+     * @throws IllegalArgumentException if maximum images reached or CSV parsing fails
+     */
+    public long add(int index, String csvLine, VariableParser variableParser) {
+        if (images.size() >= MAX_IMAGES) {
+            throw new IllegalArgumentException("Maximum number of images (" + MAX_IMAGES + ") reached");
+        }
+        if (index < 0 || index > images.size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + images.size() + " images");
+        }
+        
+        Image image = variableParser != null ? new Image(csvLine, variableParser) : new Image(csvLine);
+        long id = nextImageId++;
+        images.add(index, image);
+        imageIds.add(index, id);
+        idByImage.put(image, id);
+        reindexFrom(index);
+        fireAnimationEvent(new AnimationEvent(this, AnimationEvent.EventType.IMAGE_ADDED, image, index, id));
+        return id;
+    }
+
+    /**
+     * Removes an Image from the Animation by its stable ID.
+     * Emits an IMAGE_REMOVED event to all registered listeners if an image was removed.
+     * The lookup is O(1) but the removal is O(n): Images after the removed one shift down
+     * one position and are re-indexed. Positions are device slots, so indexOf() and
+     * getImageId(int) must stay O(1) and exact, which rules out leaving gaps that are
+     * compacted later. With at most MAX_IMAGES Images the shift is a few dozen entries.
+     * 
+     * @param id the ID returned when the Image was added
+     * @return true if an Image was removed, false otherwise
+     */
+    public boolean remove(long id) {
+        Integer index = indexById.get(id);
+        if (index == null) {
+            return false;
+        }
+        
+        Image image = images.remove((int) index);
+        imageIds.remove((int) index);
+        indexById.remove(id);
+        idByImage.remove(image);
+        reindexFrom(index);
+        fireAnimationEvent(new AnimationEvent(this, AnimationEvent.EventType.IMAGE_REMOVED, image, index, id));
+        return true;
+    }
+
+    /**
+     * Removes the first Image that equals the Image parsed from the CSV line.
+     * Identical rows cannot be told apart this way; prefer {@link #remove(long)}.
+     * Emits an IMAGE_REMOVED event to all registered listeners if an image was removed.
+     * 
+     * @param csvLine CSV line in the format: [1,2,4-6,8],startRPM,endRPM,startRed,startGreen,startBlue,endRed,endGreen,endBlue,blinkMode
+     * @return true if an Image was removed, false otherwise
+     */
+    public boolean remove(String csvLine) {
+        Image imageToRemove = new Image(csvLine);
+        for (int i = 0; i < images.size(); i++) {
+            if (images.get(i).equals(imageToRemove)) {
+                return remove(imageIds.get(i));
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * Removes an Image from the Animation by reference.
+     * Only the given instance is removed, never an equal Image in another row.
+     * Emits an IMAGE_REMOVED event to all registered listeners if an image was removed.
+     * 
+     * @param imageToRemove the Image to remove
+     * @return true if an Image was removed, false otherwise
+     */
+    public boolean remove(Image imageToRemove) {
+        Long id = idByImage.get(imageToRemove);
+        return id != null && remove(id);
+    }
+
+    /**
+     * Gets an Image by its stable ID.
+     * 
+     * @param id the ID of the Image
+     * @return the Image, or null if no Image has this ID
+     */
+    public Image getImage(long id) {
+        Integer index = indexById.get(id);
+        return index != null ? images.get(index) : null;
+    }
+
+    /**
+     * Gets the current position of an Image, which is also its slot on the device.
+     * 
+     * @param id the ID of the Image
+     * @return the index of the Image, or -1 if no Image has this ID
+     */
+    public int indexOf(long id) {
+        Integer index = indexById.get(id);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Gets the ID of the Image at a position.
+     * 
+     * @param index the position of the Image
+     * @return the stable ID of the Image
+     */
+    public long getImageId(int index) {
+        return imageIds.get(index);
+    }
+
+    /**
+     * Gets the ID of an Image instance held by this Animation.
+     * 
+     * @param image the Image
+     * @return the ID, or NO_IMAGE_ID if the instance is not part of the Animation
+     */
+    public long getImageId(Image image) {
+        Long id = idByImage.get(image);
+        return id != null ? id : NO_IMAGE_ID;
+    }
+
+    /**
+     * Gets the IDs of all Images in order.
+     * 
+     * @return a copy of the list of IDs
+     */
+    public List<Long> getImageIds() {
+        return new ArrayList<>(imageIds);
+    }
+
+    /**
+     * Applies a transform to many Images at once, e.g. to shift all RPM ranges.
+     * All transformed Images are computed before any is replaced, so either every
+     * Image is transformed or, if one fails, none is. Transformed Images keep their
+     * IDs and positions.
+     * Emits a single IMAGES_TRANSFORMED event to all registered listeners.
+     * 
+     * @param ids the IDs of the Images to transform, or null for all Images
+     * @param transform the transform to apply
+     * @return the number of Images transformed
+     * @throws IllegalArgumentException if an ID is unknown or a transformed Image is invalid
+     */
+    public int transform(Collection<Long> ids, ImageTransform transform) {
+        // Sorted and without duplicates, so each Image is transformed once
+        TreeSet<Integer> indices = new TreeSet<>();
+        if (ids == null) {
+            for (int i = 0; i < images.size(); i++) {
+                indices.add(i);
+            }
+        } else {
+            for (long id : ids) {
+                Integer index = indexById.get(id);
+                if (index == null) {
+                    throw new IllegalArgumentException("No image with ID " + id);
+                }
+                indices.add(index);
+            }
+        }
+
+        List<Image> transformed = new ArrayList<>(indices.size());
+        for (int index : indices) {
+            try {
+                transformed.add(transform.apply(images.get(index)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Image " + (index + 1) + ": " + e.getMessage(), e);
+            }
+        }
+
+        int i = 0;
+        for (int index : indices) {
+            Image image = transformed.get(i++);
+            idByImage.remove(images.get(index));
+            images.set(index, image);
+            idByImage.put(image, imageIds.get(index));
+        }
+        if (!indices.isEmpty()) {
+            fireAnimationEvent(new AnimationEvent(this, AnimationEvent.EventType.IMAGES_TRANSFORMED));
+        }
+        return indices.size();
+    }
+
+    /**
+     * Replaces Images that were compiled elsewhere, e.g. by the editor's document, keeping
+     * their IDs and positions. Nothing is replaced if an ID is unknown.
+     * Emits a single IMAGES_TRANSFORMED event to all registered listeners.
+     * 
+     * @param imagesById the new Image for each ID
+     * @return the number of Images replaced
+     * @throws IllegalArgumentException if an ID is unknown
+     */
+    public int replace(Map<Long, Image> imagesById) {
+        for (long id : imagesById.keySet()) {
+            if (!indexById.containsKey(id)) {
+                throw new IllegalArgumentException("No image with ID " + id);
+            }
+        }
+        for (Map.Entry<Long, Image> entry : imagesById.entrySet()) {
+            int index = indexById.get(entry.getKey());
+            idByImage.remove(images.get(index));
+            images.set(index, entry.getValue());
+            idByImage.put(entry.getValue(), entry.getKey());
+        }
+        if (!imagesById.isEmpty()) {
+            fireAnimationEvent(new AnimationEvent(this, AnimationEvent.EventType.IMAGES_TRANSFORMED));
+        }
+        return imagesById.size();
+    }
+
+    private void reindexFrom(int index) {
+        for (int i = index; i < imageIds.size(); i++) {
+            indexById.put(imageIds.get(i), i);
+        }
+    }
+
+    /**
+     * Clears all Images from the Animation.
+     * Emits an ANIMATION_CLEARED event to all registered listeners.
+     */
+    public void clear() {
+        if (!images.isEmpty()) {
+            images.clear();
+            imageIds.clear();
+            indexById.clear();
+            idByImage.clear();
+            fireAnimationEvent(new AnimationEvent(this, AnimationEvent.EventType.ANIMATION_CLEARED));
+        }
+    }
+
+    /**
+     * Gets the number of Images in the Animation.
+     * 
+     * @return the number of Images
+     */
+    public int size() {
+        return images.size();
+    }
+
+    /**
+     * Gets the list of Images in the Animation.
+     * 
+     * @return a copy of the list of Images
+     */
+    public List<Image> getImages() {
+        return new ArrayList<>(images);
+    }
+
+    /**
+     * Checks if the Animation is empty.
+     * 
+     * @return true if the Animation contains no Images
+     */
+    public boolean isEmpty() {
+        return images.isEmpty();
+    }
+
+    /**
+     * Adds an AnimationListener to receive events when the Animation changes.
+     * 
+     * @param listener the listener to add
+     */
+    public void addAnimationListener(AnimationListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes an AnimationListener so it no longer receives events.
+     * 
+     * @param listener the listener to remove
+     */
+    public void removeAnimationListener(AnimationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Fires an AnimationEvent to all registered listeners.
+     * 
+     * @param event the event to fire
+     */
+    private void fireAnimationEvent(AnimationEvent event) {
+        for (AnimationListener listener : listeners) {
+            listener.animationChanged(event);
+        }
+    }
+
+    /**
+     * Generates a formatted string with evaluated CSV lines.
+     * The output starts with "BEGIN" and ends with "END", with evaluated CSV lines in between.
+     * 
+     * @return formatted string with BEGIN/END markers and evaluated CSV lines
+     */
+    public String generateProgramOutput() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("BEGIN\n");
+        
+        for (Image image : images) {
+            // Use toCsvLine() which returns the evaluated CSV (with numeric values)
+            sb.append(image.toCsvLine()).append("\n");
+        }
+        
+        sb.append("END");
+        return sb.toString();
+    }
+}
+
@@ -0,0 +1,419 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The editor's view of an animation: the variables and the rows as the user typed them.
+ * Each DocumentRow keeps its source text, compiled Image and diagnostics together.
+ * Edits are incremental: changing a row's source only invalidates that row, while
+ * changing the variables invalidates every row. Stale rows are compiled either by
+ * applying results from a background validation or by compileStaleRows().
+ * All other methods only read the rows as last compiled and never compile on their own,
+ * so the editor can call them on the Event Dispatch Thread.
+ * The document is the single source of truth for what is saved and programmed; the
+ * program built from it is kept until the document changes, see buildProgram().
+ * The document is not thread safe and is confined to the Event Dispatch Thread in the editor.
+ */
+public class AnimationDocument {
+    private final List<DocumentRow> rows;
+    private final Map<Long, DocumentRow> rowsByImageId;
+    private final VariableParser variableParser;
+    private String variablesText;
+    private String variablesError;
+    private long nextRowId;
+    private long modificationCount;
+    private DeviceProgram program;
+
+    public AnimationDocument() {
+        this.rows = new ArrayList<>();
+        this.rowsByImageId = new HashMap<>();
+        this.variableParser = new VariableParser();
+        this.variablesText = "";
+        this.nextRowId = 1;
+    }
+
+    /**
+     * Appends an editor-only row that is not part of the Animation.
+     *
+     * @param source the CSV text of the row
+     * @return the new row
+     */
+    public DocumentRow addRow(String source) {
+        return addRow(rows.size(), source, Animation.NO_IMAGE_ID);
+    }
+
+    /**
+     * Inserts a row.
+     *
+     * @param index the position of the new row, 0 to size()
+     * @param source the CSV text of the row
+     * @param imageId the ID of the Animation Image the row belongs to, or Animation.NO_IMAGE_ID
+     * @return the new row
+     */
+    public DocumentRow addRow(int index, String source, long imageId) {
+        DocumentRow row = new DocumentRow(nextRowId++, normalize(source), imageId);
+        rows.add(index, row);
+        if (imageId != Animation.NO_IMAGE_ID) {
+            rowsByImageId.put(imageId, row);
+        }
+        modified();
+        return row;
+    }
+
+    public boolean removeRow(DocumentRow row) {
+        if (!rows.remove(row)) {
+            return false;
+        }
+        if (row.getImageId() != Animation.NO_IMAGE_ID) {
+            rowsByImageId.remove(row.getImageId());
+        }
+        modified();
+        return true;
+    }
+
+    public void clear() {
+        rows.clear();
+        rowsByImageId.clear();
+        modified();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public int indexOf(DocumentRow row) {
+        return rows.indexOf(row);
+    }
+
+    /**
+     * Gets the rows in order.
+     *
+     * @return a copy of the list of rows
+     */
+    public List<DocumentRow> getRows() {
+        return new ArrayList<>(rows);
+    }
+
+    /**
+     * Gets the row that belongs to an Animation Image.
+     *
+     * @param imageId the ID of the Image
+     * @return the row, or null if no row belongs to the Image
+     */
+    public DocumentRow getRowForImage(long imageId) {
+        return rowsByImageId.get(imageId);
+    }
+
+    /**
+     * Binds a row to an Animation Image, or unbinds it with Animation.NO_IMAGE_ID.
+     *
+     * @param row the row
+     * @param imageId the ID of the Image
+     */
+    public void setImageId(DocumentRow row, long imageId) {
+        if (row.getImageId() != Animation.NO_IMAGE_ID) {
+            rowsByImageId.remove(row.getImageId());
+        }
+        row.setImageId(imageId);
+        if (imageId != Animation.NO_IMAGE_ID) {
+            rowsByImageId.put(imageId, row);
+        }
+    }
+
+    /**
+     * Changes the source text of a row. Only this row is invalidated.
+     *
+     * @param row the row
+     * @param source the new CSV text
+     */
+    public void setSource(DocumentRow row, String source) {
+        String normalized = normalize(source);
+        if (!normalized.equals(row.getSource())) {
+            row.setSource(normalized);
+            modified();
+        }
+    }
+
+    /**
+     * Changes the variables. Every row is invalidated if the text changed.
+     * Invalid variable definitions are reported through getVariablesError();
+     * the definitions parsed before the error remain in effect.
+     *
+     * @param text the variable definitions, one name=value per line
+     */
+    public void setVariablesText(String text) {
+        String newText = text == null ? "" : text;
+        if (newText.equals(variablesText)) {
+            return;
+        }
+        variablesText = newText;
+        try {
+            variableParser.parseVariables(newText);
+            variablesError = null;
+        } catch (IllegalArgumentException e) {
+            variablesError = e.getMessage();
+        }
+        for (DocumentRow row : rows) {
+            row.invalidate();
+        }
+        modified();
+    }
+
+    public String getVariablesText() {
+        return variablesText;
+    }
+
+    /**
+     * Gets the error from parsing the variables.
+     *
+     * @return the error message, or null if the variables are valid
+     */
+    public String getVariablesError() {
+        return variablesError;
+    }
+
+    /**
+     * Gets the parser holding the current variables. It must not be modified by callers.
+     *
+     * @return the variable parser
+     */
+    public VariableParser getVariableParser() {
+        return variableParser;
+    }
+
+    /**
+     * Gets the rows whose source changed since they were last compiled.
+     *
+     * @return the stale rows in order
+     */
+    public List<DocumentRow> getStaleRows() {
+        List<DocumentRow> staleRows = new ArrayList<>();
+        for (DocumentRow row : rows) {
+            if (row.isStale()) {
+                staleRows.add(row);
+            }
+        }
+        return staleRows;
+    }
+
+    /**
+     * Stores the result of compiling a row, e.g. from a background validation.
+     * Results for another source text than the row's current source are ignored.
+     *
+     * @param row the row
+     * @param result the result of compiling the row's source with the current variables
+     * @return true if the result was stored
+     */
+    public boolean applyResult(DocumentRow row, RowValidationResult result) {
+        if (result == null || !result.getSource().equals(row.getSource())) {
+            return false;
+        }
+        row.setResult(result);
+        modified();
+        return true;
+    }
+
+    /**
+     * Compiles all stale rows on the calling thread.
+     */
+    public void compileStaleRows() {
+        for (int i = 0; i < rows.size(); i++) {
+            DocumentRow row = rows.get(i);
+            if (row.isStale()) {
+                row.setResult(RowValidationResult.validate(row.getSource(), variableParser, i));
+                modified();
+            }
+        }
+    }
+
+    /**
+     * Applies a transform to the source of many rows at once. Empty rows are skipped.
+     * Every rewritten source is compiled before any row is changed, so either all rows
+     * are transformed or, if one fails, none is. Transformed rows are left compiled.
+     *
+     * @param selectedRows the rows to transform, or null for all rows
+     * @param transform the transform to apply
+     * @return the number of rows transformed
+     * @throws IllegalArgumentException if a row is invalid before or after the transform
+     */
+    public int transformRows(Collection<DocumentRow> selectedRows, ImageTransform transform) {
+        List<DocumentRow> targets = new ArrayList<>();
+        List<RowValidationResult> results = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            DocumentRow row = rows.get(i);
+            if (row.isEmpty() || (selectedRows != null && !selectedRows.contains(row))) {
+                continue;
+            }
+            String source;
+            try {
+                source = transform.applyToSource(row.getSource(), variableParser);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Row " + (i + 1) + ": " + e.getMessage(), e);
+            }
+            RowValidationResult result = RowValidationResult.validate(normalize(source), variableParser, i);
+            if (!result.isValid()) {
+                throw new IllegalArgumentException("Row " + (i + 1) + ": " + result.getError());
+            }
+            targets.add(row);
+            results.add(result);
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            DocumentRow row = targets.get(i);
+            RowValidationResult result = results.get(i);
+            row.setSource(result.getSource());
+            row.setResult(result);
+        }
+        if (!targets.isEmpty()) {
+            modified();
+        }
+        return targets.size();
+    }
+
+    /**
+     * Checks if any non-empty row changed since it was last compiled. Empty rows are
+     * never pending, they are valid whatever the variables.
+     *
+     * @return true if rows are waiting to be compiled
+     */
+    public boolean hasPendingRows() {
+        for (DocumentRow row : rows) {
+            if (row.isStale() && !row.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that every non-empty row is compiled and valid and at least one row is non-empty.
+     * Pending rows count as not valid, see hasPendingRows().
+     *
+     * @return true if the document can be saved and programmed
+     */
+    public boolean isAllValid() {
+        boolean hasNonEmptyValidRow = false;
+        for (DocumentRow row : rows) {
+            if (!row.isEmpty()) {
+                // Non-empty row must be compiled and valid
+                if (row.isStale() || !row.getResult().isValid()) {
+                    return false;
+                }
+                hasNonEmptyValidRow = true;
+            }
+        }
+        return hasNonEmptyValidRow;
+    }
+
+    /**
+     * Gets the source text of all non-empty valid rows, as written to animation files.
+     * Pending rows are left out.
+     *
+     * @return the source lines in order
+     */
+    public List<String> getSourceLines() {
+        List<String> sourceLines = new ArrayList<>();
+        for (DocumentRow row : rows) {
+            if (row.isCompiled()) {
+                sourceLines.add(row.getSource());
+            }
+        }
+        return sourceLines;
+    }
+
+    /**
+     * Gets the compiled Images of all non-empty valid rows. Pending rows are left out.
+     *
+     * @return the Images in order
+     */
+    public List<Image> getCompiledImages() {
+        List<Image> images = new ArrayList<>(rows.size());
+        for (DocumentRow row : rows) {
+            if (row.isCompiled()) {
+                images.add(row.getImage());
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Gets the program sent to the device for the compiled rows, see DeviceProgram.
+     * It is built on the first call after the document changed, or taken from
+     * cacheProgram(), so saving and programming never build it twice.
+     * Pending rows are left out.
+     *
+     * @return the program
+     */
+    public DeviceProgram buildProgram() {
+        if (program == null) {
+            program = programBuilder().get();
+        }
+        return program;
+    }
+
+    /**
+     * Counts the changes to the document, for telling if a result computed from a snapshot is current.
+     *
+     * @return a number that changes on every change to the rows or variables
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Keeps a program built from programBuilder() on another thread, so buildProgram()
+     * returns it instead of building it again. Ignored if the document changed since.
+     *
+     * @param modificationCount the modification count when the builder was captured
+     * @param program the program built
+     */
+    public void cacheProgram(long modificationCount, DeviceProgram program) {
+        if (modificationCount == this.modificationCount) {
+            this.program = program;
+        }
+    }
+
+    /**
+     * Captures the compiled rows so the program can be built on another thread.
+     * Capturing is cheap; shadow elimination and minimization run when the builder is called.
+     * Pending rows are left out.
+     *
+     * @return a builder for the program of the rows as they are now
+     */
+    public Supplier<DeviceProgram> programBuilder() {
+        List<Image> images = new ArrayList<>();
+        List<String> programLines = new ArrayList<>();
+        for (DocumentRow row : rows) {
+            if (row.isCompiled()) {
+                images.add(row.getImage());
+                programLines.add(row.getProgramLine());
+            }
+        }
+        return () -> DeviceProgram.build(images, programLines);
+    }
+
+    /**
+     * Generates the program sent to the device: "BEGIN", one line per compiled row
+     * with 0-based LED indices, and "END". Images and LEDs hidden by later rows are
+     * left out and equivalent Images are merged, see buildProgram(). Pending rows are left out.
+     *
+     * @return the program text
+     */
+    public String generateProgramOutput() {
+        return buildProgram().getProgramOutput();
+    }
+
+    private void modified() {
+        modificationCount++;
+        program = null;
+    }
+
+    private static String normalize(String source) {
+        return source == null ? "" : source.trim();
+    }
+}
@@ -6,22 +6,25 @@ public class AnimationEvent extends EventObject {
     public enum EventType {
         IMAGE_ADDED,
         IMAGE_REMOVED,
+        IMAGES_TRANSFORMED,
         ANIMATION_CLEARED
     }
 
     private final EventType eventType;
     private final Image image;
     private final int index;
+    private final long imageId;
 
-    public AnimationEvent(Animation source, EventType eventType, Image image, int index) {
+    public AnimationEvent(Animation source, EventType eventType, Image image, int index, long imageId) {
         super(source);
         this.eventType = eventType;
         this.image = image;
         this.index = index;
+        this.imageId = imageId;
     }
 
     public AnimationEvent(Animation source, EventType eventType) {
-        this(source, eventType, null, -1);
+        this(source, eventType, null, -1, Animation.NO_IMAGE_ID);
     }
 
     public EventType getEventType() {
@@ -36,6 +39,10 @@ public class AnimationEvent extends EventObject {
         return index;
     }
 
+    public long getImageId() {
+        return imageId;
+    }
+
     @Override
     public Animation getSource() {
         return (Animation) super.getSource();
@@ -0,0 +1,143 @@
+package se.ryz.shiftlight;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An animation file: a "# Variables" section with one variable per line followed by an
+ * "# Animation CSV Lines" section with one Image row per line, as written by the Save button.
+ * Files without section markers are read too: lines containing "=" are variables and lines
+ * starting with "[" are rows.
+ */
+public class AnimationFile {
+    public static final String VARIABLES_MARKER = "# Variables";
+    public static final String CSV_LINES_MARKER = "# Animation CSV Lines";
+
+    private final List<String> variables;
+    private final List<String> csvLines;
+
+    /**
+     * @param variables the variable definitions, one per line
+     * @param csvLines the Image rows as typed
+     */
+    public AnimationFile(List<String> variables, List<String> csvLines) {
+        this.variables = variables;
+        this.csvLines = csvLines;
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public List<String> getCsvLines() {
+        return csvLines;
+    }
+
+    /**
+     * Gets the variables as the editor shows them.
+     *
+     * @return the variable lines joined with newlines
+     */
+    public String getVariablesText() {
+        return String.join("\n", variables);
+    }
+
+    /**
+     * Reads an animation file.
+     *
+     * @param file the file to read
+     * @return the animation
+     * @throws IOException if the file can't be read
+     */
+    public static AnimationFile load(File file) throws IOException {
+        return parse(Files.readAllLines(file.toPath()));
+    }
+
+    /**
+     * Parses the lines of an animation file.
+     *
+     * @param allLines the lines of the file
+     * @return the animation
+     */
+    public static AnimationFile parse(List<String> allLines) {
+        List<String> variables = new ArrayList<>();
+        List<String> csvLines = new ArrayList<>();
+
+        boolean inVariablesSection = false;
+        boolean inCsvSection = false;
+
+        for (String line : allLines) {
+            String trimmedLine = line.trim();
+
+            // Handle section markers
+            if (trimmedLine.equals(VARIABLES_MARKER)) {
+                inVariablesSection = true;
+                inCsvSection = false;
+                continue;
+            } else if (trimmedLine.equals(CSV_LINES_MARKER)) {
+                inVariablesSection = false;
+                inCsvSection = true;
+                continue;
+            }
+
+            // Skip empty lines and comments
+            if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                continue;
+            }
+
+            // Add to appropriate section
+            if (inVariablesSection || (!inCsvSection && csvLines.isEmpty())) {
+                // If we haven't seen the CSV section marker yet, assume it's a variable
+                variables.add(trimmedLine);
+            } else if (inCsvSection || (!inVariablesSection && !variables.isEmpty())) {
+                // If we've seen variables or the CSV marker, it's a CSV line
+                csvLines.add(trimmedLine);
+            }
+        }
+
+        // If no section markers were found, try to detect: variables are lines with "=", CSV lines are the rest
+        if (variables.isEmpty() && csvLines.isEmpty()) {
+            for (String line : allLines) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                    continue;
+                }
+                if (trimmedLine.contains("=") && !trimmedLine.startsWith("[")) {
+                    variables.add(trimmedLine);
+                } else if (trimmedLine.startsWith("[")) {
+                    csvLines.add(trimmedLine);
+                }
+            }
+        }
+
+        return new AnimationFile(variables, csvLines);
+    }
+
+    /**
+     * Writes the animation with section markers.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    public void save(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            // Write variables section
+            writer.println(VARIABLES_MARKER);
+            for (String variable : variables) {
+                writer.println(variable);
+            }
+            writer.println();
+
+            // Write CSV lines section
+            writer.println(CSV_LINES_MARKER);
+            for (String csvLine : csvLines) {
+                writer.println(csvLine);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Rewrites a program into an equivalent one with fewer Images.
+ * Two kinds of merges are tried for every pair of Images with the same blink mode:
+ * <ul>
+ *   <li>same LEDs over touching or overlapping RPM ranges, e.g. a solid colour split over two rows</li>
+ *   <li>same RPM range and colours over different LEDs</li>
+ * </ul>
+ * A merged Image replaces the first or the second Image of the pair. Every merge is
+ * verified by rendering the old and the new program over the RPM ranges of the pair, the
+ * only RPMs where they can differ, and is kept only if all frames are identical.
+ * Merges are applied greedily until no pair can be merged.
+ */
+public class AnimationMinimizer {
+
+    /**
+     * Minimizes a program.
+     *
+     * @param images the Images in program order
+     * @return the minimized program and the merges made
+     */
+    public Result minimize(List<Image> images) {
+        List<Image> program = new ArrayList<>(images);
+        // The input positions each Image of the program was merged from
+        List<TreeSet<Integer>> origins = new ArrayList<>();
+        for (int position = 0; position < program.size(); position++) {
+            TreeSet<Integer> origin = new TreeSet<>();
+            origin.add(position);
+            origins.add(origin);
+        }
+
+        List<String> merges = new ArrayList<>();
+        FrameComparison comparison = new FrameComparison();
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            RenderEngine before = new RenderEngine(program);
+            search:
+            for (int first = 0; first < program.size(); first++) {
+                for (int second = first + 1; second < program.size(); second++) {
+                    Image mergedImage = merge(program.get(first), program.get(second));
+                    if (mergedImage == null) {
+                        continue;
+                    }
+                    for (int keep : new int[] {first, second}) {
+                        int drop = keep == first ? second : first;
+                        List<Image> candidate = new ArrayList<>(program);
+                        candidate.set(keep, mergedImage);
+                        candidate.remove(drop);
+                        if (comparison.isEquivalent(before, new RenderEngine(candidate), program.get(first), program.get(second))) {
+                            TreeSet<Integer> origin = new TreeSet<>(origins.get(first));
+                            origin.addAll(origins.get(second));
+                            merges.add("Merged images " + describePositions(origins.get(first))
+                                + " and " + describePositions(origins.get(second)) + " into " + mergedImage.toCsvLine());
+                            origins.set(keep, origin);
+                            origins.remove(drop);
+                            program = candidate;
+                            merged = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return new Result(program, merges);
+    }
+
+    /**
+     * Builds the Image that could replace two Images, or null if they can't be merged.
+     */
+    private static Image merge(Image a, Image b) {
+        if (a.getBlinkModeValue() != b.getBlinkModeValue()
+                || (a.getBlinkModeValue() != 0 && !Objects.equals(a.getOptionalValue(), b.getOptionalValue()))) {
+            return null;
+        }
+        TreeSet<Integer> ledsA = new TreeSet<>(a.getLedIndices());
+        TreeSet<Integer> ledsB = new TreeSet<>(b.getLedIndices());
+
+        if (ledsA.equals(ledsB)) {
+            // Touching or overlapping ranges: the lower Image provides the start colour, the upper one the end colour
+            Image lower = a.getStartRPM() <= b.getStartRPM() ? a : b;
+            Image upper = lower == a ? b : a;
+            if (upper.getStartRPM() > lower.getEndRPM() + 1) {
+                return null;
+            }
+            Image top = upper.getEndRPM() >= lower.getEndRPM() ? upper : lower;
+            return new Image(new ArrayList<>(ledsA), lower.getStartRPM(), top.getEndRPM(),
+                lower.getStartRed(), lower.getStartGreen(), lower.getStartBlue(),
+                top.getEndRed(), top.getEndGreen(), top.getEndBlue(),
+                a.getBlinkModeValue(), a.getOptionalValue());
+        }
+
+        boolean sameRangeAndColors = a.getStartRPM() == b.getStartRPM() && a.getEndRPM() == b.getEndRPM()
+            && a.getStartRed() == b.getStartRed() && a.getStartGreen() == b.getStartGreen() && a.getStartBlue() == b.getStartBlue()
+            && a.getEndRed() == b.getEndRed() && a.getEndGreen() == b.getEndGreen() && a.getEndBlue() == b.getEndBlue();
+        if (sameRangeAndColors) {
+            TreeSet<Integer> union = new TreeSet<>(ledsA);
+            union.addAll(ledsB);
+            return new Image(new ArrayList<>(union), a.getStartRPM(), a.getEndRPM(),
+                a.getStartRed(), a.getStartGreen(), a.getStartBlue(),
+                a.getEndRed(), a.getEndGreen(), a.getEndBlue(),
+                a.getBlinkModeValue(), a.getOptionalValue());
+        }
+        return null;
+    }
+
+    /**
+     * Compares two programs over the RPM ranges of the merged pair. Outside those ranges
+     * both programs apply the same Images in the same order. The frames are reused for
+     * every RPM and pair, a minimization renders tens of thousands of them.
+     */
+    private static class FrameComparison {
+        private final LedFrame beforeFrame = new LedFrame();
+        private final LedFrame afterFrame = new LedFrame();
+        private final RpmIntervalIndex.Hits hits = new RpmIntervalIndex.Hits();
+
+        boolean isEquivalent(RenderEngine before, RenderEngine after, Image a, Image b) {
+            int from = Math.min(a.getStartRPM(), b.getStartRPM());
+            int to = Math.max(a.getEndRPM(), b.getEndRPM());
+            for (int rpm = from; rpm <= to; rpm++) {
+                before.render(rpm, beforeFrame, hits);
+                after.render(rpm, afterFrame, hits);
+                if (!sameFrame(beforeFrame, afterFrame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean sameFrame(LedFrame a, LedFrame b) {
+        for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+            if (a.getRgb(slot) != b.getRgb(slot) || a.getBlinkRate(slot) != b.getBlinkRate(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describePositions(TreeSet<Integer> positions) {
+        List<String> numbers = new ArrayList<>();
+        for (int position : positions) {
+            numbers.add(String.valueOf(position + 1));
+        }
+        return String.join("+", numbers);
+    }
+
+    /**
+     * A minimized program and the merges that produced it. Image numbers in the merge
+     * descriptions are 1-based positions in the program passed to minimize().
+     */
+    @Getter
+    public static class Result {
+        private final List<Image> images;
+        private final List<String> merges;
+
+        Result(List<Image> images, List<String> merges) {
+            this.images = images;
+            this.merges = merges;
+        }
+
+        public boolean isUnchanged() {
+            return merges.isEmpty();
+        }
+
+        public String describe() {
+            return String.join("\n", merges);
+        }
+    }
+}
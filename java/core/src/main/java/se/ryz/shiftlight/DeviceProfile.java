@@ -0,0 +1,118 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes the capacity of a shiftlight board: how much EEPROM it has,
+ * how many LEDs and images the firmware supports and which serial
+ * protocol commands it understands.
+ * The EEPROM layout mirrors Display::writeImagesToEEPROM: an int holding the
+ * image count followed by one Display::Image struct per image.
+ */
+@Getter
+public class DeviceProfile {
+    public enum ProtocolFeature {
+        HELLO,
+        PROGRAM,
+        LIST,
+        RPM_STREAM
+    }
+
+    /** sizeof(int) on 8-bit AVR boards. */
+    public static final int AVR_INT_BYTES = 2;
+    /** sizeof(Display::Image) on 8-bit AVR boards: 3 ints and 7 bytes, no padding. */
+    public static final int AVR_IMAGE_BYTES = 3 * AVR_INT_BYTES + 7;
+    /** Display::MAX_IMAGES in the firmware. */
+    public static final int FIRMWARE_MAX_IMAGES = 40;
+    /** NUM_LEDS in the firmware. */
+    public static final int FIRMWARE_LED_COUNT = 13;
+
+    public static final DeviceProfile ARDUINO_UNO = new DeviceProfile("uno", "Arduino Uno / Nano (ATmega328P)",
+        1024, FIRMWARE_LED_COUNT, FIRMWARE_MAX_IMAGES, AVR_INT_BYTES, AVR_IMAGE_BYTES, EnumSet.allOf(ProtocolFeature.class));
+    public static final DeviceProfile ARDUINO_NANO_168 = new DeviceProfile("nano168", "Arduino Nano (ATmega168)",
+        512, FIRMWARE_LED_COUNT, FIRMWARE_MAX_IMAGES, AVR_INT_BYTES, AVR_IMAGE_BYTES, EnumSet.allOf(ProtocolFeature.class));
+    public static final DeviceProfile ARDUINO_LEONARDO = new DeviceProfile("leonardo", "Arduino Leonardo / Micro (ATmega32U4)",
+        1024, FIRMWARE_LED_COUNT, FIRMWARE_MAX_IMAGES, AVR_INT_BYTES, AVR_IMAGE_BYTES, EnumSet.allOf(ProtocolFeature.class));
+    public static final DeviceProfile ARDUINO_MEGA = new DeviceProfile("mega2560", "Arduino Mega 2560",
+        4096, FIRMWARE_LED_COUNT, FIRMWARE_MAX_IMAGES, AVR_INT_BYTES, AVR_IMAGE_BYTES, EnumSet.allOf(ProtocolFeature.class));
+
+    public static final DeviceProfile DEFAULT = ARDUINO_UNO;
+
+    /** Short unique name of the profile, used to select it on the command line. */
+    private final String id;
+    private final String board;
+    private final int eepromBytes;
+    private final int ledCount;
+    private final int maxImages;
+    private final int intBytes;
+    private final int imageBytes;
+    private final Set<ProtocolFeature> features;
+
+    public DeviceProfile(String id, String board, int eepromBytes, int ledCount, int maxImages, int intBytes, int imageBytes,
+                         Set<ProtocolFeature> features) {
+        if (eepromBytes <= 0 || ledCount <= 0 || maxImages <= 0 || intBytes <= 0 || imageBytes <= 0) {
+            throw new IllegalArgumentException("Device profile sizes must be positive: " + board);
+        }
+        this.id = id;
+        this.board = board;
+        this.eepromBytes = eepromBytes;
+        this.ledCount = ledCount;
+        this.maxImages = maxImages;
+        this.intBytes = intBytes;
+        this.imageBytes = imageBytes;
+        this.features = Collections.unmodifiableSet(features.isEmpty()
+            ? EnumSet.noneOf(ProtocolFeature.class) : EnumSet.copyOf(features));
+    }
+
+    /**
+     * Gets the built-in device profiles.
+     *
+     * @return the built-in profiles, default profile first
+     */
+    public static List<DeviceProfile> getBuiltInProfiles() {
+        return List.of(ARDUINO_UNO, ARDUINO_NANO_168, ARDUINO_LEONARDO, ARDUINO_MEGA);
+    }
+
+    /**
+     * Finds a built-in profile by its id.
+     *
+     * @param id the id, e.g. uno
+     * @return the profile with exactly that id
+     * @throws IllegalArgumentException if no built-in profile has the id
+     */
+    public static DeviceProfile forId(String id) {
+        List<String> ids = new ArrayList<>();
+        for (DeviceProfile profile : getBuiltInProfiles()) {
+            if (profile.getId().equals(id)) {
+                return profile;
+            }
+            ids.add(profile.getId());
+        }
+        throw new IllegalArgumentException("Unknown device: " + id + ", expected one of: " + String.join(", ", ids));
+    }
+
+    /**
+     * Gets the number of images that fit both the firmware image table and the EEPROM.
+     *
+     * @return the maximum number of images that can be uploaded
+     */
+    public int getImageCapacity() {
+        int eepromCapacity = (eepromBytes - intBytes) / imageBytes;
+        return Math.max(0, Math.min(maxImages, eepromCapacity));
+    }
+
+    public boolean supports(ProtocolFeature feature) {
+        return features.contains(feature);
+    }
+
+    @Override
+    public String toString() {
+        return board;
+    }
+}
@@ -0,0 +1,65 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The program uploaded to a device. Images and LEDs hidden by later rows are stripped and
+ * equivalent Images are merged once, when the program is built, and the footprint check,
+ * the log and the program text are all derived from that one result.
+ * Building is expensive for large animations, see AnimationMinimizer.
+ */
+@Getter
+public class DeviceProgram {
+    private final ShadowEliminator.Result shadowed;
+    private final AnimationMinimizer.Result minimized;
+    private final String programOutput;
+
+    private DeviceProgram(ShadowEliminator.Result shadowed, AnimationMinimizer.Result minimized, String programOutput) {
+        this.shadowed = shadowed;
+        this.minimized = minimized;
+        this.programOutput = programOutput;
+    }
+
+    /**
+     * Builds the program for compiled Images.
+     *
+     * @param images the Images in program order
+     * @param programLines the pre-computed program line of each Image, in the same order
+     * @return the program
+     */
+    public static DeviceProgram build(List<Image> images, List<String> programLines) {
+        Map<Image, String> programLineByImage = new IdentityHashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            programLineByImage.put(images.get(i), programLines.get(i));
+        }
+        ShadowEliminator.Result shadowed = new ShadowEliminator().eliminate(images);
+        AnimationMinimizer.Result minimized = new AnimationMinimizer().minimize(shadowed.getImages());
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("BEGIN\n");
+        for (Image image : minimized.getImages()) {
+            // Images that were not reduced or merged keep their pre-computed line
+            String programLine = programLineByImage.get(image);
+            sb.append(programLine != null ? programLine : image.toProgramLine()).append("\n");
+        }
+        sb.append("END");
+        return new DeviceProgram(shadowed, minimized, sb.toString());
+    }
+
+    /**
+     * Gets the Images as uploaded.
+     *
+     * @return the Images in program order
+     */
+    public List<Image> getImages() {
+        return minimized.getImages();
+    }
+
+    public int getImageCount() {
+        return minimized.getImages().size();
+    }
+}
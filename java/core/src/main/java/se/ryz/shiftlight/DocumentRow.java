@@ -0,0 +1,101 @@
+package se.ryz.shiftlight;
+
+/**
+ * One row of an AnimationDocument.
+ * A row owns the source text as typed by the user together with its compiled
+ * form and diagnostics, so the UI, saving and programming read them without
+ * evaluating the source again. Rows are modified through the AnimationDocument.
+ */
+public class DocumentRow {
+    private final long id;
+    private long imageId;
+    private String source;
+    private RowValidationResult result;
+    private String programLine;
+
+    DocumentRow(long id, String source, long imageId) {
+        this.id = id;
+        this.source = source;
+        this.imageId = imageId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the ID of the Animation Image this row belongs to.
+     *
+     * @return the Image ID, or Animation.NO_IMAGE_ID if the row is only in the editor
+     */
+    public long getImageId() {
+        return imageId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the result of compiling the current source.
+     *
+     * @return the result, or null if the source changed since it was last compiled
+     */
+    public RowValidationResult getResult() {
+        return result;
+    }
+
+    public boolean isStale() {
+        return result == null;
+    }
+
+    public boolean isEmpty() {
+        return source.isEmpty();
+    }
+
+    /**
+     * Checks if the row compiled to an Image.
+     *
+     * @return true if the row is non-empty, up to date and valid
+     */
+    public boolean isCompiled() {
+        return result != null && result.getImage() != null;
+    }
+
+    /**
+     * Gets the compiled Image.
+     *
+     * @return the Image, or null if the row is empty, invalid or stale
+     */
+    public Image getImage() {
+        return result != null ? result.getImage() : null;
+    }
+
+    /**
+     * Gets the line sent to the device for this row, with 0-based LED indices.
+     *
+     * @return the program line, or null if the row did not compile
+     */
+    public String getProgramLine() {
+        return programLine;
+    }
+
+    void setImageId(long imageId) {
+        this.imageId = imageId;
+    }
+
+    void setSource(String source) {
+        this.source = source;
+        invalidate();
+    }
+
+    void invalidate() {
+        this.result = null;
+        this.programLine = null;
+    }
+
+    void setResult(RowValidationResult result) {
+        this.result = result;
+        this.programLine = result.getImage() != null ? result.getImage().toProgramLine() : null;
+    }
+}
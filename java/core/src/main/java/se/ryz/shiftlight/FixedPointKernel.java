@@ -0,0 +1,64 @@
+package se.ryz.shiftlight;
+
+/**
+ * Integer colour interpolation, the specification of Display::calculateColors in the firmware.
+ * The float version computed start + (end - start) * proportion and truncated the result,
+ * which is slow on an 8-bit AVR without an FPU. This kernel computes the same value,
+ * floor(start + (end - start) * offset / span), with integers only:
+ * one 32-bit division per Image for a Q16 proportion, then per colour channel a multiply,
+ * a shift and a remainder check that corrects the Q16 rounding error.
+ * All intermediate values fit in 32 bits for RPMs up to 9999.
+ * The result differs from the float version only where float rounding made that version
+ * truncate a value that is exactly an integer to one below it; see KernelEquivalenceChecker.
+ */
+public final class FixedPointKernel {
+    public static final int PROPORTION_BITS = 16;
+    /** The proportion of an Image with startRPM == endRPM, which shows the end colour. */
+    public static final int FULL_PROPORTION = 1 << PROPORTION_BITS;
+
+    private FixedPointKernel() {
+    }
+
+    /**
+     * Computes the Q16 proportion of an RPM in an Image's range, rounded down.
+     *
+     * @param offset rpm - startRPM after clamping rpm to the range, 0 to span
+     * @param span endRPM - startRPM
+     * @return the proportion, 0 to FULL_PROPORTION
+     */
+    public static int proportion(int offset, int span) {
+        if (span == 0) {
+            return FULL_PROPORTION;
+        }
+        return (offset << PROPORTION_BITS) / span;
+    }
+
+    /**
+     * Interpolates one colour channel.
+     *
+     * @param start the start colour, 0-255
+     * @param end the end colour, 0-255
+     * @param offset rpm - startRPM after clamping rpm to the range, 0 to span
+     * @param span endRPM - startRPM
+     * @param proportion the result of proportion(offset, span)
+     * @return floor(start + (end - start) * offset / span), or end if span is 0
+     */
+    public static int interpolate(int start, int end, int offset, int span, int proportion) {
+        if (span == 0) {
+            return end;
+        }
+        int diff = end - start;
+        int step = (diff * proportion) >> PROPORTION_BITS;
+        // The Q16 proportion is rounded down; correct step to floor(diff * offset / span)
+        int remainder = diff * offset - step * span;
+        while (remainder < 0) {
+            step--;
+            remainder += span;
+        }
+        while (remainder >= span) {
+            step++;
+            remainder -= span;
+        }
+        return start + step;
+    }
+}
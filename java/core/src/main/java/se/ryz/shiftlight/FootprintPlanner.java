@@ -0,0 +1,102 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+/**
+ * Plans the EEPROM footprint of a program on a device.
+ * The footprint is the image count header plus one Display::Image per image,
+ * as written by Display::writeImagesToEEPROM.
+ */
+public class FootprintPlanner {
+    private final DeviceProfile profile;
+
+    public FootprintPlanner(DeviceProfile profile) {
+        this.profile = profile;
+    }
+
+    public DeviceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Computes the footprint of a program with the given number of images.
+     *
+     * @param imageCount the number of images in the program
+     * @return the footprint on this planner's device
+     */
+    public Footprint plan(int imageCount) {
+        int bytesUsed = profile.getIntBytes() + imageCount * profile.getImageBytes();
+        return new Footprint(profile, imageCount, bytesUsed);
+    }
+
+    /**
+     * Checks that a program with the given number of images fits on the device.
+     *
+     * @param imageCount the number of images in the program
+     * @throws IllegalArgumentException if the program would overflow the device
+     */
+    public void checkFits(int imageCount) {
+        Footprint footprint = plan(imageCount);
+        if (!footprint.fits()) {
+            throw new IllegalArgumentException(footprint.getOverflowReason());
+        }
+    }
+
+    @Getter
+    public static class Footprint {
+        private final DeviceProfile profile;
+        private final int imageCount;
+        private final int bytesUsed;
+
+        Footprint(DeviceProfile profile, int imageCount, int bytesUsed) {
+            this.profile = profile;
+            this.imageCount = imageCount;
+            this.bytesUsed = bytesUsed;
+        }
+
+        public int getBytesRemaining() {
+            return profile.getEepromBytes() - bytesUsed;
+        }
+
+        public int getImagesRemaining() {
+            return profile.getImageCapacity() - imageCount;
+        }
+
+        /**
+         * Checks if the program fits both the firmware image table and the EEPROM.
+         *
+         * @return true if the program can be uploaded
+         */
+        public boolean fits() {
+            return imageCount <= profile.getMaxImages() && bytesUsed <= profile.getEepromBytes();
+        }
+
+        /**
+         * Describes why the program does not fit.
+         *
+         * @return the reason, or null if the program fits
+         */
+        public String getOverflowReason() {
+            if (imageCount > profile.getMaxImages()) {
+                return "Program has " + imageCount + " images but " + profile.getBoard()
+                    + " supports at most " + profile.getMaxImages();
+            }
+            if (bytesUsed > profile.getEepromBytes()) {
+                return "Program needs " + bytesUsed + " bytes but " + profile.getBoard()
+                    + " has " + profile.getEepromBytes() + " bytes of EEPROM";
+            }
+            return null;
+        }
+
+        /**
+         * Formats the footprint for display, e.g. "EEPROM 301/1024 bytes (723 free), 23/40 images".
+         *
+         * @return a one-line summary of the footprint
+         */
+        public String describe() {
+            return "EEPROM " + bytesUsed + "/" + profile.getEepromBytes() + " bytes ("
+                + (getBytesRemaining() >= 0 ? getBytesRemaining() + " free" : -getBytesRemaining() + " over")
+                + "), " + imageCount + "/" + profile.getImageCapacity() + " images";
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The frames of a program rendered for every RPM from 0 to RenderEngine.MAX_RPM,
+ * for scrubbing and analysis without rendering on each lookup.
+ * Consecutive RPMs with the same frame share a run, so only colour gradients cost
+ * one frame per RPM; solid colour Images take one frame for their whole range. Lookups are O(1): a char array maps
+ * each RPM to its run and the frames of the runs are packed into an int array.
+ * After a change to the program, update() only re-renders the RPM span covered by
+ * the Images that differ, into the run arrays of the update before, so editing does
+ * not allocate a table per change.
+ */
+public class FrameTable {
+    public static final int RPM_COUNT = RenderEngine.MAX_RPM + 1;
+
+    private List<Image> images;
+    private char[] runByRpm;
+    private int[] runStarts;
+    private int[] runFrames;
+    private int runCount;
+    private RunBuilder runs;
+    private RunBuilder spareRuns;
+    private final LedFrame frame = new LedFrame();
+    private int[] spanImages = new int[16];
+
+    private FrameTable() {
+    }
+
+    /**
+     * Renders a program over the whole RPM range.
+     *
+     * @param images the Images in program order
+     * @return the frame table
+     */
+    public static FrameTable compile(List<Image> images) {
+        FrameTable table = new FrameTable();
+        table.images = new ArrayList<>(images);
+        table.runByRpm = new char[RPM_COUNT];
+        RunBuilder builder = new RunBuilder(16);
+        table.renderSpan(0, RenderEngine.MAX_RPM, builder);
+        table.setRuns(builder);
+        return table;
+    }
+
+    /**
+     * Updates the table to a changed program. Only the Images between the unchanged
+     * Images at the start and the end of the program are compared, and only the RPM
+     * span they cover is rendered again; RPMs outside it show the same Images in the
+     * same order before and after the change.
+     *
+     * @param newImages the Images in program order
+     * @return the number of RPMs rendered again
+     */
+    public int update(List<Image> newImages) {
+        List<Image> oldImages = images;
+        int prefix = 0;
+        while (prefix < oldImages.size() && prefix < newImages.size()
+                && oldImages.get(prefix).equals(newImages.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldImages.size() - prefix && suffix < newImages.size() - prefix
+                && oldImages.get(oldImages.size() - 1 - suffix).equals(newImages.get(newImages.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        int from = Integer.MAX_VALUE;
+        int to = Integer.MIN_VALUE;
+        for (int i = prefix; i < oldImages.size() - suffix; i++) {
+            from = Math.min(from, oldImages.get(i).getStartRPM());
+            to = Math.max(to, oldImages.get(i).getEndRPM());
+        }
+        for (int i = prefix; i < newImages.size() - suffix; i++) {
+            from = Math.min(from, newImages.get(i).getStartRPM());
+            to = Math.max(to, newImages.get(i).getEndRPM());
+        }
+        if (from > to) {
+            return 0; // Same program
+        }
+        // The old list is no longer needed, it is reused for the new program
+        oldImages.clear();
+        oldImages.addAll(newImages);
+
+        // Copy the runs before the span, render the span and copy the runs after it, into
+        // the arrays the update before this one left. An edit usually changes the run count
+        // little, so they rarely have to grow.
+        RunBuilder builder = spareRuns != null ? spareRuns.reset() : new RunBuilder(runCount + 16);
+        int firstRun = from > 0 ? runByRpm[from - 1] : -1;
+        for (int run = 0; run <= firstRun; run++) {
+            int end = Math.min(getRunEnd(run), from - 1);
+            unpack(run, frame);
+            builder.append(runStarts[run], end, frame);
+        }
+        renderSpan(from, to, builder);
+        if (to < RenderEngine.MAX_RPM) {
+            for (int run = runByRpm[to + 1]; run < runCount; run++) {
+                int start = Math.max(runStarts[run], to + 1);
+                unpack(run, frame);
+                builder.append(start, getRunEnd(run), frame);
+            }
+        }
+        setRuns(builder);
+        return to - from + 1;
+    }
+
+    /**
+     * Gets the Images the table was rendered from.
+     *
+     * @return a copy of the list of Images in program order
+     */
+    public List<Image> getImages() {
+        return new ArrayList<>(images);
+    }
+
+    /**
+     * Gets the frame at an RPM.
+     *
+     * @param rpm the RPM
+     * @return a new frame, all LEDs off for RPMs outside 0 to RenderEngine.MAX_RPM
+     */
+    public LedFrame getFrame(int rpm) {
+        LedFrame frame = new LedFrame();
+        if (rpm >= 0 && rpm < RPM_COUNT) {
+            unpack(runByRpm[rpm], frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Gets the colour of an LED slot at an RPM without creating a frame.
+     *
+     * @param rpm the RPM, 0 to RenderEngine.MAX_RPM
+     * @param slot the LED slot, 0-13
+     * @return the colour packed as 0xRRGGBB
+     */
+    public int getRgb(int rpm, int slot) {
+        return runFrames[runByRpm[rpm] * LedFrame.SLOT_COUNT + slot] >>> 2;
+    }
+
+    /**
+     * Gets the blink rate of an LED slot at an RPM without creating a frame.
+     *
+     * @param rpm the RPM, 0 to RenderEngine.MAX_RPM
+     * @param slot the LED slot, 0-13
+     * @return the blink rate, 0-2
+     */
+    public int getBlinkRate(int rpm, int slot) {
+        return runFrames[runByRpm[rpm] * LedFrame.SLOT_COUNT + slot] & 0x3;
+    }
+
+    /**
+     * Gets the number of runs of equal frames.
+     *
+     * @return the number of runs, at least 1
+     */
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getRunIndex(int rpm) {
+        return runByRpm[rpm];
+    }
+
+    public int getRunStart(int run) {
+        return runStarts[run];
+    }
+
+    public int getRunEnd(int run) {
+        return run + 1 < runCount ? runStarts[run + 1] - 1 : RenderEngine.MAX_RPM;
+    }
+
+    /**
+     * Renders like RenderEngine, but only scans the Images overlapping the span, which are
+     * few for an edit, instead of building an RpmIntervalIndex for every update.
+     */
+    private void renderSpan(int from, int to, RunBuilder builder) {
+        int count = 0;
+        for (int i = 0; i < images.size(); i++) {
+            Image image = images.get(i);
+            if (image.getStartRPM() <= to && image.getEndRPM() >= from) {
+                if (count == spanImages.length) {
+                    spanImages = Arrays.copyOf(spanImages, count * 2);
+                }
+                spanImages[count++] = i;
+            }
+        }
+        for (int rpm = from; rpm <= to; rpm++) {
+            frame.clear();
+            for (int i = 0; i < count; i++) {
+                Image image = images.get(spanImages[i]);
+                if (image.getStartRPM() <= rpm && rpm <= image.getEndRPM()) {
+                    RenderEngine.calculateColors(rpm, image, frame, RenderEngine.Kernel.FIXED_POINT);
+                }
+            }
+            builder.append(rpm, rpm, frame);
+        }
+    }
+
+    private void unpack(int run, LedFrame frame) {
+        int offset = run * LedFrame.SLOT_COUNT;
+        for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+            frame.setPacked(slot, runFrames[offset + slot]);
+        }
+    }
+
+    private void setRuns(RunBuilder builder) {
+        // The arrays are taken over with their spare capacity, only the first runCount runs are
+        // used. The runs they replace are rendered into by the next update.
+        spareRuns = runs;
+        runs = builder;
+        runStarts = builder.starts;
+        runFrames = builder.frames;
+        runCount = builder.count;
+        for (int run = 0; run < runCount; run++) {
+            Arrays.fill(runByRpm, runStarts[run], getRunEnd(run) + 1, (char) run);
+        }
+    }
+
+    /**
+     * Collects runs in RPM order, merging a range into the previous run if the frames are equal.
+     */
+    private static class RunBuilder {
+        private int[] starts;
+        private int[] frames;
+        private int count;
+
+        RunBuilder(int capacity) {
+            starts = new int[capacity];
+            frames = new int[capacity * LedFrame.SLOT_COUNT];
+        }
+
+        RunBuilder reset() {
+            count = 0;
+            return this;
+        }
+
+        void append(int from, int to, LedFrame frame) {
+            if (from > to) {
+                return;
+            }
+            if (count > 0 && sameAsLast(frame)) {
+                return; // Extends the previous run
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                frames = Arrays.copyOf(frames, count * 2 * LedFrame.SLOT_COUNT);
+            }
+            starts[count] = from;
+            int offset = count * LedFrame.SLOT_COUNT;
+            for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+                frames[offset + slot] = frame.getPacked(slot);
+            }
+            count++;
+        }
+
+        private boolean sameAsLast(LedFrame frame) {
+            int offset = (count - 1) * LedFrame.SLOT_COUNT;
+            for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+                if (frames[offset + slot] != frame.getPacked(slot)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package se.ryz.shiftlight;
+
+import java.util.Arrays;
+
+/**
+ * Frame timing of a playback: the time between frames, the time spent producing each
+ * frame and the number of frames dropped to keep up with the clock.
+ * The most recent frames are kept for percentiles. Thread safe.
+ */
+public class FrameTimingStats {
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    private final long[] intervalNanos;
+    private final long[] renderNanos;
+    private long frameCount;
+    private long droppedFrames;
+
+    public FrameTimingStats() {
+        this.intervalNanos = new long[MAX_SAMPLES];
+        this.renderNanos = new long[MAX_SAMPLES];
+    }
+
+    /**
+     * Records a rendered frame.
+     *
+     * @param intervalNanos time since the previous rendered frame, or 0 for the first frame
+     * @param renderNanos time spent producing the frame
+     */
+    public synchronized void recordFrame(long intervalNanos, long renderNanos) {
+        int slot = (int) (frameCount % MAX_SAMPLES);
+        this.intervalNanos[slot] = intervalNanos;
+        this.renderNanos[slot] = renderNanos;
+        frameCount++;
+    }
+
+    public synchronized void recordDropped(long frames) {
+        droppedFrames += frames;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Gets a percentile of the time between frames.
+     *
+     * @param percentile the percentile, 0-100
+     * @return the interval in milliseconds, 0 if fewer than two frames were rendered
+     */
+    public synchronized double getIntervalPercentileMillis(double percentile) {
+        // The first frame has no interval
+        return percentile(intervalNanos, frameCount > MAX_SAMPLES ? 0 : 1, percentile);
+    }
+
+    /**
+     * Gets a percentile of the time spent producing frames.
+     *
+     * @param percentile the percentile, 0-100
+     * @return the render time in milliseconds, 0 if no frame was rendered
+     */
+    public synchronized double getRenderPercentileMillis(double percentile) {
+        return percentile(renderNanos, 0, percentile);
+    }
+
+    private double percentile(long[] samples, int skip, double percentile) {
+        int count = (int) Math.min(frameCount, MAX_SAMPLES);
+        if (count - skip <= 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOfRange(samples, skip, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+
+    /**
+     * Describes the stats on one line for status labels and logs.
+     *
+     * @return e.g. "600 frames, 2 dropped, interval p50/p95/p99 16.7/17.1/18.0 ms, render p99 0.05 ms"
+     */
+    public synchronized String describe() {
+        return String.format("%d frames, %d dropped, interval p50/p95/p99 %.1f/%.1f/%.1f ms, render p99 %.2f ms",
+            frameCount, droppedFrames,
+            getIntervalPercentileMillis(50), getIntervalPercentileMillis(95), getIntervalPercentileMillis(99),
+            getRenderPercentileMillis(99));
+    }
+}
@@ -29,32 +29,59 @@ public class Image {
         parseCsvLine(csvLine, variableParser);
     }
 
-    private void parseCsvLine(String csvLine, VariableParser variableParser) {
-        String trimmed = csvLine.trim();
-        
-        // Find the bracket part (first value)
-        int bracketStart = trimmed.indexOf('[');
-        int bracketEnd = trimmed.indexOf(']');
-        
-        if (bracketStart != 0 || bracketEnd == -1) {
-            throw new IllegalArgumentException("First value must be in brackets: [1,2,4-6,8]");
+    /**
+     * Creates an Image from already evaluated values.
+     * The values are validated the same way as values parsed from a CSV line.
+     * 
+     * @param ledIndices LED indices, 1-13
+     * @param blinkMode blink mode, 0-2
+     * @param optionalValue value 0-255, required when blinkMode is not 0 and ignored otherwise
+     * @throws IllegalArgumentException if any value is out of range
+     */
+    public Image(List<Integer> ledIndices, int startRPM, int endRPM, int startRed, int startGreen, int startBlue,
+                 int endRed, int endGreen, int endBlue, int blinkMode, Integer optionalValue) {
+        if (ledIndices.isEmpty()) {
+            throw new IllegalArgumentException("At least one LED index is required");
         }
-        
-        // Extract the bracket part (including brackets)
-        String ledPart = trimmed.substring(bracketStart, bracketEnd + 1);
-        
-        // Extract the rest after the closing bracket and comma
-        String rest = trimmed.substring(bracketEnd + 1).trim();
-        if (!rest.startsWith(",")) {
-            throw new IllegalArgumentException("Missing comma after bracket part");
+        for (int index : ledIndices) {
+            if (index < 1 || index > 13) {
+                throw new IllegalArgumentException("LED index must be between 1 and 13: " + index);
+            }
         }
-        rest = rest.substring(1); // Remove the comma
+        this.ledIndices = new ArrayList<>(ledIndices);
+        this.startRPM = startRPM;
+        this.endRPM = endRPM;
+        this.startRed = startRed;
+        this.startGreen = startGreen;
+        this.startBlue = startBlue;
+        this.endRed = endRed;
+        this.endGreen = endGreen;
+        this.endBlue = endBlue;
+        validateValues();
         
-        // Split the remaining part by commas (these are the actual separators)
-        String[] parts = rest.split(",");
+        if (blinkMode < 0 || blinkMode > 2) {
+            throw new IllegalArgumentException("Blink mode must be in range 0-2, got: " + blinkMode);
+        }
+        this.blinkMode = String.valueOf(blinkMode);
+        if (blinkMode != 0) {
+            if (optionalValue == null) {
+                throw new IllegalArgumentException("When blink mode is not 0, an additional value (0-255) is required");
+            }
+            if (optionalValue < 0 || optionalValue > 255) {
+                throw new IllegalArgumentException("Optional value must be in range 0-255, got: " + optionalValue);
+            }
+            this.optionalValue = optionalValue;
+        } else {
+            this.optionalValue = null;
+        }
+    }
+
+    private void parseCsvLine(String csvLine, VariableParser variableParser) {
+        ImageSource source = ImageSource.parse(csvLine);
+        String[] parts = source.getFields();
         
         // Parse LED indices from the bracket part
-        ledIndices = parseLedIndices(ledPart.substring(1, ledPart.length() - 1));
+        ledIndices = parseLedIndices(source.getLedPart());
         
         // Parse the remaining values, supporting variable expressions
         // First 8 values are always required
@@ -62,50 +89,18 @@ public class Image {
             throw new IllegalArgumentException("CSV line must have at least 10 values (9 commas outside brackets)");
         }
         
-        startRPM = parseNumericValue(parts[0].trim(), variableParser);
-        endRPM = parseNumericValue(parts[1].trim(), variableParser);
-        startRed = parseNumericValue(parts[2].trim(), variableParser);
-        startGreen = parseNumericValue(parts[3].trim(), variableParser);
-        startBlue = parseNumericValue(parts[4].trim(), variableParser);
-        endRed = parseNumericValue(parts[5].trim(), variableParser);
-        endGreen = parseNumericValue(parts[6].trim(), variableParser);
-        endBlue = parseNumericValue(parts[7].trim(), variableParser);
-        
-        // Validate RPM values (range 0-9999)
-        if (startRPM < 0 || startRPM > 9999) {
-            throw new IllegalArgumentException("Start RPM must be in range 0-9999, got: " + startRPM);
-        }
-        if (endRPM < 0 || endRPM > 9999) {
-            throw new IllegalArgumentException("End RPM must be in range 0-9999, got: " + endRPM);
-        }
-        
-        // Validate startRPM <= endRPM
-        if (startRPM > endRPM) {
-            throw new IllegalArgumentException("Start RPM (" + startRPM + ") must be less than or equal to End RPM (" + endRPM + ")");
-        }
-        
-        // Validate RGB values (range 0-255)
-        if (startRed < 0 || startRed > 255) {
-            throw new IllegalArgumentException("Start Red must be in range 0-255, got: " + startRed);
-        }
-        if (startGreen < 0 || startGreen > 255) {
-            throw new IllegalArgumentException("Start Green must be in range 0-255, got: " + startGreen);
-        }
-        if (startBlue < 0 || startBlue > 255) {
-            throw new IllegalArgumentException("Start Blue must be in range 0-255, got: " + startBlue);
-        }
-        if (endRed < 0 || endRed > 255) {
-            throw new IllegalArgumentException("End Red must be in range 0-255, got: " + endRed);
-        }
-        if (endGreen < 0 || endGreen > 255) {
-            throw new IllegalArgumentException("End Green must be in range 0-255, got: " + endGreen);
-        }
-        if (endBlue < 0 || endBlue > 255) {
-            throw new IllegalArgumentException("End Blue must be in range 0-255, got: " + endBlue);
-        }
+        startRPM = parseNumericValue(parts[ImageSource.START_RPM], variableParser);
+        endRPM = parseNumericValue(parts[ImageSource.END_RPM], variableParser);
+        startRed = parseNumericValue(parts[ImageSource.START_RED], variableParser);
+        startGreen = parseNumericValue(parts[ImageSource.START_GREEN], variableParser);
+        startBlue = parseNumericValue(parts[ImageSource.START_BLUE], variableParser);
+        endRed = parseNumericValue(parts[ImageSource.END_RED], variableParser);
+        endGreen = parseNumericValue(parts[ImageSource.END_GREEN], variableParser);
+        endBlue = parseNumericValue(parts[ImageSource.END_BLUE], variableParser);
+        validateValues();
         
         // Validate blinkMode (9th value) is in range 0-2
-        String blinkModeStr = parts[8].trim();
+        String blinkModeStr = parts[ImageSource.BLINK_MODE];
         int blinkModeValue;
         try {
             blinkModeValue = Integer.parseInt(blinkModeStr);
@@ -123,7 +118,7 @@ public class Image {
             if (parts.length < 10) {
                 throw new IllegalArgumentException("When blink mode is not 0, an additional value (0-255) is required");
             }
-            int optional = parseNumericValue(parts[9].trim(), variableParser);
+            int optional = parseNumericValue(parts[ImageSource.OPTIONAL_VALUE], variableParser);
             if (optional < 0 || optional > 255) {
                 throw new IllegalArgumentException("Optional value must be in range 0-255, got: " + optional);
             }
@@ -141,6 +136,50 @@ public class Image {
         }
     }
 
+    private void validateValues() {
+        // Validate RPM values (range 0-9999)
+        if (startRPM < 0 || startRPM > 9999) {
+            throw new IllegalArgumentException("Start RPM must be in range 0-9999, got: " + startRPM);
+        }
+        if (endRPM < 0 || endRPM > 9999) {
+            throw new IllegalArgumentException("End RPM must be in range 0-9999, got: " + endRPM);
+        }
+        
+        // Validate startRPM <= endRPM
+        if (startRPM > endRPM) {
+            throw new IllegalArgumentException("Start RPM (" + startRPM + ") must be less than or equal to End RPM (" + endRPM + ")");
+        }
+        
+        // Validate RGB values (range 0-255)
+        if (startRed < 0 || startRed > 255) {
+            throw new IllegalArgumentException("Start Red must be in range 0-255, got: " + startRed);
+        }
+        if (startGreen < 0 || startGreen > 255) {
+            throw new IllegalArgumentException("Start Green must be in range 0-255, got: " + startGreen);
+        }
+        if (startBlue < 0 || startBlue > 255) {
+            throw new IllegalArgumentException("Start Blue must be in range 0-255, got: " + startBlue);
+        }
+        if (endRed < 0 || endRed > 255) {
+            throw new IllegalArgumentException("End Red must be in range 0-255, got: " + endRed);
+        }
+        if (endGreen < 0 || endGreen > 255) {
+            throw new IllegalArgumentException("End Green must be in range 0-255, got: " + endGreen);
+        }
+        if (endBlue < 0 || endBlue > 255) {
+            throw new IllegalArgumentException("End Blue must be in range 0-255, got: " + endBlue);
+        }
+    }
+
+    /**
+     * Gets the blink mode as a number.
+     * 
+     * @return the blink mode, 0-2
+     */
+    public int getBlinkModeValue() {
+        return Integer.parseInt(blinkMode);
+    }
+
     private List<Integer> parseLedIndices(String ledString) {
         List<Integer> indices = new ArrayList<>();
         String[] elements = ledString.split(",");
@@ -208,11 +247,26 @@ public class Image {
      * @return CSV line in the format: [1,2,4-6,8],startRPM,endRPM,startRed,startGreen,startBlue,endRed,endGreen,endBlue,blinkMode
      */
     public String toCsvLine() {
+        return toCsvLine(0);
+    }
+
+    /**
+     * Generates the line sent to the device for this Image.
+     * Same as toCsvLine() but with 0-based LED indices, as expected by Display::addImageFromString.
+     * Example: [1,2,7-9] becomes [0,1,6-8]
+     * 
+     * @return CSV line with LED indices converted from 1-based to 0-based
+     */
+    public String toProgramLine() {
+        return toCsvLine(-1);
+    }
+
+    private String toCsvLine(int ledIndexOffset) {
         StringBuilder sb = new StringBuilder();
         
         // Format LED indices with ranges for consecutive sequences of 3+
         sb.append("[");
-        sb.append(formatLedIndices());
+        sb.append(formatLedIndices(ledIndices, ledIndexOffset));
         sb.append("]");
         
         // Append the rest of the values
@@ -233,7 +287,15 @@ public class Image {
         return sb.toString();
     }
 
-    private String formatLedIndices() {
+    /**
+     * Formats LED indices for the bracket part of a CSV line.
+     * Consecutive LED indices of 3 or more are represented as ranges (e.g., 3,4,5 -> 3-5).
+     * 
+     * @param ledIndices the LED indices, in any order
+     * @param offset value added to every index, e.g. -1 for 0-based device indices
+     * @return the indices without brackets, e.g. "1,2,4-6,8"
+     */
+    public static String formatLedIndices(List<Integer> ledIndices, int offset) {
         if (ledIndices.isEmpty()) {
             return "";
         }
@@ -261,14 +323,14 @@ public class Image {
                 if (sb.length() > 0) {
                     sb.append(",");
                 }
-                sb.append(start).append("-").append(end);
+                sb.append(start + offset).append("-").append(end + offset);
             } else {
                 // Format as individual numbers
                 for (int j = 0; j < count; j++) {
                     if (sb.length() > 0) {
                         sb.append(",");
                     }
-                    sb.append(sorted.get(i + j));
+                    sb.append(sorted.get(i + j) + offset);
                 }
             }
             
@@ -0,0 +1,124 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The fields of an Image CSV line as written, before any expression is evaluated.
+ * Used to rewrite single fields of a line while keeping the user's expressions
+ * in the other fields intact.
+ */
+public class ImageSource {
+    public static final int START_RPM = 0;
+    public static final int END_RPM = 1;
+    public static final int START_RED = 2;
+    public static final int START_GREEN = 3;
+    public static final int START_BLUE = 4;
+    public static final int END_RED = 5;
+    public static final int END_GREEN = 6;
+    public static final int END_BLUE = 7;
+    public static final int BLINK_MODE = 8;
+    public static final int OPTIONAL_VALUE = 9;
+
+    private String ledPart;
+    private final List<String> fields;
+
+    private ImageSource(String ledPart, List<String> fields) {
+        this.ledPart = ledPart;
+        this.fields = fields;
+    }
+
+    /**
+     * Splits a CSV line into the LED part and the comma separated fields after it.
+     * Only the structure is checked; the fields are not evaluated.
+     *
+     * @param csvLine CSV line in the format: [1,2,4-6,8],startRPM,endRPM,startRed,startGreen,startBlue,endRed,endGreen,endBlue,blinkMode
+     * @return the split line
+     * @throws IllegalArgumentException if the bracket part or the comma after it is missing
+     */
+    public static ImageSource parse(String csvLine) {
+        String trimmed = csvLine.trim();
+
+        // Find the bracket part (first value)
+        int bracketStart = trimmed.indexOf('[');
+        int bracketEnd = trimmed.indexOf(']');
+
+        if (bracketStart != 0 || bracketEnd == -1) {
+            throw new IllegalArgumentException("First value must be in brackets: [1,2,4-6,8]");
+        }
+
+        // Extract the LED part (without brackets)
+        String ledPart = trimmed.substring(bracketStart + 1, bracketEnd);
+
+        // Extract the rest after the closing bracket and comma
+        String rest = trimmed.substring(bracketEnd + 1).trim();
+        if (!rest.startsWith(",")) {
+            throw new IllegalArgumentException("Missing comma after bracket part");
+        }
+        rest = rest.substring(1); // Remove the comma
+
+        // Split the remaining part by commas (these are the actual separators)
+        return new ImageSource(ledPart, new ArrayList<>(Arrays.asList(rest.split(","))));
+    }
+
+    /**
+     * Gets the text between the brackets, e.g. "1,2,4-6,8".
+     *
+     * @return the LED part without brackets
+     */
+    public String getLedPart() {
+        return ledPart;
+    }
+
+    public void setLedPart(String ledPart) {
+        this.ledPart = ledPart;
+    }
+
+    public int getFieldCount() {
+        return fields.size();
+    }
+
+    /**
+     * Gets a field after the LED part, trimmed.
+     *
+     * @param index the field index, e.g. START_RPM
+     * @return the field text
+     */
+    public String getField(int index) {
+        return fields.get(index).trim();
+    }
+
+    public void setField(int index, String value) {
+        fields.set(index, value);
+    }
+
+    /**
+     * Removes all fields from the given index on.
+     *
+     * @param fieldCount the number of fields to keep
+     */
+    public void truncate(int fieldCount) {
+        while (fields.size() > fieldCount) {
+            fields.remove(fields.size() - 1);
+        }
+    }
+
+    /**
+     * Gets the field values, trimmed.
+     *
+     * @return a copy of the fields
+     */
+    public String[] getFields() {
+        String[] values = new String[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getField(i);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + ledPart + "]," + String.join(",", fields);
+    }
+}
@@ -0,0 +1,46 @@
+package se.ryz.shiftlight;
+
+/**
+ * A transformation applied to many Images at once, see Animation.transform
+ * and AnimationDocument.transformRows.
+ * A transform works on compiled Images and on source text. Rewriting the source
+ * keeps the user's variable expressions where the transform allows it; the
+ * rewritten source must evaluate to the same Image as apply().
+ */
+public interface ImageTransform {
+    /**
+     * Transforms a compiled Image.
+     *
+     * @param image the Image to transform
+     * @return the transformed Image
+     * @throws IllegalArgumentException if the result is not a valid Image
+     */
+    Image apply(Image image);
+
+    /**
+     * Transforms the source text of a row.
+     *
+     * @param source the CSV line as written
+     * @param variableParser parser holding the variables used by the source, or null for plain CSV
+     * @return the rewritten CSV line
+     * @throws IllegalArgumentException if the source is invalid
+     */
+    default String applyToSource(String source, VariableParser variableParser) {
+        Image image = variableParser != null ? new Image(source, variableParser) : new Image(source);
+        Image transformed = apply(image);
+        // Write evaluated values into the source, keeping the fields as the user wrote them otherwise
+        ImageSource imageSource = ImageSource.parse(source);
+        if (!transformed.getLedIndices().equals(image.getLedIndices())) {
+            imageSource.setLedPart(Image.formatLedIndices(transformed.getLedIndices(), 0));
+        }
+        ImageTransforms.setIfChanged(imageSource, ImageSource.START_RPM, image.getStartRPM(), transformed.getStartRPM());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.END_RPM, image.getEndRPM(), transformed.getEndRPM());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.START_RED, image.getStartRed(), transformed.getStartRed());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.START_GREEN, image.getStartGreen(), transformed.getStartGreen());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.START_BLUE, image.getStartBlue(), transformed.getStartBlue());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.END_RED, image.getEndRed(), transformed.getEndRed());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.END_GREEN, image.getEndGreen(), transformed.getEndGreen());
+        ImageTransforms.setIfChanged(imageSource, ImageSource.END_BLUE, image.getEndBlue(), transformed.getEndBlue());
+        return imageSource.toString();
+    }
+}
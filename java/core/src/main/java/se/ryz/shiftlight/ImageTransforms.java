@@ -0,0 +1,254 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Factory methods for the bulk transforms offered by the editor.
+ * RPM transforms and dimming keep variable expressions in the source by wrapping
+ * them, e.g. "redline" offset by 300 becomes "(redline)+300". Transforms that can't be
+ * expressed with the integer expression language write evaluated values instead.
+ * Results that fall outside the valid ranges are rejected, not clamped, except for
+ * brightening which saturates colours at 255.
+ */
+public final class ImageTransforms {
+    private static final int FACTOR_PRECISION = 1000;
+
+    private ImageTransforms() {
+    }
+
+    /**
+     * Moves the RPM range of each Image, e.g. +300 to fit an engine that revs higher.
+     *
+     * @param delta RPM added to startRPM and endRPM, may be negative
+     * @return the transform
+     */
+    public static ImageTransform offsetRpm(int delta) {
+        return new ImageTransform() {
+            @Override
+            public Image apply(Image image) {
+                return withRpm(image, image.getStartRPM() + delta, image.getEndRPM() + delta);
+            }
+
+            @Override
+            public String applyToSource(String source, VariableParser variableParser) {
+                ImageSource imageSource = ImageSource.parse(source);
+                imageSource.setField(ImageSource.START_RPM, offsetExpression(imageSource.getField(ImageSource.START_RPM), delta));
+                imageSource.setField(ImageSource.END_RPM, offsetExpression(imageSource.getField(ImageSource.END_RPM), delta));
+                return imageSource.toString();
+            }
+        };
+    }
+
+    /**
+     * Scales the RPM range of each Image around 0 RPM.
+     * The factor is applied as a fraction with a precision of 1/1000 and the result is
+     * truncated like the integer expression language does.
+     *
+     * @param factor the scale factor, e.g. 1.1 for 10% higher RPMs
+     * @return the transform
+     */
+    public static ImageTransform scaleRpm(double factor) {
+        int[] fraction = toFraction(factor);
+        int numerator = fraction[0];
+        int denominator = fraction[1];
+        return new ImageTransform() {
+            @Override
+            public Image apply(Image image) {
+                return withRpm(image, image.getStartRPM() * numerator / denominator, image.getEndRPM() * numerator / denominator);
+            }
+
+            @Override
+            public String applyToSource(String source, VariableParser variableParser) {
+                ImageSource imageSource = ImageSource.parse(source);
+                imageSource.setField(ImageSource.START_RPM, scaleExpression(imageSource.getField(ImageSource.START_RPM), numerator, denominator));
+                imageSource.setField(ImageSource.END_RPM, scaleExpression(imageSource.getField(ImageSource.END_RPM), numerator, denominator));
+                return imageSource.toString();
+            }
+        };
+    }
+
+    /**
+     * Moves each lit LED to another position, e.g. i -> 14 - i to mirror the strip.
+     * LEDs mapped to the same position are merged.
+     *
+     * @param mapping maps an LED index (1-13) to its new index (1-13)
+     * @return the transform
+     */
+    public static ImageTransform remapLeds(IntUnaryOperator mapping) {
+        return image -> {
+            TreeSet<Integer> remapped = new TreeSet<>();
+            for (int index : image.getLedIndices()) {
+                remapped.add(mapping.applyAsInt(index));
+            }
+            return new Image(new ArrayList<>(remapped), image.getStartRPM(), image.getEndRPM(),
+                image.getStartRed(), image.getStartGreen(), image.getStartBlue(),
+                image.getEndRed(), image.getEndGreen(), image.getEndBlue(),
+                image.getBlinkModeValue(), image.getOptionalValue());
+        };
+    }
+
+    /**
+     * Multiplies all colour channels of each Image.
+     * Dimming (factor up to 1) keeps expressions in the source; brightening saturates at 255
+     * and writes evaluated values.
+     *
+     * @param factor the brightness factor, at least 0
+     * @return the transform
+     */
+    public static ImageTransform multiplyBrightness(double factor) {
+        int[] fraction = toFraction(factor);
+        int numerator = fraction[0];
+        int denominator = fraction[1];
+        boolean dimming = numerator <= denominator;
+        return new ImageTransform() {
+            @Override
+            public Image apply(Image image) {
+                return withColors(image,
+                    scaleChannel(image.getStartRed()), scaleChannel(image.getStartGreen()), scaleChannel(image.getStartBlue()),
+                    scaleChannel(image.getEndRed()), scaleChannel(image.getEndGreen()), scaleChannel(image.getEndBlue()));
+            }
+
+            @Override
+            public String applyToSource(String source, VariableParser variableParser) {
+                if (!dimming) {
+                    return ImageTransform.super.applyToSource(source, variableParser);
+                }
+                ImageSource imageSource = ImageSource.parse(source);
+                for (int field = ImageSource.START_RED; field <= ImageSource.END_BLUE; field++) {
+                    imageSource.setField(field, scaleExpression(imageSource.getField(field), numerator, denominator));
+                }
+                return imageSource.toString();
+            }
+
+            private int scaleChannel(int value) {
+                return Math.min(255, value * numerator / denominator);
+            }
+        };
+    }
+
+    /**
+     * Rotates the hue of the start and end colours of each Image, keeping saturation and value.
+     *
+     * @param degrees the rotation in degrees, may be negative
+     * @return the transform
+     */
+    public static ImageTransform rotateHue(double degrees) {
+        return image -> {
+            int[] start = rotateHue(image.getStartRed(), image.getStartGreen(), image.getStartBlue(), degrees);
+            int[] end = rotateHue(image.getEndRed(), image.getEndGreen(), image.getEndBlue(), degrees);
+            return withColors(image, start[0], start[1], start[2], end[0], end[1], end[2]);
+        };
+    }
+
+    static void setIfChanged(ImageSource imageSource, int field, int oldValue, int newValue) {
+        if (oldValue != newValue) {
+            imageSource.setField(field, String.valueOf(newValue));
+        }
+    }
+
+    private static Image withRpm(Image image, int startRPM, int endRPM) {
+        return new Image(image.getLedIndices(), startRPM, endRPM,
+            image.getStartRed(), image.getStartGreen(), image.getStartBlue(),
+            image.getEndRed(), image.getEndGreen(), image.getEndBlue(),
+            image.getBlinkModeValue(), image.getOptionalValue());
+    }
+
+    private static Image withColors(Image image, int startRed, int startGreen, int startBlue,
+                                    int endRed, int endGreen, int endBlue) {
+        return new Image(image.getLedIndices(), image.getStartRPM(), image.getEndRPM(),
+            startRed, startGreen, startBlue, endRed, endGreen, endBlue,
+            image.getBlinkModeValue(), image.getOptionalValue());
+    }
+
+    private static String offsetExpression(String expression, int delta) {
+        if (delta == 0) {
+            return expression;
+        }
+        if (isInteger(expression)) {
+            return String.valueOf(Integer.parseInt(expression) + delta);
+        }
+        return "(" + expression + ")" + (delta > 0 ? "+" + delta : "-" + (-delta));
+    }
+
+    private static String scaleExpression(String expression, int numerator, int denominator) {
+        if (isInteger(expression)) {
+            return String.valueOf(Integer.parseInt(expression) * numerator / denominator);
+        }
+        if (numerator == denominator) {
+            return expression;
+        }
+        return "(" + expression + ")*" + numerator + (denominator != 1 ? "/" + denominator : "");
+    }
+
+    private static boolean isInteger(String expression) {
+        try {
+            Integer.parseInt(expression);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static int[] toFraction(double factor) {
+        if (Double.isNaN(factor) || Double.isInfinite(factor) || factor < 0 || factor > 100) {
+            throw new IllegalArgumentException("Factor must be in range 0-100, got: " + factor);
+        }
+        int numerator = (int) Math.round(factor * FACTOR_PRECISION);
+        int denominator = FACTOR_PRECISION;
+        int gcd = gcd(numerator, denominator);
+        return new int[] {numerator / gcd, denominator / gcd};
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? Math.max(a, 1) : gcd(b, a % b);
+    }
+
+    private static int[] rotateHue(int red, int green, int blue, double degrees) {
+        // RGB -> HSV
+        double r = red / 255.0;
+        double g = green / 255.0;
+        double b = blue / 255.0;
+        double max = Math.max(r, Math.max(g, b));
+        double min = Math.min(r, Math.min(g, b));
+        double delta = max - min;
+        if (delta == 0) {
+            return new int[] {red, green, blue}; // Grey has no hue
+        }
+        double hue;
+        if (max == r) {
+            hue = 60 * (((g - b) / delta) % 6);
+        } else if (max == g) {
+            hue = 60 * (((b - r) / delta) + 2);
+        } else {
+            hue = 60 * (((r - g) / delta) + 4);
+        }
+        double saturation = delta / max;
+
+        // Rotate and HSV -> RGB
+        hue = ((hue + degrees) % 360 + 360) % 360;
+        double chroma = max * saturation;
+        double x = chroma * (1 - Math.abs((hue / 60) % 2 - 1));
+        double m = max - chroma;
+        double[] rgb;
+        if (hue < 60) {
+            rgb = new double[] {chroma, x, 0};
+        } else if (hue < 120) {
+            rgb = new double[] {x, chroma, 0};
+        } else if (hue < 180) {
+            rgb = new double[] {0, chroma, x};
+        } else if (hue < 240) {
+            rgb = new double[] {0, x, chroma};
+        } else if (hue < 300) {
+            rgb = new double[] {x, 0, chroma};
+        } else {
+            rgb = new double[] {chroma, 0, x};
+        }
+        int[] channels = new int[3];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = (int) Math.round(Math.max(0, Math.min(1, rgb[i] + m)) * 255);
+        }
+        return channels;
+    }
+}
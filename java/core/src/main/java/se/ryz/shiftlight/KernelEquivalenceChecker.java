@@ -0,0 +1,111 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the fixed-point and float interpolation kernels over every (Image, RPM) pair
+ * where the Image is active, in parallel, and reports the largest colour difference.
+ */
+public class KernelEquivalenceChecker {
+
+    /**
+     * Checks the Images of a program.
+     *
+     * @param images the Images to check
+     * @return the comparison
+     */
+    public Report check(List<Image> images) {
+        return images.parallelStream()
+            .map(KernelEquivalenceChecker::checkImage)
+            .reduce(Report.EMPTY, Report::merge);
+    }
+
+    /**
+     * Checks every Image that differs from a start and end colour pair only in its colours,
+     * i.e. every colour pair over one RPM range. Useful to check ranges not yet used in a program.
+     *
+     * @param startRPM start of the RPM range
+     * @param endRPM end of the RPM range
+     * @return the comparison
+     */
+    public Report checkAllColors(int startRPM, int endRPM) {
+        return IntStream.range(0, 256 * 256).parallel()
+            .mapToObj(colors -> checkColors(startRPM, endRPM, colors >> 8, colors & 0xFF))
+            .reduce(Report.EMPTY, Report::merge);
+    }
+
+    private static Report checkImage(Image image) {
+        Report report = Report.EMPTY;
+        int[][] channels = {
+            {image.getStartRed(), image.getEndRed()},
+            {image.getStartGreen(), image.getEndGreen()},
+            {image.getStartBlue(), image.getEndBlue()}
+        };
+        for (int[] channel : channels) {
+            report = report.merge(checkColors(image.getStartRPM(), image.getEndRPM(), channel[0], channel[1]));
+        }
+        return report;
+    }
+
+    private static Report checkColors(int startRPM, int endRPM, int startColor, int endColor) {
+        long checked = 0;
+        long mismatches = 0;
+        int maxError = 0;
+        int worstRpm = -1;
+        int span = endRPM - startRPM;
+        for (int rpm = startRPM; rpm <= endRPM; rpm++) {
+            int offset = rpm - startRPM;
+            int fixed = FixedPointKernel.interpolate(startColor, endColor, offset, span, FixedPointKernel.proportion(offset, span));
+            int reference = RenderEngine.interpolateFloat(startColor, endColor, rpm, startRPM, endRPM);
+            int error = Math.abs(fixed - reference);
+            checked++;
+            if (error != 0) {
+                mismatches++;
+                if (error > maxError) {
+                    maxError = error;
+                    worstRpm = rpm;
+                }
+            }
+        }
+        String worstCase = worstRpm < 0 ? null
+            : String.format("colour %d->%d over %d-%d RPM at %d RPM", startColor, endColor, startRPM, endRPM, worstRpm);
+        return new Report(checked, mismatches, maxError, worstCase);
+    }
+
+    /**
+     * The result of a check. Each colour channel of each (Image, RPM) pair is counted once.
+     */
+    @Getter
+    public static class Report {
+        static final Report EMPTY = new Report(0, 0, 0, null);
+
+        private final long checked;
+        private final long mismatches;
+        private final int maxError;
+        private final String worstCase;
+
+        Report(long checked, long mismatches, int maxError, String worstCase) {
+            this.checked = checked;
+            this.mismatches = mismatches;
+            this.maxError = maxError;
+            this.worstCase = worstCase;
+        }
+
+        Report merge(Report other) {
+            Report worst = other.maxError > maxError ? other : this;
+            return new Report(checked + other.checked, mismatches + other.mismatches, worst.maxError, worst.worstCase);
+        }
+
+        public boolean isIdentical() {
+            return mismatches == 0;
+        }
+
+        public String describe() {
+            return String.format("%d values checked, %d differ, max error %d%s", checked, mismatches, maxError,
+                worstCase != null ? " (" + worstCase + ")" : "");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package se.ryz.shiftlight;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Arrays;
+
+/**
+ * The state of the LED strip at one RPM, as computed into Display's ColorResult:
+ * a colour and blink rate per LED slot. Slots are 0-based like the firmware's
+ * bitmask, so LED index 1 in a CSV line is slot 0.
+ * Slots not lit by any Image are black with blink rate 0.
+ */
+@EqualsAndHashCode
+public class LedFrame {
+    /** Matches the array size of ColorResult in the firmware (bits 0-13). */
+    public static final int SLOT_COUNT = 14;
+
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    private final int[] blinkRate;
+
+    public LedFrame() {
+        this.red = new int[SLOT_COUNT];
+        this.green = new int[SLOT_COUNT];
+        this.blue = new int[SLOT_COUNT];
+        this.blinkRate = new int[SLOT_COUNT];
+    }
+
+    public int getRed(int slot) {
+        return red[slot];
+    }
+
+    public int getGreen(int slot) {
+        return green[slot];
+    }
+
+    public int getBlue(int slot) {
+        return blue[slot];
+    }
+
+    /**
+     * Gets the blink rate of a slot, the blink mode of the Image that last lit it.
+     *
+     * @param slot the LED slot, 0-13
+     * @return the blink rate, 0-2
+     */
+    public int getBlinkRate(int slot) {
+        return blinkRate[slot];
+    }
+
+    /**
+     * Gets the colour of a slot packed as 0xRRGGBB.
+     *
+     * @param slot the LED slot, 0-13
+     * @return the packed colour
+     */
+    public int getRgb(int slot) {
+        return (red[slot] << 16) | (green[slot] << 8) | blue[slot];
+    }
+
+    public boolean isLit(int slot) {
+        return red[slot] != 0 || green[slot] != 0 || blue[slot] != 0;
+    }
+
+    /**
+     * Packs a slot into one int as 0xRRGGBB shifted left by 2, with the blink rate in the low 2 bits.
+     */
+    int getPacked(int slot) {
+        return (getRgb(slot) << 2) | blinkRate[slot];
+    }
+
+    void setPacked(int slot, int packed) {
+        set(slot, (packed >>> 18) & 0xFF, (packed >>> 10) & 0xFF, (packed >>> 2) & 0xFF, packed & 0x3);
+    }
+
+    void clear() {
+        Arrays.fill(red, 0);
+        Arrays.fill(green, 0);
+        Arrays.fill(blue, 0);
+        Arrays.fill(blinkRate, 0);
+    }
+
+    void set(int slot, int red, int green, int blue, int blinkRate) {
+        this.red[slot] = red;
+        this.green[slot] = green;
+        this.blue[slot] = blue;
+        this.blinkRate[slot] = blinkRate;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            if (slot > 0) {
+                sb.append(' ');
+            }
+            sb.append(String.format("%06X", getRgb(slot)));
+            if (blinkRate[slot] != 0) {
+                sb.append('/').append(blinkRate[slot]);
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
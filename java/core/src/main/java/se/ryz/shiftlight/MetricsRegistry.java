@@ -0,0 +1,360 @@
+package se.ryz.shiftlight;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A named group of counters, gauges, rate meters and latency histograms, published as one JMX
+ * MBean with an attribute per value and optionally dumped as text at a fixed period.
+ * Recording is lock-free and allocation-free so metrics can stay on in production;
+ * the work of computing percentiles is done when a value is read.
+ */
+public class MetricsRegistry implements DynamicMBean {
+    private final String objectName;
+    private final Map<String, Supplier<Number>> attributes;
+    private final Map<String, String> attributeTypes;
+
+    /**
+     * @param objectName the JMX object name, e.g. "se.ryz.shiftlight:type=Protocol"
+     */
+    public MetricsRegistry(String objectName) {
+        this.objectName = objectName;
+        this.attributes = new LinkedHashMap<>();
+        this.attributeTypes = new LinkedHashMap<>();
+    }
+
+    public synchronized Counter counter(String name) {
+        Counter counter = new Counter();
+        addAttribute(name, Long.class, counter::get);
+        return counter;
+    }
+
+    /**
+     * Creates a gauge, a value that is set rather than counted, such as the number of open ports.
+     *
+     * @param name the attribute name
+     * @return the gauge
+     */
+    public synchronized Gauge gauge(String name) {
+        Gauge gauge = new Gauge();
+        addAttribute(name, Long.class, gauge::get);
+        return gauge;
+    }
+
+    /**
+     * Creates a meter reporting the number of events in the last complete second.
+     *
+     * @param name the attribute name, the total is published as name + "Total"
+     * @return the meter
+     */
+    public synchronized Meter meter(String name) {
+        Meter meter = new Meter();
+        addAttribute(name + "PerSecond", Long.class, meter::getLastSecondCount);
+        addAttribute(name + "Total", Long.class, meter::getCount);
+        return meter;
+    }
+
+    /**
+     * Creates a latency histogram, published as Count, MeanMillis, P50Millis, P95Millis,
+     * P99Millis and MaxMillis attributes prefixed with the name.
+     *
+     * @param name the attribute name prefix
+     * @return the histogram
+     */
+    public synchronized Histogram histogram(String name) {
+        Histogram histogram = new Histogram();
+        addAttribute(name + "Count", Long.class, histogram::getCount);
+        addAttribute(name + "MeanMillis", Double.class, histogram::getMeanMillis);
+        addAttribute(name + "P50Millis", Double.class, () -> histogram.getPercentileMillis(50));
+        addAttribute(name + "P95Millis", Double.class, () -> histogram.getPercentileMillis(95));
+        addAttribute(name + "P99Millis", Double.class, () -> histogram.getPercentileMillis(99));
+        addAttribute(name + "MaxMillis", Double.class, histogram::getMaxMillis);
+        return histogram;
+    }
+
+    private void addAttribute(String name, Class<? extends Number> type, Supplier<Number> value) {
+        if (attributes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate metric: " + name);
+        }
+        attributes.put(name, value);
+        attributeTypes.put(name, type.getName());
+    }
+
+    /**
+     * Registers the registry with the platform MBean server. Does nothing if already registered.
+     */
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        } catch (JMException | RuntimeException e) {
+            // Native images may be built without JMX support
+            System.err.println("Could not register metrics " + objectName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats every value on its own line.
+     *
+     * @return e.g. "se.ryz.shiftlight:type=Protocol LinesSent=42"
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Supplier<Number>> entry : attributes.entrySet()) {
+            Number value = entry.getValue().get();
+            sb.append(objectName).append(" ").append(entry.getKey()).append("=");
+            sb.append(value instanceof Double ? String.format("%.2f", value.doubleValue()) : value).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints dump() periodically on a daemon thread.
+     *
+     * @param periodSeconds seconds between dumps
+     * @param out where to print
+     * @return the scheduler, shut it down to stop dumping
+     */
+    public ScheduledExecutorService startPeriodicDump(long periodSeconds, PrintStream out) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shiftlight-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> out.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    @Override
+    public synchronized Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Number> value = attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value.get();
+    }
+
+    @Override
+    public synchronized AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Number> value = attributes.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Metrics have no operations: " + actionName);
+    }
+
+    @Override
+    public synchronized MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : attributeTypes.entrySet()) {
+            infos[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue(), entry.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Shiftlight metrics", infos, null, null, null);
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A value that can go up and down.
+     */
+    public static class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long amount) {
+            value.addAndGet(amount);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Counts events and how many happened in the last complete second.
+     * <p>
+     * The per-second count is kept in two cells, one for even and one for odd seconds.
+     * Each cell packs the second it counts in the high 32 bits and the count in the low
+     * 32 bits, so a mark that starts a new second resets the count and stamps the cell
+     * in one CAS and can't lose or misplace a concurrent mark.
+     */
+    public static class Meter {
+        private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+        private final LongAdder count = new LongAdder();
+        private final AtomicLongArray seconds = new AtomicLongArray(2);
+
+        public void mark() {
+            long second = currentSecond();
+            int cell = (int) (second & 1);
+            while (true) {
+                long packed = seconds.get(cell);
+                int age = (int) (second - (packed >>> 32));
+                if (age < 0) {
+                    // Another thread has moved on to a later second, this one is already complete
+                    break;
+                }
+                long next = age == 0 ? packed + 1 : second << 32 | 1;
+                if (seconds.compareAndSet(cell, packed, next)) {
+                    break;
+                }
+            }
+            count.increment();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getLastSecondCount() {
+            long second = (currentSecond() - 1) & COUNT_MASK;
+            long packed = seconds.get((int) (second & 1));
+            // Counts of a second without events are not carried over
+            return (packed >>> 32) == second ? packed & COUNT_MASK : 0;
+        }
+
+        private static long currentSecond() {
+            return System.nanoTime() / 1_000_000_000L & COUNT_MASK;
+        }
+    }
+
+    /**
+     * A latency histogram over microseconds with 8 buckets per power of two, so percentiles
+     * are within 12.5% of the recorded values.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+        public void recordNanos(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            buckets.incrementAndGet(bucketOf(micros));
+            count.increment();
+            sumMicros.add(micros);
+            maxMicros.accumulate(micros);
+        }
+
+        private static int bucketOf(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long bucketUpperMicros(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+            return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : sumMicros.sum() / 1000.0 / n;
+        }
+
+        public double getMaxMillis() {
+            return maxMicros.get() / 1000.0;
+        }
+
+        /**
+         * Gets a percentile, rounded up to the end of its bucket.
+         *
+         * @param percentile the percentile, 0-100
+         * @return the latency in milliseconds, 0 if nothing was recorded
+         */
+        public double getPercentileMillis(double percentile) {
+            long total = 0;
+            long[] snapshot = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperMicros(i), maxMicros.get()) / 1000.0;
+                }
+            }
+            return getMaxMillis();
+        }
+    }
+}
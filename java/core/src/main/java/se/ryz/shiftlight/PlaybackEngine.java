@@ -0,0 +1,174 @@
+package se.ryz.shiftlight;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays an RpmTrace through a program in real time, at a speed such as 0.25x, 1x or 4x.
+ * Frames are produced on a scheduler thread at a fixed rate. The position in the trace
+ * follows the wall clock, so a late frame never delays the ones after it: frames whose
+ * slot has passed are dropped and counted in the FrameTimingStats instead.
+ * Each frame is passed to the registered FrameSinks on the scheduler thread.
+ */
+public class PlaybackEngine {
+    public static final int DEFAULT_FRAMES_PER_SECOND = 60;
+
+    /**
+     * Receives the frames of a playback. Called on the playback thread; sinks that
+     * update Swing components or do I/O must hand the frame over to another thread.
+     */
+    public interface FrameSink {
+        /**
+         * @param traceTimeMicros the position in the trace
+         * @param rpm the RPM at that position
+         * @param frame the LED strip at that RPM
+         */
+        void frameRendered(long traceTimeMicros, int rpm, LedFrame frame);
+    }
+
+    private final RpmTrace trace;
+    private final FrameTable frameTable;
+    private final double speed;
+    private final long periodNanos;
+    private final List<FrameSink> sinks;
+    private final FrameTimingStats stats;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> tickFuture;
+    private Runnable onFinished;
+    private long startNanos;
+    private long lastFrameIndex;
+    private long lastFrameNanos;
+
+    /**
+     * Creates a playback at DEFAULT_FRAMES_PER_SECOND.
+     *
+     * @param trace the RPM trace to play
+     * @param images the compiled Images of the program, in program order
+     * @param speed playback speed, e.g. 0.25, 1 or 4
+     */
+    public PlaybackEngine(RpmTrace trace, List<Image> images, double speed) {
+        this(trace, images, speed, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    public PlaybackEngine(RpmTrace trace, List<Image> images, double speed, int framesPerSecond) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Playback speed must be positive, got: " + speed);
+        }
+        if (framesPerSecond < 1 || framesPerSecond > 1000) {
+            throw new IllegalArgumentException("Frames per second must be in range 1-1000, got: " + framesPerSecond);
+        }
+        this.trace = trace;
+        // The engine's own table, so edits on the EDT don't race with the playback thread
+        this.frameTable = FrameTable.compile(images);
+        this.speed = speed;
+        this.periodNanos = 1_000_000_000L / framesPerSecond;
+        this.sinks = new CopyOnWriteArrayList<>();
+        this.stats = new FrameTimingStats();
+    }
+
+    public void addSink(FrameSink sink) {
+        if (sink != null) {
+            sinks.add(sink);
+        }
+    }
+
+    public void removeSink(FrameSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Sets a callback run on the playback thread when the end of the trace is reached.
+     *
+     * @param onFinished the callback
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+
+    public FrameTimingStats getStats() {
+        return stats;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public synchronized boolean isRunning() {
+        return tickFuture != null;
+    }
+
+    /**
+     * Starts playing from the beginning of the trace.
+     *
+     * @throws IllegalStateException if the playback is already running
+     */
+    public synchronized void start() {
+        if (tickFuture != null) {
+            throw new IllegalStateException("Playback is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shiftlight-playback");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        lastFrameIndex = -1;
+        tickFuture = scheduler.scheduleAtFixedRate(this::tick, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the playback. Frames already being produced are completed.
+     */
+    public synchronized void stop() {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long elapsedNanos = now - startNanos;
+        long frameIndex = elapsedNanos / periodNanos;
+        if (frameIndex <= lastFrameIndex) {
+            // Catch-up run of a late tick; this frame slot was already rendered
+            return;
+        }
+        if (lastFrameIndex >= 0 && frameIndex > lastFrameIndex + 1) {
+            stats.recordDropped(frameIndex - lastFrameIndex - 1);
+        }
+        long interval = lastFrameIndex >= 0 ? now - lastFrameNanos : 0;
+        lastFrameIndex = frameIndex;
+        lastFrameNanos = now;
+
+        long traceTimeMicros = (long) (elapsedNanos / 1000 * speed);
+        boolean finished = traceTimeMicros >= trace.getDurationMicros();
+        if (finished) {
+            traceTimeMicros = trace.getDurationMicros();
+        }
+        int rpm = trace.rpmAt(traceTimeMicros);
+        LedFrame frame = frameTable.getFrame(rpm);
+        for (FrameSink sink : sinks) {
+            try {
+                sink.frameRendered(traceTimeMicros, rpm, frame);
+            } catch (RuntimeException e) {
+                System.err.println("Playback sink failed: " + e.getMessage());
+            }
+        }
+        stats.recordFrame(interval, System.nanoTime() - now);
+
+        if (finished) {
+            stop();
+            Runnable callback = onFinished;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes what the LED strip shows at an RPM without hardware.
+ * Mirrors Display::processRPM and Display::calculateColors in the firmware: every Image
+ * whose RPM range contains the RPM colours its LEDs, interpolated between the start and
+ * end colour, and Images later in the program overwrite earlier ones on shared LEDs.
+ * Matching Images are found through an RpmIntervalIndex instead of a full scan.
+ * Colours are interpolated with the firmware's FixedPointKernel by default; the float
+ * kernel of earlier firmware versions can be selected for comparison.
+ */
+public class RenderEngine {
+    /** Matches MAX_RPM in Display.h. */
+    public static final int MAX_RPM = 9999;
+
+    public enum Kernel {
+        /** Integer interpolation, see FixedPointKernel. Used by the current firmware. */
+        FIXED_POINT,
+        /** Single precision float interpolation, used by firmware before FixedPointKernel. */
+        FLOAT
+    }
+
+    private final List<Image> images;
+    private final RpmIntervalIndex index;
+    private final Kernel kernel;
+
+    /**
+     * Creates an engine for a program.
+     *
+     * @param images the Images in program order
+     */
+    public RenderEngine(List<Image> images) {
+        this(images, Kernel.FIXED_POINT);
+    }
+
+    /**
+     * Creates an engine for a program with a given interpolation kernel.
+     *
+     * @param images the Images in program order
+     * @param kernel the interpolation kernel
+     */
+    public RenderEngine(List<Image> images, Kernel kernel) {
+        this.images = new ArrayList<>(images);
+        this.index = new RpmIntervalIndex(this.images);
+        this.kernel = kernel;
+    }
+
+    /**
+     * Creates an engine for the current Images of an Animation.
+     * Later changes to the Animation are not reflected.
+     *
+     * @param animation the Animation
+     * @return the engine
+     */
+    public static RenderEngine forAnimation(Animation animation) {
+        return new RenderEngine(animation.getImages());
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Gets the Images rendered by this engine.
+     *
+     * @return a copy of the list of Images in program order
+     */
+    public List<Image> getImages() {
+        return new ArrayList<>(images);
+    }
+
+    /**
+     * Renders the LED strip at an RPM.
+     *
+     * @param rpm the RPM
+     * @return the colour and blink rate of every LED slot
+     */
+    public LedFrame render(int rpm) {
+        LedFrame frame = new LedFrame();
+        render(rpm, frame, new RpmIntervalIndex.Hits());
+        return frame;
+    }
+
+    /**
+     * Renders the LED strip at an RPM into an existing frame, for callers rendering many RPMs.
+     *
+     * @param rpm the RPM
+     * @param frame the frame to overwrite
+     * @param hits buffer for the active Images
+     */
+    void render(int rpm, LedFrame frame, RpmIntervalIndex.Hits hits) {
+        frame.clear();
+        index.query(rpm, hits);
+        for (int i = 0; i < hits.size(); i++) {
+            calculateColors(rpm, images.get(hits.get(i)), frame, kernel);
+        }
+    }
+
+    /**
+     * Finds the Images that are active at an RPM.
+     *
+     * @param rpm the RPM
+     * @return the positions of the active Images in program order
+     */
+    public int[] getActiveImages(int rpm) {
+        return index.query(rpm);
+    }
+
+    /**
+     * Same computation as Display::calculateColors.
+     */
+    static void calculateColors(int rpm, Image image, LedFrame frame, Kernel kernel) {
+        int red;
+        int green;
+        int blue;
+        if (kernel == Kernel.FIXED_POINT) {
+            // Clamp RPM to the image's RPM range
+            int clamped = Math.max(image.getStartRPM(), Math.min(image.getEndRPM(), rpm));
+            int offset = clamped - image.getStartRPM();
+            int span = image.getEndRPM() - image.getStartRPM();
+            int proportion = FixedPointKernel.proportion(offset, span);
+            red = FixedPointKernel.interpolate(image.getStartRed(), image.getEndRed(), offset, span, proportion);
+            green = FixedPointKernel.interpolate(image.getStartGreen(), image.getEndGreen(), offset, span, proportion);
+            blue = FixedPointKernel.interpolate(image.getStartBlue(), image.getEndBlue(), offset, span, proportion);
+        } else {
+            red = interpolateFloat(image.getStartRed(), image.getEndRed(), rpm, image.getStartRPM(), image.getEndRPM());
+            green = interpolateFloat(image.getStartGreen(), image.getEndGreen(), rpm, image.getStartRPM(), image.getEndRPM());
+            blue = interpolateFloat(image.getStartBlue(), image.getEndBlue(), rpm, image.getStartRPM(), image.getEndRPM());
+        }
+        int blinkRate = image.getBlinkModeValue();
+
+        // LED indices are 1-based, slots follow the firmware's 0-based bitmask. Indexed, this
+        // runs for every Image at every rendered RPM and an iterator each time adds up.
+        List<Integer> ledIndices = image.getLedIndices();
+        for (int i = 0; i < ledIndices.size(); i++) {
+            frame.set(ledIndices.get(i) - 1, red, green, blue, blinkRate);
+        }
+    }
+
+    /**
+     * The float interpolation of earlier firmware, including its single precision
+     * proportion and the truncating conversion to uint8_t.
+     */
+    static int interpolateFloat(int startColor, int endColor, int rpm, int startRPM, int endRPM) {
+        // Clamp RPM to the image's RPM range
+        if (rpm < startRPM) rpm = startRPM;
+        if (rpm > endRPM) rpm = endRPM;
+
+        float proportion;
+        if (endRPM != startRPM) {
+            proportion = (float) (rpm - startRPM) / (float) (endRPM - startRPM);
+        } else {
+            // If startRPM == endRPM, use proportion 1.0 (end color)
+            proportion = 1.0f;
+        }
+        return (int) (startColor + (endColor - startColor) * proportion);
+    }
+}
@@ -0,0 +1,97 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+/**
+ * The outcome of validating one animation row: validity, error message,
+ * evaluated CSV and the start/end colours of the parsed Image.
+ * A result only depends on the source text and the variables it was
+ * evaluated against, so rows with identical text share the same result.
+ */
+@Getter
+public class RowValidationResult {
+    private final String source;
+    private final boolean valid;
+    private final String error;
+    private final String evaluatedCsv;
+    private final Image image;
+    private final int startRgb;
+    private final int endRgb;
+
+    private RowValidationResult(String source, boolean valid, String error, Image image) {
+        this.source = source;
+        this.valid = valid;
+        this.error = error;
+        this.image = image;
+        if (image != null) {
+            this.evaluatedCsv = image.toCsvLine();
+            this.startRgb = toRgb(image.getStartRed(), image.getStartGreen(), image.getStartBlue());
+            this.endRgb = toRgb(image.getEndRed(), image.getEndGreen(), image.getEndBlue());
+        } else {
+            this.evaluatedCsv = null;
+            this.startRgb = 0;
+            this.endRgb = 0;
+        }
+    }
+
+    /**
+     * Validates a CSV line, optionally evaluating variable expressions.
+     * Empty lines are considered valid but carry no Image.
+     *
+     * @param source the CSV line as typed by the user
+     * @param variableParser parser holding the variables, or null for plain CSV
+     * @return the validation result, never null
+     */
+    public static RowValidationResult validate(String source, VariableParser variableParser) {
+        return validate(source, variableParser, -1);
+    }
+
+    /**
+     * Validates the CSV line of an animation row, optionally evaluating variable expressions.
+     * Empty lines are considered valid but carry no Image.
+     *
+     * @param source the CSV line as typed by the user
+     * @param variableParser parser holding the variables, or null for plain CSV
+     * @param rowIndex the 0-based index of the row, recorded in the CsvParse event
+     * @return the validation result, never null
+     */
+    public static RowValidationResult validate(String source, VariableParser variableParser, int rowIndex) {
+        String trimmed = source == null ? "" : source.trim();
+        if (trimmed.isEmpty()) {
+            return new RowValidationResult(trimmed, true, null, null);
+        }
+        ShiftlightEvents.CsvParse event = new ShiftlightEvents.CsvParse();
+        event.begin();
+        RowValidationResult result;
+        try {
+            Image image = variableParser != null ? new Image(trimmed, variableParser) : new Image(trimmed);
+            result = new RowValidationResult(trimmed, true, null, image);
+        } catch (IllegalArgumentException e) {
+            result = new RowValidationResult(trimmed, false, e.getMessage(), null);
+        }
+        if (event.shouldCommit()) {
+            event.rowIndex = rowIndex;
+            event.lineLength = trimmed.length();
+            event.withVariables = variableParser != null;
+            event.valid = result.isValid();
+            event.error = result.getError();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the validated source was empty.
+     *
+     * @return true if the row had no CSV text
+     */
+    public boolean isEmpty() {
+        return source.isEmpty();
+    }
+
+    private static int toRgb(int red, int green, int blue) {
+        return (Math.max(0, Math.min(255, red)) << 16)
+            | (Math.max(0, Math.min(255, green)) << 8)
+            | Math.max(0, Math.min(255, blue));
+    }
+}
@@ -0,0 +1,180 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A centered interval tree over the RPM ranges of a list of Images.
+ * Finding the Images whose range contains an RPM costs O(log n + k log k) for k hits,
+ * the k log k for putting them in program order, instead of scanning every Image like
+ * Display::processRPM does. Hits are collected into a buffer that grows with k, never
+ * one sized for all n Images.
+ * The index is immutable; build a new one when the Images change.
+ */
+public class RpmIntervalIndex {
+    private final Node root;
+    private final int size;
+
+    /**
+     * Builds the index.
+     *
+     * @param images the Images in program order
+     */
+    public RpmIntervalIndex(List<Image> images) {
+        List<Integer> positions = new ArrayList<>(images.size());
+        int[] starts = new int[images.size()];
+        int[] ends = new int[images.size()];
+        for (int i = 0; i < images.size(); i++) {
+            positions.add(i);
+            starts[i] = images.get(i).getStartRPM();
+            ends[i] = images.get(i).getEndRPM();
+        }
+        this.size = images.size();
+        this.root = build(positions, starts, ends);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the Images whose RPM range contains an RPM, bounds inclusive.
+     *
+     * @param rpm the RPM
+     * @return the positions of the matching Images in program order
+     */
+    public int[] query(int rpm) {
+        return query(rpm, new Hits()).toArray();
+    }
+
+    /**
+     * Finds the Images whose RPM range contains an RPM, bounds inclusive, into a buffer
+     * that can be reused between queries.
+     *
+     * @param rpm the RPM
+     * @param hits the buffer, cleared before the query
+     * @return the buffer holding the positions of the matching Images in program order
+     */
+    public Hits query(int rpm, Hits hits) {
+        hits.clear();
+        Node node = root;
+        while (node != null) {
+            if (rpm < node.center) {
+                // Intervals sorted by start: all from the first one starting after rpm are misses
+                for (int i = 0; i < node.byStart.length && node.starts[i] <= rpm; i++) {
+                    hits.add(node.byStart[i]);
+                }
+                node = node.left;
+            } else if (rpm > node.center) {
+                // Intervals sorted by end, descending: all from the first one ending before rpm are misses
+                for (int i = 0; i < node.byEnd.length && node.ends[i] >= rpm; i++) {
+                    hits.add(node.byEnd[i]);
+                }
+                node = node.right;
+            } else {
+                for (int position : node.byStart) {
+                    hits.add(position);
+                }
+                break;
+            }
+        }
+        Arrays.sort(hits.positions, 0, hits.count);
+        return hits;
+    }
+
+    private static Node build(List<Integer> positions, int[] starts, int[] ends) {
+        if (positions.isEmpty()) {
+            return null;
+        }
+        // Median of the interval endpoints splits the intervals evenly
+        int[] endpoints = new int[positions.size() * 2];
+        for (int i = 0; i < positions.size(); i++) {
+            endpoints[2 * i] = starts[positions.get(i)];
+            endpoints[2 * i + 1] = ends[positions.get(i)];
+        }
+        Arrays.sort(endpoints);
+        int center = endpoints[endpoints.length / 2];
+
+        List<Integer> left = new ArrayList<>();
+        List<Integer> right = new ArrayList<>();
+        List<Integer> overlapping = new ArrayList<>();
+        for (int position : positions) {
+            if (ends[position] < center) {
+                left.add(position);
+            } else if (starts[position] > center) {
+                right.add(position);
+            } else {
+                overlapping.add(position);
+            }
+        }
+
+        Node node = new Node(center, overlapping.size());
+        overlapping.sort(Comparator.comparingInt(position -> starts[position]));
+        for (int i = 0; i < overlapping.size(); i++) {
+            node.byStart[i] = overlapping.get(i);
+            node.starts[i] = starts[overlapping.get(i)];
+        }
+        overlapping.sort(Comparator.comparingInt(position -> -ends[position]));
+        for (int i = 0; i < overlapping.size(); i++) {
+            node.byEnd[i] = overlapping.get(i);
+            node.ends[i] = ends[overlapping.get(i)];
+        }
+        node.left = build(left, starts, ends);
+        node.right = build(right, starts, ends);
+        return node;
+    }
+
+    /**
+     * Positions found by a query, in a buffer that doubles when it is full.
+     */
+    public static class Hits {
+        private int[] positions = new int[8];
+        private int count;
+
+        public int size() {
+            return count;
+        }
+
+        public int get(int index) {
+            if (index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + count + " hits");
+            }
+            return positions[index];
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(positions, count);
+        }
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+    }
+
+    private static class Node {
+        private final int center;
+        private final int[] byStart;
+        private final int[] starts;
+        private final int[] byEnd;
+        private final int[] ends;
+        private Node left;
+        private Node right;
+
+        Node(int center, int count) {
+            this.center = center;
+            this.byStart = new int[count];
+            this.starts = new int[count];
+            this.byEnd = new int[count];
+            this.ends = new int[count];
+        }
+    }
+}
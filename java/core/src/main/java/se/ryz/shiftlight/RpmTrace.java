@@ -0,0 +1,128 @@
+package se.ryz.shiftlight;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A recorded RPM-vs-time trace, e.g. a logged pull, for playback through an animation.
+ * Traces are CSV files with one "timestamp,rpm" sample per line, timestamps in
+ * milliseconds. A header line, empty lines and lines starting with # are skipped.
+ * Between samples the RPM is interpolated linearly.
+ */
+public class RpmTrace {
+    private final long[] timesMicros;
+    private final int[] rpms;
+
+    private RpmTrace(long[] timesMicros, int[] rpms) {
+        this.timesMicros = timesMicros;
+        this.rpms = rpms;
+    }
+
+    public static RpmTrace load(File file) throws IOException {
+        return parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses trace lines. Timestamps are made relative to the first sample and
+     * RPMs are clamped to 0 to RenderEngine.MAX_RPM.
+     *
+     * @param lines the lines of a trace file
+     * @return the trace
+     * @throws IllegalArgumentException if a line is malformed, timestamps decrease or there are no samples
+     */
+    public static RpmTrace parse(List<String> lines) {
+        long[] times = new long[lines.size()];
+        int[] values = new int[lines.size()];
+        int count = 0;
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected timestamp,rpm, got: " + line);
+            }
+            double timestampMillis;
+            double rpm;
+            try {
+                timestampMillis = Double.parseDouble(parts[0].trim());
+                rpm = Double.parseDouble(parts[1].trim());
+            } catch (NumberFormatException e) {
+                if (count == 0 && lineNumber == firstContentLine(lines)) {
+                    continue; // Header
+                }
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid number in: " + line);
+            }
+            long timeMicros = Math.round(timestampMillis * 1000);
+            if (count > 0 && timeMicros < times[count - 1]) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": timestamp " + parts[0].trim() + " is before the previous sample");
+            }
+            times[count] = timeMicros;
+            values[count] = (int) Math.max(0, Math.min(RenderEngine.MAX_RPM, Math.round(rpm)));
+            count++;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("Trace contains no samples");
+        }
+        long start = times[0];
+        for (int i = 0; i < count; i++) {
+            times[i] -= start;
+        }
+        return new RpmTrace(Arrays.copyOf(times, count), Arrays.copyOf(values, count));
+    }
+
+    private static int firstContentLine(List<String> lines) {
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    public int getSampleCount() {
+        return rpms.length;
+    }
+
+    /**
+     * Gets the time of the last sample.
+     *
+     * @return the duration in microseconds
+     */
+    public long getDurationMicros() {
+        return timesMicros[timesMicros.length - 1];
+    }
+
+    /**
+     * Gets the RPM at a point in the trace.
+     *
+     * @param timeMicros time since the first sample, in microseconds
+     * @return the RPM interpolated between the surrounding samples, the first or last RPM outside the trace
+     */
+    public int rpmAt(long timeMicros) {
+        int index = Arrays.binarySearch(timesMicros, timeMicros);
+        if (index >= 0) {
+            // Several samples may share a timestamp; use the last one
+            while (index + 1 < timesMicros.length && timesMicros[index + 1] == timeMicros) {
+                index++;
+            }
+            return rpms[index];
+        }
+        int next = -index - 1;
+        if (next == 0) {
+            return rpms[0];
+        }
+        if (next == timesMicros.length) {
+            return rpms[rpms.length - 1];
+        }
+        int previous = next - 1;
+        long span = timesMicros[next] - timesMicros[previous];
+        return rpms[previous] + (int) ((rpms[next] - rpms[previous]) * (timeMicros - timesMicros[previous]) / span);
+    }
+}
@@ -0,0 +1,176 @@
+package se.ryz.shiftlight;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Finds Images, and LEDs within Images, that are never visible and strips them from a program.
+ * Display::processRPM applies Images in order, so an LED of an Image is hidden if later Images
+ * light the same LED over its whole RPM range. Hidden LEDs are removed from their Image and
+ * Images without visible LEDs are removed entirely, which frees EEPROM slots and loop time
+ * without changing what the strip shows at any RPM.
+ * The program is scanned from the last Image to the first, keeping the RPMs already covered
+ * per LED in a BitSet.
+ */
+public class ShadowEliminator {
+    private static final int LED_COUNT = DeviceProfile.FIRMWARE_LED_COUNT;
+
+    /**
+     * Strips hidden Images and LEDs from a program.
+     *
+     * @param images the Images in program order
+     * @return the stripped program and what was removed
+     */
+    public Result eliminate(List<Image> images) {
+        BitSet[] covered = new BitSet[LED_COUNT + 1];
+        for (int ledIndex = 1; ledIndex <= LED_COUNT; ledIndex++) {
+            covered[ledIndex] = new BitSet(RenderEngine.MAX_RPM + 1);
+        }
+
+        Image[] kept = new Image[images.size()];
+        List<Removal> removals = new ArrayList<>();
+        for (int position = images.size() - 1; position >= 0; position--) {
+            Image image = images.get(position);
+            List<Integer> visibleLeds = new ArrayList<>();
+            List<Integer> hiddenLeds = new ArrayList<>();
+            // Duplicate LED indices in a row would otherwise hide themselves
+            for (int ledIndex : new LinkedHashSet<>(image.getLedIndices())) {
+                BitSet coverage = covered[ledIndex];
+                if (coverage.nextClearBit(image.getStartRPM()) <= image.getEndRPM()) {
+                    visibleLeds.add(ledIndex);
+                } else {
+                    hiddenLeds.add(ledIndex);
+                }
+                coverage.set(image.getStartRPM(), image.getEndRPM() + 1);
+            }
+
+            if (hiddenLeds.isEmpty()) {
+                kept[position] = image;
+                continue;
+            }
+            List<Integer> coveringPositions = findCoveringPositions(images, position, hiddenLeds);
+            if (visibleLeds.isEmpty()) {
+                removals.add(0, new Removal(position, image, hiddenLeds, coveringPositions, true));
+            } else {
+                kept[position] = new Image(visibleLeds, image.getStartRPM(), image.getEndRPM(),
+                    image.getStartRed(), image.getStartGreen(), image.getStartBlue(),
+                    image.getEndRed(), image.getEndGreen(), image.getEndBlue(),
+                    image.getBlinkModeValue(), image.getOptionalValue());
+                removals.add(0, new Removal(position, image, hiddenLeds, coveringPositions, false));
+            }
+        }
+
+        List<Image> stripped = new ArrayList<>();
+        for (Image image : kept) {
+            if (image != null) {
+                stripped.add(image);
+            }
+        }
+        return new Result(stripped, removals);
+    }
+
+    private static List<Integer> findCoveringPositions(List<Image> images, int position, List<Integer> hiddenLeds) {
+        Image image = images.get(position);
+        List<Integer> coveringPositions = new ArrayList<>();
+        for (int later = position + 1; later < images.size(); later++) {
+            Image other = images.get(later);
+            boolean overlapsRange = other.getStartRPM() <= image.getEndRPM() && other.getEndRPM() >= image.getStartRPM();
+            if (!overlapsRange) {
+                continue;
+            }
+            for (int ledIndex : hiddenLeds) {
+                if (other.getLedIndices().contains(ledIndex)) {
+                    coveringPositions.add(later);
+                    break;
+                }
+            }
+        }
+        return coveringPositions;
+    }
+
+    /**
+     * A stripped program and the Images that were removed or reduced.
+     */
+    @Getter
+    public static class Result {
+        private final List<Image> images;
+        private final List<Removal> removals;
+
+        Result(List<Image> images, List<Removal> removals) {
+            this.images = images;
+            this.removals = removals;
+        }
+
+        /**
+         * Gets the number of Images removed entirely.
+         *
+         * @return the number of removed Images
+         */
+        public int getRemovedImageCount() {
+            int count = 0;
+            for (Removal removal : removals) {
+                if (removal.isImageRemoved()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public boolean isUnchanged() {
+            return removals.isEmpty();
+        }
+
+        /**
+         * Describes each removal on its own line, e.g.
+         * "Image 2 removed: LEDs 1-3 hidden over 3000-4000 RPM by images 4, 5".
+         *
+         * @return the report, empty if nothing was removed
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder();
+            for (Removal removal : removals) {
+                if (sb.length() > 0) {
+                    sb.append("\n");
+                }
+                sb.append(removal.describe());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * An Image that was removed, or had LEDs removed, because later Images hide it.
+     * Positions are 0-based in the original program.
+     */
+    @Getter
+    public static class Removal {
+        private final int position;
+        private final Image image;
+        private final List<Integer> hiddenLeds;
+        private final List<Integer> coveringPositions;
+        private final boolean imageRemoved;
+
+        Removal(int position, Image image, List<Integer> hiddenLeds, List<Integer> coveringPositions, boolean imageRemoved) {
+            this.position = position;
+            this.image = image;
+            this.hiddenLeds = hiddenLeds;
+            this.coveringPositions = coveringPositions;
+            this.imageRemoved = imageRemoved;
+        }
+
+        public String describe() {
+            List<String> covering = new ArrayList<>();
+            for (int coveringPosition : coveringPositions) {
+                covering.add(String.valueOf(coveringPosition + 1));
+            }
+            return "Image " + (position + 1) + (imageRemoved ? " removed" : " reduced")
+                + (hiddenLeds.size() == 1 ? ": LED " : ": LEDs ") + Image.formatLedIndices(hiddenLeds, 0)
+                + " hidden over " + image.getStartRPM() + "-" + image.getEndRPM() + " RPM"
+                + " by images " + String.join(", ", covering);
+        }
+    }
+}
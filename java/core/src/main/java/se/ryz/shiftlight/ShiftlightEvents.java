@@ -0,0 +1,143 @@
+package se.ryz.shiftlight;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the work that can make the editor or an upload slow.
+ * They cost next to nothing unless a recording is running; start one with e.g.
+ * -XX:StartFlightRecording=filename=shiftlight.jfr and look for the Shiftlight category
+ * in JDK Mission Control or with "jfr print --categories Shiftlight".
+ */
+public final class ShiftlightEvents {
+    private static final String CATEGORY = "Shiftlight";
+
+    private ShiftlightEvents() {
+    }
+
+    @Name("se.ryz.shiftlight.CsvParse")
+    @Label("CSV Parse")
+    @Description("Parsing and validating one animation row")
+    @Category({CATEGORY, "Editor"})
+    @StackTrace(false)
+    public static class CsvParse extends Event {
+        @Label("Row Index")
+        @Description("0-based index of the row in the animation, -1 when not validated for a row")
+        int rowIndex;
+
+        @Label("Line Length")
+        int lineLength;
+
+        @Label("With Variables")
+        boolean withVariables;
+
+        @Label("Valid")
+        boolean valid;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("se.ryz.shiftlight.ExpressionEvaluation")
+    @Label("Expression Evaluation")
+    @Description("Evaluating one variable expression in a row")
+    @Category({CATEGORY, "Editor"})
+    @StackTrace(false)
+    public static class ExpressionEvaluation extends Event {
+        @Label("Expression Length")
+        int expressionLength;
+
+        @Label("Result")
+        int result;
+
+        @Label("Valid")
+        boolean valid;
+    }
+
+    @Name("se.ryz.shiftlight.AnimationValidation")
+    @Label("Animation Validation")
+    @Description("Validating every row of the animation against the current variables")
+    @Category({CATEGORY, "Editor"})
+    public static class AnimationValidation extends Event {
+        @Label("Row Count")
+        int rowCount;
+
+        @Label("Distinct Rows")
+        @Description("Rows with distinct source text, each validated once")
+        int distinctRows;
+
+        @Label("Invalid Rows")
+        int invalidRows;
+
+        @Label("Variables Valid")
+        boolean variablesValid;
+
+        @Label("Superseded")
+        @Description("The run was abandoned because of a newer edit")
+        boolean superseded;
+    }
+
+    @Name("se.ryz.shiftlight.RowRefresh")
+    @Label("Row Refresh")
+    @Description("Rebuilding the row panels of the editor on the event dispatch thread")
+    @Category({CATEGORY, "Editor"})
+    public static class RowRefresh extends Event {
+        @Label("Row Count")
+        int rowCount;
+    }
+
+    @Name("se.ryz.shiftlight.CommandSent")
+    @Label("Command Sent")
+    @Description("Sending one command, such as a program line, and waiting for its OK")
+    @Category({CATEGORY, "Serial"})
+    @StackTrace(false)
+    public static class CommandSent extends Event {
+        @Label("Port")
+        String port;
+
+        @Label("Command")
+        String command;
+
+        @Label("Bytes Sent")
+        @DataAmount
+        int bytesSent;
+
+        @Label("Bytes Received")
+        @DataAmount
+        int bytesReceived;
+
+        @Label("Response")
+        String response;
+    }
+
+    @Name("se.ryz.shiftlight.SerialReadWait")
+    @Label("Serial Read Wait")
+    @Description("Waiting for a line from the device")
+    @Category({CATEGORY, "Serial"})
+    @StackTrace(false)
+    public static class SerialReadWait extends Event {
+        @Label("Port")
+        String port;
+
+        @Label("Timeout")
+        @Timespan(Timespan.MILLISECONDS)
+        long timeout;
+
+        @Label("Bytes Read")
+        @DataAmount
+        int bytesRead;
+
+        @Label("Polls")
+        @Description("Times the reader slept because no bytes were available")
+        int polls;
+
+        @Label("Timed Out")
+        boolean timedOut;
+    }
+}
@@ -0,0 +1,145 @@
+package se.ryz.shiftlight;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Renders what the LED strip shows at an RPM and a point in time, including blinking.
+ * Mirrors loop() in the firmware: LEDs with blink rate 1 are on from 500 ms to 1000 ms of
+ * every second and off otherwise, LEDs with blink rate 2 are scaled by a 2000 ms triangle
+ * wave from 0 to 255 and back. Times count from device start, like millis().
+ * The optional value (frequency) of an Image is ignored, as it is by the firmware.
+ */
+public class TimeDomainRenderer {
+    /** blinkInterval in loop(): blink rate 1 toggles every 500 ms. */
+    public static final long BLINK_INTERVAL_MILLIS = 500;
+    /** pulseCycleTime in loop(): blink rate 2 fades in and out over 2000 ms. */
+    public static final long PULSE_CYCLE_MILLIS = 2000;
+
+    private final FrameTable frameTable;
+
+    /**
+     * Creates a renderer for a program.
+     *
+     * @param images the Images in program order
+     */
+    public TimeDomainRenderer(List<Image> images) {
+        this(FrameTable.compile(images));
+    }
+
+    /**
+     * Creates a renderer over an already compiled program.
+     * The table must not be updated while the renderer is used from other threads.
+     *
+     * @param frameTable the rendered program
+     */
+    public TimeDomainRenderer(FrameTable frameTable) {
+        this.frameTable = frameTable;
+    }
+
+    /**
+     * Renders the strip at an RPM and time.
+     *
+     * @param rpm the RPM
+     * @param timeMillis time since device start in milliseconds
+     * @return the colours shown, with the blink rate of each slot kept for reference
+     */
+    public LedFrame render(int rpm, long timeMillis) {
+        return applyBlink(frameTable.getFrame(rpm), timeMillis);
+    }
+
+    /**
+     * Renders a fixed-rate frame sequence of a trace, e.g. for export, in parallel.
+     *
+     * @param trace the RPM trace; frame i shows the RPM at i * frameIntervalMillis
+     * @param startMillis device time of the first frame, which sets the blink phase
+     * @param frameIntervalMillis time between frames
+     * @param frameCount the number of frames
+     * @return the frames in order
+     */
+    public LedFrame[] renderSequence(RpmTrace trace, long startMillis, long frameIntervalMillis, int frameCount) {
+        LedFrame[] frames = new LedFrame[frameCount];
+        IntStream.range(0, frameCount).parallel().forEach(i -> {
+            long offsetMillis = i * frameIntervalMillis;
+            frames[i] = render(trace.rpmAt(offsetMillis * 1000), startMillis + offsetMillis);
+        });
+        return frames;
+    }
+
+    /**
+     * Renders a fixed-rate frame sequence at a constant RPM, e.g. one blink or pulse cycle.
+     *
+     * @param rpm the RPM
+     * @param startMillis device time of the first frame
+     * @param frameIntervalMillis time between frames
+     * @param frameCount the number of frames
+     * @return the frames in order
+     */
+    public LedFrame[] renderSequence(int rpm, long startMillis, long frameIntervalMillis, int frameCount) {
+        LedFrame frame = frameTable.getFrame(rpm);
+        LedFrame[] frames = new LedFrame[frameCount];
+        IntStream.range(0, frameCount).parallel().forEach(i ->
+            frames[i] = applyBlink(frame, startMillis + i * frameIntervalMillis));
+        return frames;
+    }
+
+    /**
+     * Applies the blink rates of a frame at a point in time, as loop() does before strip.show().
+     *
+     * @param frame the frame from Display::processRPM
+     * @param timeMillis time since device start in milliseconds
+     * @return a new frame with the colours shown at that time
+     */
+    public static LedFrame applyBlink(LedFrame frame, long timeMillis) {
+        boolean blinkOn = isBlinkOn(timeMillis);
+        int pulseBrightness = getPulseBrightness(timeMillis);
+        LedFrame shown = new LedFrame();
+        for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+            int red = frame.getRed(slot);
+            int green = frame.getGreen(slot);
+            int blue = frame.getBlue(slot);
+            int blinkRate = frame.getBlinkRate(slot);
+            if (blinkRate == 1 && !blinkOn) {
+                red = 0;
+                green = 0;
+                blue = 0;
+            } else if (blinkRate == 2) {
+                red = red * pulseBrightness / 255;
+                green = green * pulseBrightness / 255;
+                blue = blue * pulseBrightness / 255;
+            }
+            shown.set(slot, red, green, blue, blinkRate);
+        }
+        return shown;
+    }
+
+    /**
+     * Gets the state of blink rate 1. blinkState starts off and toggles every 500 ms.
+     * This assumes loop() runs every millisecond. loop() toggles on its first pass at least
+     * 500 ms after the previous toggle, so with slower passes each toggle comes later and the
+     * delays add up.
+     *
+     * @param timeMillis time since device start in milliseconds
+     * @return true if blinking LEDs are on
+     */
+    public static boolean isBlinkOn(long timeMillis) {
+        return (timeMillis / BLINK_INTERVAL_MILLIS) % 2 == 1;
+    }
+
+    /**
+     * Gets the brightness of blink rate 2, computed with the same integer arithmetic as loop().
+     *
+     * @param timeMillis time since device start in milliseconds
+     * @return the pulse brightness, 0-255
+     */
+    public static int getPulseBrightness(long timeMillis) {
+        long halfCycle = PULSE_CYCLE_MILLIS / 2;
+        long pulsePhase = timeMillis % PULSE_CYCLE_MILLIS;
+        if (pulsePhase < halfCycle) {
+            // Fading in: 0 to 255
+            return (int) ((pulsePhase * 255) / halfCycle);
+        }
+        // Fading out: 255 to 0
+        return (int) (255 - ((pulsePhase - halfCycle) * 255) / halfCycle);
+    }
+}
@@ -71,9 +71,21 @@ public class VariableParser {
         
         expression = expression.trim();
         
-        // Simple expression evaluator for: variable names, integers, +, -, *, /
-        // Handle parentheses first, then multiplication/division, then addition/subtraction
-        return evaluateExpressionRecursive(expression);
+        ShiftlightEvents.ExpressionEvaluation event = new ShiftlightEvents.ExpressionEvaluation();
+        event.begin();
+        try {
+            // Simple expression evaluator for: variable names, integers, +, -, *, /
+            // Handle parentheses first, then multiplication/division, then addition/subtraction
+            int result = evaluateExpressionRecursive(expression);
+            event.result = result;
+            event.valid = true;
+            return result;
+        } finally {
+            if (event.shouldCommit()) {
+                event.expressionLength = expression.length();
+                event.commit();
+            }
+        }
     }
 
     private int evaluateExpressionRecursive(String expr) {
@@ -129,27 +141,30 @@ public class VariableParser {
     private boolean isSimpleValue(String expr) {
         expr = expr.trim();
         // Check if it's a variable name or an integer
-        return VARIABLE_NAME_PATTERN.matcher(expr).matches() || 
-               expr.matches("^-?\\d+$");
+        return isVariableName(expr) || isInteger(expr);
     }
 
     private int parseSimpleValue(String expr) {
         expr = expr.trim();
         
-        // First, try to parse as integer (numbers take precedence)
-        try {
-            return Integer.parseInt(expr);
-        } catch (NumberFormatException e) {
-            // Not a number, continue to check for variables
+        // First, try to parse as integer (numbers take precedence). Checked before parsing,
+        // a NumberFormatException per variable reference is most of the cost of evaluating
+        if (isSignedDigits(expr)) {
+            try {
+                return Integer.parseInt(expr);
+            } catch (NumberFormatException e) {
+                // Too large, continue to check for variables
+            }
         }
         
         // Check if it's a variable
-        if (variables.containsKey(expr)) {
-            return variables.get(expr);
+        Integer value = variables.get(expr);
+        if (value != null) {
+            return value;
         }
         
         // Check if it's a valid variable name (but not defined)
-        if (VARIABLE_NAME_PATTERN.matcher(expr).matches()) {
+        if (isVariableName(expr)) {
             throw new IllegalArgumentException("Undefined variable: " + expr);
         }
         
@@ -157,6 +172,55 @@ public class VariableParser {
         throw new IllegalArgumentException("Invalid expression: " + expr);
     }
 
+    /**
+     * Same as VARIABLE_NAME_PATTERN, without allocating a Matcher on the evaluation hot path.
+     */
+    private static boolean isVariableName(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for an optional minus followed by ASCII digits.
+     */
+    private static boolean isInteger(String s) {
+        int start = s.startsWith("-") ? 1 : 0;
+        if (s.length() == start) {
+            return false;
+        }
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for the strings Integer.parseInt can accept: an optional sign followed by digits.
+     */
+    private static boolean isSignedDigits(String s) {
+        int start = s.startsWith("-") || s.startsWith("+") ? 1 : 0;
+        if (s.length() == start) {
+            return false;
+        }
+        for (int i = start; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private int findLowestPrecedenceOperator(String expr, String operators) {
         int depth = 0;
         int lastIndex = -1;
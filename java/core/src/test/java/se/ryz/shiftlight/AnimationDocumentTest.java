@@ -0,0 +1,118 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnimationDocumentTest {
+    private static final String VARIABLES = "idle=900\nshift=6500";
+
+    private static AnimationDocument document(String... sources) {
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(VARIABLES);
+        for (String source : sources) {
+            document.addRow(source);
+        }
+        document.compileStaleRows();
+        return document;
+    }
+
+    private static String program(String... lines) {
+        return "BEGIN\n" + String.join("\n", lines) + "\nEND";
+    }
+
+    @Test
+    void keepsTheProgramUntilTheDocumentChanges() {
+        AnimationDocument document = document("[1],idle,2000,255,0,0,255,0,0,0", "[2],3000,shift,0,255,0,0,255,0,0");
+        DeviceProgram program = document.buildProgram();
+        assertSame(program, document.buildProgram());
+
+        DocumentRow row = document.getRows().get(1);
+        document.setSource(row, "[2],3000,shift+100,0,255,0,0,255,0,0");
+        document.compileStaleRows();
+        DeviceProgram edited = document.buildProgram();
+        assertNotSame(program, edited);
+        assertEquals(program("[0],900,2000,255,0,0,255,0,0,0,0", "[1],3000,6600,0,255,0,0,255,0,0,0"),
+            edited.getProgramOutput());
+
+        // Setting the same source is not a change
+        document.setSource(row, "[2],3000,shift+100,0,255,0,0,255,0,0");
+        assertSame(edited, document.buildProgram());
+
+        document.removeRow(row);
+        assertEquals(program("[0],900,2000,255,0,0,255,0,0,0,0"), document.buildProgram().getProgramOutput());
+    }
+
+    @Test
+    void ignoresProgramsBuiltBeforeTheLastChange() {
+        AnimationDocument document = document("[1],idle,2000,255,0,0,255,0,0,0");
+        long modificationCount = document.getModificationCount();
+        DeviceProgram program = document.programBuilder().get();
+        document.cacheProgram(modificationCount, program);
+        assertSame(program, document.buildProgram());
+
+        long staleCount = document.getModificationCount();
+        DeviceProgram staleProgram = document.programBuilder().get();
+        document.addRow("[3],4000,5000,0,0,255,0,0,255,0");
+        document.compileStaleRows();
+        document.cacheProgram(staleCount, staleProgram);
+        assertNotSame(staleProgram, document.buildProgram());
+        assertEquals(2, document.buildProgram().getImageCount());
+    }
+
+    @Test
+    void transformsAllRowsOrNone() {
+        AnimationDocument document = document(
+            "[1],idle,2000,255,0,0,255,0,0,0", "", "[2],3000,shift,0,255,0,0,255,0,0", "[3],8000,9900,0,0,255,0,0,255,0");
+        List<DocumentRow> rows = document.getRows();
+        List<RowValidationResult> results = List.of(
+            rows.get(0).getResult(), rows.get(1).getResult(), rows.get(2).getResult(), rows.get(3).getResult());
+        long modificationCount = document.getModificationCount();
+        DeviceProgram program = document.buildProgram();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> document.transformRows(null, ImageTransforms.offsetRpm(200)));
+        assertTrue(error.getMessage().startsWith("Row 4: "), error.getMessage());
+        assertEquals(List.of("[1],idle,2000,255,0,0,255,0,0,0", "[2],3000,shift,0,255,0,0,255,0,0",
+            "[3],8000,9900,0,0,255,0,0,255,0"), document.getSourceLines());
+        for (int i = 0; i < rows.size(); i++) {
+            assertSame(results.get(i), rows.get(i).getResult(), "Result of row " + (i + 1));
+        }
+        assertEquals(modificationCount, document.getModificationCount());
+        assertSame(program, document.buildProgram());
+
+        // Without the last row every selected row is transformed and left compiled
+        assertEquals(2, document.transformRows(List.of(rows.get(0), rows.get(1), rows.get(2)), ImageTransforms.offsetRpm(200)));
+        assertEquals("[2],3200,(shift)+200,0,255,0,0,255,0,0", document.getSourceLines().get(1));
+        assertFalse(document.hasPendingRows());
+        assertEquals(program("[0],1100,2200,255,0,0,255,0,0,0,0", "[1],3200,6700,0,255,0,0,255,0,0,0",
+            "[2],8000,9900,0,0,255,0,0,255,0,0"), document.buildProgram().getProgramOutput());
+    }
+
+    @Test
+    void changingTheVariablesMakesEveryRowStale() {
+        AnimationDocument document = document("[1],idle,2000,255,0,0,255,0,0,0", "", "[2],3000,4000,0,255,0,0,255,0,0");
+        assertTrue(document.getStaleRows().isEmpty());
+        DeviceProgram program = document.buildProgram();
+
+        document.setVariablesText(VARIABLES);
+        assertTrue(document.getStaleRows().isEmpty(), "Unchanged variables");
+
+        document.setVariablesText("idle=1000\nshift=6500");
+        assertEquals(document.getRows(), document.getStaleRows());
+        assertTrue(document.hasPendingRows());
+        assertNotSame(program, document.buildProgram());
+
+        document.compileStaleRows();
+        assertTrue(document.getStaleRows().isEmpty());
+        assertEquals(program("[0],1000,2000,255,0,0,255,0,0,0,0", "[1],3000,4000,0,255,0,0,255,0,0,0"),
+            document.buildProgram().getProgramOutput());
+    }
+}
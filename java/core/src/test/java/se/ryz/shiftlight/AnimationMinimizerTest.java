@@ -0,0 +1,76 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnimationMinimizerTest {
+    private final AnimationMinimizer minimizer = new AnimationMinimizer();
+
+    @Test
+    void mergesASolidColourSplitOverTwoRows() {
+        AnimationMinimizer.Result result = minimizer.minimize(List.of(
+            new Image("[1,2],1000,1999,255,0,0,255,0,0,0"),
+            new Image("[1,2],2000,2999,255,0,0,255,0,0,0")));
+        assertEquals(List.of(new Image("[1,2],1000,2999,255,0,0,255,0,0,0")), result.getImages());
+        assertEquals("Merged images 1 and 2 into [1,2],1000,2999,255,0,0,255,0,0,0,0", result.describe());
+    }
+
+    @Test
+    void mergesTheSameRangeOverDifferentLeds() {
+        AnimationMinimizer.Result result = minimizer.minimize(List.of(
+            new Image("[1],1000,2000,0,0,0,255,0,0,0"),
+            new Image("[5],3000,4000,0,255,0,0,255,0,0"),
+            new Image("[2,3],1000,2000,0,0,0,255,0,0,0")));
+        assertEquals(2, result.getImages().size());
+        assertTrue(result.getImages().contains(new Image("[1,2,3],1000,2000,0,0,0,255,0,0,0")));
+    }
+
+    @Test
+    void keepsRowsThatWouldRenderDifferently() {
+        List<Image> images = List.of(
+            new Image("[1],1000,1999,255,0,0,255,0,0,0"),
+            // Shows over the first Image and under the last one, so neither position works for a merge
+            new Image("[1],1500,2500,0,0,255,0,0,255,0"),
+            new Image("[1],2000,2999,255,0,0,255,0,0,0"),
+            // Gaps, other colours, gradients that don't line up and other blink modes can't merge
+            new Image("[2],1000,1999,0,255,0,0,255,0,0"),
+            new Image("[2],2001,2999,0,255,0,0,255,0,0"),
+            new Image("[3],1000,1999,0,0,0,100,0,0,0"),
+            new Image("[3],2000,2999,100,0,0,255,0,0,0"),
+            new Image("[4],1000,1999,0,0,200,0,0,200,1,100"),
+            new Image("[4],2000,2999,0,0,200,0,0,200,0"));
+        AnimationMinimizer.Result result = minimizer.minimize(images);
+        assertTrue(result.isUnchanged(), result.describe());
+        assertEquals(images, result.getImages());
+    }
+
+    @Test
+    void mergesRepeatedlyUntilNoPairIsLeft() {
+        AnimationMinimizer.Result result = minimizer.minimize(List.of(
+            new Image("[1],0,999,0,0,255,0,0,255,0"),
+            new Image("[2],0,999,0,0,255,0,0,255,0"),
+            new Image("[1],1000,1999,0,0,255,0,0,255,0"),
+            new Image("[2],1000,1999,0,0,255,0,0,255,0")));
+        assertEquals(List.of(new Image("[1,2],0,1999,0,0,255,0,0,255,0")), result.getImages());
+        assertEquals(3, result.getMerges().size());
+    }
+
+    @Test
+    void minimizedProgramsRenderTheSame() {
+        Random random = new Random(38);
+        int merged = 0;
+        for (int i = 0; i < 20; i++) {
+            List<Image> images = TestPrograms.randomProgram(random, 30);
+            AnimationMinimizer.Result result = minimizer.minimize(images);
+            TestPrograms.assertSameFrames(images, result.getImages());
+            assertEquals(images.size() - result.getMerges().size(), result.getImages().size());
+            merged += result.getMerges().size();
+        }
+        assertTrue(merged > 0, "The random programs should contain mergeable Images");
+    }
+}
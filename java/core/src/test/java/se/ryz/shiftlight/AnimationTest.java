@@ -0,0 +1,181 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnimationTest {
+    private static final String RED = "[1,2],1000,2000,255,0,0,255,0,0,0";
+    private static final String GREEN = "[3],2000,3000,0,255,0,0,255,0,0";
+    private static final String BLUE = "[4-6],3000,4000,0,0,255,0,0,255,0";
+
+    /**
+     * Checks that the IDs, positions and Image instances agree in every direction.
+     */
+    private static void assertConsistent(Animation animation, List<Long> expectedIds) {
+        assertEquals(expectedIds, animation.getImageIds());
+        List<Image> images = animation.getImages();
+        assertEquals(expectedIds.size(), images.size());
+        for (int i = 0; i < images.size(); i++) {
+            long id = animation.getImageId(i);
+            assertEquals(i, animation.indexOf(id), "Index of ID " + id);
+            assertSame(images.get(i), animation.getImage(id), "Image with ID " + id);
+            assertEquals(id, animation.getImageId(images.get(i)), "ID of the Image at " + i);
+        }
+    }
+
+    @Test
+    void insertingShiftsTheLaterImages() {
+        Animation animation = new Animation();
+        long red = animation.add(RED);
+        long blue = animation.add(BLUE);
+        long green = animation.add(1, GREEN, null);
+        assertConsistent(animation, List.of(red, green, blue));
+
+        long first = animation.add(0, BLUE, null);
+        assertConsistent(animation, List.of(first, red, green, blue));
+        assertThrows(IndexOutOfBoundsException.class, () -> animation.add(5, RED, null));
+        assertConsistent(animation, List.of(first, red, green, blue));
+    }
+
+    @Test
+    void removingByIdShiftsTheLaterImages() {
+        Animation animation = new Animation();
+        long red = animation.add(RED);
+        long green = animation.add(GREEN);
+        long blue = animation.add(BLUE);
+
+        assertTrue(animation.remove(green));
+        assertConsistent(animation, List.of(red, blue));
+        assertEquals(-1, animation.indexOf(green));
+        assertNull(animation.getImage(green));
+        assertFalse(animation.remove(green));
+
+        assertTrue(animation.remove(red));
+        assertConsistent(animation, List.of(blue));
+    }
+
+    @Test
+    void removingADuplicateByImageKeepsTheOtherCopy() {
+        Animation animation = new Animation();
+        long first = animation.add(RED);
+        long green = animation.add(GREEN);
+        long second = animation.add(RED);
+        Image secondImage = animation.getImage(second);
+        assertEquals(animation.getImage(first), secondImage);
+
+        assertTrue(animation.remove(secondImage));
+        assertConsistent(animation, List.of(first, green));
+        assertEquals(Animation.NO_IMAGE_ID, animation.getImageId(secondImage));
+        assertFalse(animation.remove(secondImage));
+    }
+
+    @Test
+    void removingByCsvLineRemovesTheFirstEqualImage() {
+        Animation animation = new Animation();
+        long green = animation.add(GREEN);
+        long first = animation.add(RED);
+        long second = animation.add(RED);
+
+        assertTrue(animation.remove(RED));
+        assertConsistent(animation, List.of(green, second));
+        assertFalse(animation.remove(BLUE));
+        assertConsistent(animation, List.of(green, second));
+        assertEquals(-1, animation.indexOf(first));
+    }
+
+    @Test
+    void replacingKeepsIdsAndPositions() {
+        Animation animation = new Animation();
+        long red = animation.add(RED);
+        long green = animation.add(GREEN);
+        Image oldGreen = animation.getImage(green);
+
+        Image blue = new Image(BLUE);
+        assertEquals(1, animation.replace(Map.of(green, blue)));
+        assertConsistent(animation, List.of(red, green));
+        assertSame(blue, animation.getImage(green));
+        assertEquals(Animation.NO_IMAGE_ID, animation.getImageId(oldGreen));
+
+        // Nothing is replaced if an ID is unknown
+        assertThrows(IllegalArgumentException.class, () -> animation.replace(Map.of(red, new Image(GREEN), 99L, blue)));
+        assertConsistent(animation, List.of(red, green));
+        assertEquals(new Image(RED), animation.getImage(red));
+    }
+
+    @Test
+    void transformingKeepsIdsAndPositions() {
+        Animation animation = new Animation();
+        long red = animation.add(RED);
+        long green = animation.add(GREEN);
+        long blue = animation.add(BLUE);
+
+        assertEquals(2, animation.transform(List.of(blue, red, blue), ImageTransforms.offsetRpm(100)));
+        assertConsistent(animation, List.of(red, green, blue));
+        assertEquals(1100, animation.getImage(red).getStartRPM());
+        assertEquals(2000, animation.getImage(green).getStartRPM());
+        assertEquals(3100, animation.getImage(blue).getStartRPM());
+
+        // A failing transform leaves every Image as it was
+        List<Image> before = animation.getImages();
+        assertThrows(IllegalArgumentException.class, () -> animation.transform(null, ImageTransforms.offsetRpm(6000)));
+        assertConsistent(animation, List.of(red, green, blue));
+        for (int i = 0; i < before.size(); i++) {
+            assertSame(before.get(i), animation.getImages().get(i));
+        }
+    }
+
+    @Test
+    void clearingForgetsEveryId() {
+        Animation animation = new Animation();
+        long red = animation.add(RED);
+        Image redImage = animation.getImage(red);
+        animation.add(GREEN);
+
+        animation.clear();
+        assertConsistent(animation, List.of());
+        assertEquals(-1, animation.indexOf(red));
+        assertEquals(Animation.NO_IMAGE_ID, animation.getImageId(redImage));
+
+        // IDs are never reused
+        long blue = animation.add(BLUE);
+        assertTrue(blue > red);
+        assertConsistent(animation, List.of(blue));
+    }
+
+    @Test
+    void staysConsistentOverRandomEdits() {
+        Random random = new Random(28);
+        String[] lines = {RED, GREEN, BLUE};
+        Animation animation = new Animation();
+        List<Long> expectedIds = new ArrayList<>();
+        for (int edit = 0; edit < 500; edit++) {
+            int operation = random.nextInt(4);
+            if (expectedIds.isEmpty() || (operation == 0 && expectedIds.size() < Animation.MAX_IMAGES)) {
+                int index = random.nextInt(expectedIds.size() + 1);
+                expectedIds.add(index, animation.add(index, lines[random.nextInt(lines.length)], null));
+            } else if (operation == 1) {
+                long id = expectedIds.remove(random.nextInt(expectedIds.size()));
+                assertTrue(animation.remove(id));
+            } else if (operation == 2) {
+                Image image = animation.getImage(expectedIds.get(random.nextInt(expectedIds.size())));
+                expectedIds.remove(Long.valueOf(animation.getImageId(image)));
+                assertTrue(animation.remove(image));
+            } else {
+                long id = expectedIds.get(random.nextInt(expectedIds.size()));
+                animation.replace(Map.of(id, new Image(lines[random.nextInt(lines.length)])));
+            }
+            assertConsistent(animation, expectedIds);
+        }
+    }
+}
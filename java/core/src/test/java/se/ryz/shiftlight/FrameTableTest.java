@@ -0,0 +1,76 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrameTableTest {
+
+    @Test
+    void compileMatchesTheRenderEngine() {
+        List<Image> images = TestPrograms.randomProgram(new Random(32), 30);
+        assertMatchesEngine(FrameTable.compile(images), images);
+    }
+
+    @Test
+    void solidColoursShareARun() {
+        FrameTable table = FrameTable.compile(List.of(new Image("[1],1000,3000,255,0,0,255,0,0,0")));
+        assertEquals(3, table.getRunCount());
+        assertEquals(1000, table.getRunStart(table.getRunIndex(2000)));
+        assertEquals(3000, table.getRunEnd(table.getRunIndex(2000)));
+        assertEquals(0xFF0000, table.getRgb(2000, 0));
+        assertEquals(0, table.getRgb(3001, 0));
+    }
+
+    @Test
+    void updateOnlyRendersTheChangedSpan() {
+        List<Image> images = new ArrayList<>(TestPrograms.randomProgram(new Random(33), 20));
+        images.set(10, new Image("[4,5],3000,3499,0,255,0,0,0,255,0"));
+        FrameTable table = FrameTable.compile(images);
+
+        List<Image> changed = new ArrayList<>(images);
+        changed.set(10, new Image("[4,5],3200,3999,255,0,0,0,0,255,0"));
+        assertEquals(1000, table.update(changed));
+        assertMatchesEngine(table, changed);
+        assertEquals(changed, table.getImages());
+
+        assertEquals(0, table.update(changed));
+    }
+
+    @Test
+    void updateMatchesCompileForRandomEdits() {
+        Random random = new Random(34);
+        List<Image> images = new ArrayList<>(TestPrograms.randomProgram(random, 25));
+        FrameTable table = FrameTable.compile(images);
+        for (int edit = 0; edit < 30; edit++) {
+            Image image = TestPrograms.randomProgram(random, 1).get(0);
+            switch (random.nextInt(3)) {
+                case 0:
+                    images.add(random.nextInt(images.size() + 1), image);
+                    break;
+                case 1:
+                    if (!images.isEmpty()) {
+                        images.remove(random.nextInt(images.size()));
+                    }
+                    break;
+                default:
+                    if (!images.isEmpty()) {
+                        images.set(random.nextInt(images.size()), image);
+                    }
+            }
+            table.update(images);
+            assertMatchesEngine(table, images);
+        }
+    }
+
+    private static void assertMatchesEngine(FrameTable table, List<Image> images) {
+        RenderEngine engine = new RenderEngine(images);
+        for (int rpm = 0; rpm <= RenderEngine.MAX_RPM; rpm++) {
+            assertEquals(engine.render(rpm).toString(), table.getFrame(rpm).toString(), "Frame at " + rpm + " RPM");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageTransformsTest {
+    private static final String VARIABLES = "idle=900\nshift=6500\nbright=200";
+
+    private static VariableParser parser() {
+        VariableParser parser = new VariableParser();
+        parser.parseVariables(VARIABLES);
+        return parser;
+    }
+
+    @Test
+    void offsetRpmKeepsExpressionsInTheSource() {
+        ImageTransform transform = ImageTransforms.offsetRpm(300);
+        assertEquals("[1,2],(idle)+300,2300,255,0,0,255,0,0,0",
+            transform.applyToSource("[1,2],idle,2000,255,0,0,255,0,0,0", parser()));
+        assertEquals("[1],(shift)-100,(shift+200)-100,0,0,0,0,0,0,0",
+            ImageTransforms.offsetRpm(-100).applyToSource("[1],shift,shift+200,0,0,0,0,0,0,0", parser()));
+    }
+
+    @Test
+    void offsetRpmRejectsRangesOutsideTheDevice() {
+        Image image = new Image("[1],9000,9900,0,0,0,0,0,0,0");
+        assertThrows(IllegalArgumentException.class, () -> ImageTransforms.offsetRpm(200).apply(image));
+        assertThrows(IllegalArgumentException.class, () -> ImageTransforms.offsetRpm(-9001).apply(image));
+    }
+
+    @Test
+    void scaleRpmTruncatesLikeTheExpressionLanguage() {
+        Image scaled = ImageTransforms.scaleRpm(1.1).apply(new Image("[1],1001,2000,0,0,0,0,0,0,0"));
+        assertEquals(1101, scaled.getStartRPM());
+        assertEquals(2200, scaled.getEndRPM());
+        assertEquals("[1],1101,(shift)*11/10,0,0,0,0,0,0,0",
+            ImageTransforms.scaleRpm(1.1).applyToSource("[1],1001,shift,0,0,0,0,0,0,0", parser()));
+    }
+
+    @Test
+    void remapLedsMirrorsAndMergesLeds() {
+        Image image = new Image("[1,2,13],1000,2000,0,0,0,0,0,0,0");
+        assertEquals(List.of(1, 12, 13), ImageTransforms.remapLeds(index -> 14 - index).apply(image).getLedIndices());
+        assertEquals(List.of(5), ImageTransforms.remapLeds(index -> 5).apply(image).getLedIndices());
+        assertThrows(IllegalArgumentException.class, () -> ImageTransforms.remapLeds(index -> index + 1).apply(image));
+    }
+
+    @Test
+    void dimmingKeepsExpressionsAndBrighteningSaturates() {
+        ImageTransform dim = ImageTransforms.multiplyBrightness(0.5);
+        assertEquals("[1],1000,2000,(bright)*1/2,100,0,127,0,0,0",
+            dim.applyToSource("[1],1000,2000,bright,200,0,255,0,0,0", parser()));
+
+        Image bright = ImageTransforms.multiplyBrightness(2).apply(new Image("[1],1000,2000,100,200,0,255,0,0,0"));
+        assertEquals(200, bright.getStartRed());
+        assertEquals(255, bright.getStartGreen());
+        assertEquals(255, bright.getEndRed());
+        assertThrows(IllegalArgumentException.class, () -> ImageTransforms.multiplyBrightness(-1));
+        assertThrows(IllegalArgumentException.class, () -> ImageTransforms.multiplyBrightness(Double.NaN));
+    }
+
+    @Test
+    void rotateHueKeepsGreyAndValue() {
+        Image image = ImageTransforms.rotateHue(120).apply(new Image("[1],1000,2000,255,0,0,128,128,128,0"));
+        assertEquals(List.of(0, 255, 0), List.of(image.getStartRed(), image.getStartGreen(), image.getStartBlue()));
+        assertEquals(List.of(128, 128, 128), List.of(image.getEndRed(), image.getEndGreen(), image.getEndBlue()));
+        Image back = ImageTransforms.rotateHue(-120).apply(image);
+        assertEquals(255, back.getStartRed());
+        assertEquals(0, back.getStartGreen());
+    }
+
+    @Test
+    void rewrittenSourceCompilesToTheTransformedImage() {
+        List<String> sources = List.of(
+            "[1,2,3-6],idle,shift,bright,0,0,255,bright/2,0,0",
+            "[7-13],shift+100,shift+(shift+idle)/10,0,bright,0,0,255,0,1,128",
+            "[4],0,9000,10,20,30,40,50,60,2,bright");
+        List<ImageTransform> transforms = List.of(
+            ImageTransforms.offsetRpm(250),
+            ImageTransforms.scaleRpm(0.9),
+            ImageTransforms.remapLeds(index -> 14 - index),
+            ImageTransforms.multiplyBrightness(0.3),
+            ImageTransforms.multiplyBrightness(1.7),
+            ImageTransforms.rotateHue(45));
+        VariableParser parser = parser();
+        for (ImageTransform transform : transforms) {
+            for (String source : sources) {
+                Image expected = transform.apply(new Image(source, parser));
+                String rewritten = transform.applyToSource(source, parser);
+                assertEquals(expected, new Image(rewritten, parser), source + " -> " + rewritten);
+            }
+        }
+    }
+}
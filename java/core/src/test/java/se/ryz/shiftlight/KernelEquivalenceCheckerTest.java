@@ -0,0 +1,51 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KernelEquivalenceCheckerTest {
+
+    @Test
+    void fixedPointKernelIsWithinOneStepOfFloatForEveryColourPair() {
+        KernelEquivalenceChecker.Report report = new KernelEquivalenceChecker().checkAllColors(0, RenderEngine.MAX_RPM);
+        System.out.println("Fixed point vs float: " + report.describe());
+        assertEquals(256L * 256 * (RenderEngine.MAX_RPM + 1), report.getChecked());
+        assertTrue(report.getMaxError() <= 1, report.describe());
+    }
+
+    @Test
+    void fixedPointKernelIsExact() {
+        for (int span : new int[] {1, 7, 255, 1000, RenderEngine.MAX_RPM}) {
+            for (int start = 0; start < 256; start += 5) {
+                for (int end = 0; end < 256; end += 5) {
+                    for (int offset = 0; offset <= span; offset++) {
+                        int expected = start + (int) Math.floorDiv((long) (end - start) * offset, span);
+                        int actual = FixedPointKernel.interpolate(start, end, offset, span, FixedPointKernel.proportion(offset, span));
+                        if (actual != expected) {
+                            assertEquals(expected, actual, start + "->" + end + " at " + offset + "/" + span);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void floatKernelTruncatesExactIntegers() {
+        // 99 * 707 / 9999 is exactly 7, float rounding gives 6.99...
+        assertEquals(7, FixedPointKernel.interpolate(0, 99, 707, 9999, FixedPointKernel.proportion(707, 9999)));
+        assertEquals(6, RenderEngine.interpolateFloat(0, 99, 707, 0, 9999));
+    }
+
+    @Test
+    void checksEveryChannelOfEveryActiveRpm() {
+        Image image = new Image("[1],1000,1099,0,0,0,255,128,10,0");
+        KernelEquivalenceChecker.Report report = new KernelEquivalenceChecker().check(List.of(image, image));
+        assertEquals(2 * 3 * 100, report.getChecked());
+        assertTrue(report.getMaxError() <= 1, report.describe());
+    }
+}
@@ -0,0 +1,64 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+    private static long second() {
+        return System.nanoTime() / 1_000_000_000L;
+    }
+
+    private static void sleepUntilSecond(long second) throws InterruptedException {
+        while (second() < second) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void meterCountsConcurrentMarksOfOneSecond() throws Exception {
+        MetricsRegistry.Meter meter = new MetricsRegistry.Meter();
+        long start = second() + 1;
+        sleepUntilSecond(start);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    meter.mark();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // The marks only take a few milliseconds, skip the check on a machine too slow for that
+        if (second() == start) {
+            sleepUntilSecond(start + 1);
+            assertEquals(40_000, meter.getLastSecondCount());
+            sleepUntilSecond(start + 2);
+            assertEquals(0, meter.getLastSecondCount());
+        }
+        assertEquals(40_000, meter.getCount());
+    }
+
+    @Test
+    void registryPublishesEveryValue() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry("se.ryz.shiftlight:type=Test");
+        registry.counter("Lines").add(3);
+        MetricsRegistry.Gauge open = registry.gauge("Open");
+        open.add(2);
+        open.add(-1);
+        registry.histogram("Latency").recordNanos(2_000_000);
+        assertEquals(1L, registry.getAttribute("Open"));
+        assertEquals(3L, registry.getAttribute("Lines"));
+        assertEquals(2.0, (Double) registry.getAttribute("LatencyMaxMillis"));
+        assertTrue(registry.dump().contains("se.ryz.shiftlight:type=Test Open=1\n"), registry.dump());
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("Lines"));
+    }
+}
@@ -0,0 +1,66 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RpmIntervalIndexTest {
+
+    @Test
+    void queryMatchesAFullScan() {
+        Random random = new Random(31);
+        for (int imageCount : new int[] {0, 1, 2, 17, Animation.MAX_IMAGES, 200}) {
+            List<Image> images = TestPrograms.randomProgram(random, imageCount);
+            RpmIntervalIndex index = new RpmIntervalIndex(images);
+            assertEquals(imageCount, index.size());
+            for (int rpm = 0; rpm <= RenderEngine.MAX_RPM; rpm++) {
+                assertArrayEquals(scan(images, rpm), index.query(rpm), imageCount + " images at " + rpm + " RPM");
+            }
+        }
+    }
+
+    @Test
+    void boundsAreInclusive() {
+        RpmIntervalIndex index = new RpmIntervalIndex(List.of(
+            new Image("[1],1000,2000,0,0,0,0,0,0,0"),
+            new Image("[2],2000,2000,0,0,0,0,0,0,0")));
+        assertArrayEquals(new int[0], index.query(999));
+        assertArrayEquals(new int[] {0}, index.query(1000));
+        assertArrayEquals(new int[] {0, 1}, index.query(2000));
+        assertArrayEquals(new int[0], index.query(2001));
+    }
+
+    @Test
+    void hitsGrowWithTheHitCountAndAreReusable() {
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            images.add(new Image("[1]," + (i * 10) + "," + (5000 + i) + ",0,0,0,0,0,0,0"));
+        }
+        RpmIntervalIndex index = new RpmIntervalIndex(images);
+        RpmIntervalIndex.Hits hits = new RpmIntervalIndex.Hits();
+
+        assertEquals(50, index.query(1000, hits).size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(i, hits.get(i));
+        }
+        assertEquals(11, index.query(100, hits).size());
+        assertEquals(10, hits.get(10));
+        assertArrayEquals(new int[] {49}, index.query(5049, hits).toArray());
+    }
+
+    private static int[] scan(List<Image> images, int rpm) {
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < images.size(); position++) {
+            Image image = images.get(position);
+            if (image.getStartRPM() <= rpm && rpm <= image.getEndRPM()) {
+                positions.add(position);
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
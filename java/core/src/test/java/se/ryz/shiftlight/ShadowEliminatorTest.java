@@ -0,0 +1,64 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShadowEliminatorTest {
+    private final ShadowEliminator eliminator = new ShadowEliminator();
+
+    @Test
+    void removesImagesHiddenByLaterImages() {
+        Image hidden = new Image("[1],1000,1999,255,0,0,255,0,0,0");
+        Image first = new Image("[1],1000,1499,0,255,0,0,255,0,0");
+        Image second = new Image("[1],1500,2500,0,0,255,0,0,255,0");
+        ShadowEliminator.Result result = eliminator.eliminate(List.of(hidden, first, second));
+
+        assertEquals(List.of(first, second), result.getImages());
+        assertEquals(1, result.getRemovedImageCount());
+        assertEquals("Image 1 removed: LED 1 hidden over 1000-1999 RPM by images 2, 3", result.describe());
+    }
+
+    @Test
+    void reducesImagesWithSomeHiddenLeds() {
+        Image image = new Image("[1,2,3],1000,2000,255,0,0,255,0,0,0");
+        Image cover = new Image("[1,3],500,2500,0,0,255,0,0,255,0");
+        ShadowEliminator.Result result = eliminator.eliminate(List.of(image, cover));
+
+        assertEquals(List.of(2), result.getImages().get(0).getLedIndices());
+        assertSame(cover, result.getImages().get(1));
+        assertEquals(0, result.getRemovedImageCount());
+        assertEquals("Image 1 reduced: LEDs 1,3 hidden over 1000-2000 RPM by images 2", result.describe());
+    }
+
+    @Test
+    void keepsImagesVisibleAtAnyRpm() {
+        List<Image> images = List.of(
+            new Image("[1],1000,2000,255,0,0,255,0,0,0"),
+            new Image("[1],1000,1499,0,255,0,0,255,0,0"),
+            // 1500 RPM is still shown by the first Image
+            new Image("[1],1501,2000,0,0,255,0,0,255,0"),
+            // Earlier Images never hide later ones
+            new Image("[1],0,9999,0,0,0,0,0,0,0"));
+        ShadowEliminator.Result result = eliminator.eliminate(images.subList(0, 3));
+        assertTrue(result.isUnchanged());
+        assertEquals(images.subList(0, 3), result.getImages());
+        assertEquals(1, eliminator.eliminate(images).getImages().size());
+    }
+
+    @Test
+    void strippedProgramsRenderTheSame() {
+        Random random = new Random(37);
+        for (int i = 0; i < 20; i++) {
+            List<Image> images = TestPrograms.randomProgram(random, 30);
+            ShadowEliminator.Result result = eliminator.eliminate(images);
+            TestPrograms.assertSameFrames(images, result.getImages());
+            assertEquals(images.size() - result.getRemovedImageCount(), result.getImages().size());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Random programs and frame comparisons shared by the rendering tests.
+ */
+final class TestPrograms {
+    private TestPrograms() {
+    }
+
+    /**
+     * Builds a random program. About half of the Images have a solid colour and RPM
+     * ranges snap to multiples of 250, so programs contain overlaps, hidden LEDs and
+     * Images that can be merged.
+     *
+     * @param random the source of randomness, seeded for reproducible failures
+     * @param imageCount the number of Images
+     * @return the Images in program order
+     */
+    static List<Image> randomProgram(Random random, int imageCount) {
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < imageCount; i++) {
+            TreeSet<Integer> leds = new TreeSet<>();
+            int ledCount = 1 + random.nextInt(4);
+            while (leds.size() < ledCount) {
+                leds.add(1 + random.nextInt(DeviceProfile.FIRMWARE_LED_COUNT));
+            }
+            int start = random.nextInt(36) * 250;
+            int end = Math.min(RenderEngine.MAX_RPM, start + random.nextInt(12) * 250 + (random.nextBoolean() ? 249 : 0));
+            int red = random.nextInt(4) * 85;
+            int green = random.nextInt(4) * 85;
+            int blue = random.nextInt(4) * 85;
+            boolean solid = random.nextBoolean();
+            int blinkMode = random.nextInt(5) == 0 ? 1 + random.nextInt(2) : 0;
+            images.add(new Image(new ArrayList<>(leds), start, end, red, green, blue,
+                solid ? red : 255 - red, solid ? green : 255 - green, solid ? blue : 255 - blue,
+                blinkMode, blinkMode != 0 ? 100 : null));
+        }
+        return images;
+    }
+
+    /**
+     * Asserts that two programs show the same frame at every RPM.
+     */
+    static void assertSameFrames(List<Image> expected, List<Image> actual) {
+        RenderEngine expectedEngine = new RenderEngine(expected);
+        RenderEngine actualEngine = new RenderEngine(actual);
+        for (int rpm = 0; rpm <= RenderEngine.MAX_RPM; rpm++) {
+            assertEquals(expectedEngine.render(rpm).toString(), actualEngine.render(rpm).toString(), "Frame at " + rpm + " RPM");
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package se.ryz.shiftlight;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the bytes allocated on the editing hot path against budgets, so a change that
+ * brings garbage back to every keystroke fails the build. Run by ./gradlew :gui:check,
+ * or alone with ./gradlew :gui:allocationBudget.
+ * <p>
+ * Allocation is measured with ThreadMXBean.getThreadAllocatedBytes after a warm-up, so the
+ * JIT has settled. Budgets have some headroom over the measured values; when a change
+ * legitimately needs more, raise the budget in the same change and say why.
+ */
+public class AllocationBudgets {
+    /**
+     * Typing a character into a row of a 40 row editor, on the EDT and the validation worker:
+     * the row is validated, the preview re-renders the RPMs of the edited row and the row
+     * panels, buttons and footprint label are updated.
+     */
+    private static final long KEYSTROKE_BUDGET_BYTES = 9_500;
+    /** Stripping the shadowed Images of the 40 rows for the footprint after each keystroke. */
+    private static final long FOOTPRINT_BUDGET_BYTES = 40_000;
+    /** Revalidating every row of a 40 row animation after the variables changed. */
+    private static final long VALIDATION_BUDGET_BYTES = 160_000;
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 5_000;
+    /** Each keystroke waits for two worker threads, so fewer of them are run. */
+    private static final int KEYSTROKE_WARMUP_ITERATIONS = 500;
+    private static final int KEYSTROKE_MEASURED_ITERATIONS = 200;
+    private static final int ROW_COUNT = 40;
+    /** The thread AnimationPanel computes the footprint on, it has a budget of its own. */
+    private static final String FOOTPRINT_THREAD = "shiftlight-footprint";
+
+    private static final String VARIABLES_TEXT = "idle=900\nshift=6500\nlimit=7200\nredline=7500\nstep=25";
+    private static final String CHANGED_VARIABLES_TEXT = "idle=950\nshift=6400\nlimit=7200\nredline=7500\nstep=25";
+
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        List<String> failures = new ArrayList<>();
+        KeystrokeAllocation keystroke = measureKeystroke();
+        check("keystroke (" + ROW_COUNT + " rows)", keystroke.editing, KEYSTROKE_BUDGET_BYTES, failures);
+        check("footprint (" + ROW_COUNT + " rows)", keystroke.footprint, FOOTPRINT_BUDGET_BYTES, failures);
+        check("full validation (" + ROW_COUNT + " rows)", measureValidation(), VALIDATION_BUDGET_BYTES, failures);
+
+        if (!failures.isEmpty()) {
+            System.err.println("Allocation budgets exceeded: " + String.join(", ", failures));
+            System.exit(1);
+        }
+    }
+
+    private static void check(String name, long bytes, long budget, List<String> failures) {
+        System.out.printf("%-28s %8d bytes, budget %8d%n", name, bytes, budget);
+        if (bytes > budget) {
+            failures.add(name);
+        }
+    }
+
+    private static List<String> rows() {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.add("[" + (i % 13 + 1) + "],idle+" + i * 9 + ",(shift+limit)/2-" + i
+                + "," + i + ",0," + (255 - i) + ",255," + i + ",0,0");
+        }
+        return rows;
+    }
+
+    /**
+     * Types a character that makes a row of the editor invalid and deletes it again, as the
+     * user does while editing. Each keystroke takes the path of the editor: the row updates
+     * the document, the ValidationService validates it on its worker, the batch is applied
+     * on the EDT, which updates the row borders, buttons and preview, and the footprint is
+     * computed on its own worker. The debounce delay is 0 so every keystroke is validated.
+     * Allocation is summed over every thread but the one driving the keystrokes, with the
+     * footprint worker counted apart from the others.
+     *
+     * @return bytes allocated per keystroke
+     */
+    private static KeystrokeAllocation measureKeystroke() throws Exception {
+        AnimationPanel[] panel = new AnimationPanel[1];
+        Document[] csvDocument = new Document[1];
+        SwingUtilities.invokeAndWait(() -> {
+            panel[0] = new AnimationPanel(new Animation(), 0);
+            panel[0].loadFromFile(List.of(VARIABLES_TEXT.split("\n")), rows());
+        });
+        awaitValidation(panel[0]);
+        SwingUtilities.invokeAndWait(() -> csvDocument[0] = panel[0].getImageRowPanel(ROW_COUNT / 2).getCsvDocument());
+
+        runKeystrokes(panel[0], csvDocument[0], KEYSTROKE_WARMUP_ITERATIONS);
+        long[] editingThreadIds = otherThreadIds(false);
+        long[] footprintThreadIds = otherThreadIds(true);
+        long editingBefore = allocatedBytes(editingThreadIds);
+        long footprintBefore = allocatedBytes(footprintThreadIds);
+        runKeystrokes(panel[0], csvDocument[0], KEYSTROKE_MEASURED_ITERATIONS);
+        long editing = allocatedBytes(editingThreadIds) - editingBefore;
+        long footprint = allocatedBytes(footprintThreadIds) - footprintBefore;
+        boolean[] valid = new boolean[1];
+        SwingUtilities.invokeAndWait(() -> valid[0] = panel[0].areAllRowsValid());
+        if (!valid[0]) {
+            throw new IllegalStateException("All rows should be valid after the keystrokes");
+        }
+        long keystrokes = 2L * KEYSTROKE_MEASURED_ITERATIONS;
+        return new KeystrokeAllocation(editing / keystrokes, footprint / keystrokes);
+    }
+
+    private static class KeystrokeAllocation {
+        private final long editing;
+        private final long footprint;
+
+        KeystrokeAllocation(long editing, long footprint) {
+            this.editing = editing;
+            this.footprint = footprint;
+        }
+    }
+
+    private static void runKeystrokes(AnimationPanel panel, Document document, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            edit(panel, () -> document.insertString(document.getLength(), "0", null));
+            edit(panel, () -> document.remove(document.getLength() - 1, 1));
+        }
+    }
+
+    private interface Edit {
+        void run() throws BadLocationException;
+    }
+
+    /**
+     * Makes an edit on the EDT and waits until its validation is applied and its footprint shown.
+     */
+    private static void edit(AnimationPanel panel, Edit edit) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                edit.run();
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitValidation(panel);
+    }
+
+    private static void awaitValidation(AnimationPanel panel) throws Exception {
+        CountDownLatch validated = new CountDownLatch(1);
+        SwingUtilities.invokeAndWait(() -> panel.whenValidated(validated::countDown));
+        validated.await();
+        Future<?> footprintRun = panel.getFootprintRun();
+        if (footprintRun != null) {
+            footprintRun.get();
+        }
+        // The footprint is shown by a task the build posted to the EDT before it completed
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    /**
+     * Gets the threads other than the one driving the keystrokes.
+     *
+     * @param footprint true for the footprint worker, false for every other thread
+     * @return the thread ids
+     */
+    private static long[] otherThreadIds(boolean footprint) {
+        long current = Thread.currentThread().getId();
+        return Arrays.stream(threads.getAllThreadIds())
+            .filter(id -> id != current)
+            .filter(id -> {
+                ThreadInfo info = threads.getThreadInfo(id);
+                return info != null && FOOTPRINT_THREAD.equals(info.getThreadName()) == footprint;
+            })
+            .toArray();
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threadIds)) {
+            // -1 for threads that have ended
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * Changes the variables of a document, which invalidates every row, and compiles all rows.
+     *
+     * @return bytes allocated per full validation
+     */
+    private static long measureValidation() {
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(VARIABLES_TEXT);
+        for (String row : rows()) {
+            document.addRow(row);
+        }
+
+        int warmupRuns = WARMUP_ITERATIONS / ROW_COUNT;
+        int measuredRuns = MEASURED_ITERATIONS / ROW_COUNT;
+        runValidations(document, warmupRuns);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        runValidations(document, measuredRuns);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        if (!document.isAllValid()) {
+            throw new IllegalStateException("All rows should be valid");
+        }
+        return allocated / measuredRuns;
+    }
+
+    private static void runValidations(AnimationDocument document, int runs) {
+        for (int i = 0; i < runs; i++) {
+            document.setVariablesText(i % 2 == 0 ? CHANGED_VARIABLES_TEXT : VARIABLES_TEXT);
+            document.compileStaleRows();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package se.ryz.shiftlight;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Renders an animation to image files for people without a device: an animated GIF,
+ * a PNG strip with one frame per row, or a numbered sequence of PNG files.
+ * Frames come from an RPM sweep or a recorded RpmTrace at a fixed frame rate and use
+ * the firmware's colours and blink timing, see RenderEngine and TimeDomainRenderer.
+ * Frames are rendered on a worker pool and written in order as they complete; at most
+ * a fixed number of frames are in flight, so memory use doesn't grow with the length
+ * of the export. A PNG strip is the exception, as the strip itself holds every frame.
+ */
+public class AnimationExporter {
+    public enum Format {
+        GIF("Animated GIF"),
+        PNG_STRIP("PNG strip"),
+        PNG_SEQUENCE("PNG sequence");
+
+        private final String description;
+
+        Format(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 25;
+
+    private final TimeDomainRenderer renderer;
+    private int framesPerSecond;
+    private int threads;
+    private int maxFramesInFlight;
+
+    /**
+     * Creates an exporter for a program.
+     *
+     * @param images the compiled Images in program order
+     */
+    public AnimationExporter(List<Image> images) {
+        this.renderer = new TimeDomainRenderer(images);
+        this.framesPerSecond = DEFAULT_FRAMES_PER_SECOND;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.maxFramesInFlight = threads * 2;
+    }
+
+    public void setFramesPerSecond(int framesPerSecond) {
+        if (framesPerSecond < 1 || framesPerSecond > 100) {
+            throw new IllegalArgumentException("Frames per second must be in range 1-100, got: " + framesPerSecond);
+        }
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Sets the size of the worker pool and how many frames may be rendered ahead of the writer.
+     *
+     * @param threads number of worker threads
+     * @param maxFramesInFlight frames rendered but not yet written, at least threads
+     */
+    public void setParallelism(int threads, int maxFramesInFlight) {
+        if (threads < 1 || maxFramesInFlight < threads) {
+            throw new IllegalArgumentException("Need at least 1 thread and as many frames in flight as threads");
+        }
+        this.threads = threads;
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
+    /**
+     * Exports a linear RPM sweep.
+     *
+     * @param fromRpm RPM of the first frame
+     * @param toRpm RPM of the last frame
+     * @param durationMillis duration of the sweep
+     * @param format the output format
+     * @param output the output file; for PNG_SEQUENCE the frames are numbered after its name
+     * @return the number of frames written
+     * @throws IOException if writing fails
+     */
+    public int exportSweep(int fromRpm, int toRpm, long durationMillis, Format format, File output) throws IOException {
+        int frameCount = Math.max(2, (int) (durationMillis * framesPerSecond / 1000) + 1);
+        return export(frameCount, i -> fromRpm + (int) ((long) (toRpm - fromRpm) * i / (frameCount - 1)), format, output);
+    }
+
+    /**
+     * Exports a recorded trace at its real speed.
+     *
+     * @param trace the RPM trace
+     * @param format the output format
+     * @param output the output file; for PNG_SEQUENCE the frames are numbered after its name
+     * @return the number of frames written
+     * @throws IOException if writing fails
+     */
+    public int exportTrace(RpmTrace trace, Format format, File output) throws IOException {
+        int frameCount = (int) (trace.getDurationMicros() * framesPerSecond / 1_000_000) + 1;
+        return export(frameCount, i -> trace.rpmAt(i * 1_000_000L / framesPerSecond), format, output);
+    }
+
+    private int export(int frameCount, IntUnaryOperator rpmForFrame, Format format, File output) throws IOException {
+        FrameWriter writer;
+        switch (format) {
+            case GIF:
+                writer = new GifWriter(output, 1000 / framesPerSecond);
+                break;
+            case PNG_STRIP:
+                writer = new PngStripWriter(output, frameCount);
+                break;
+            default:
+                writer = new PngSequenceWriter(output);
+                break;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "shiftlight-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<BufferedImage>> inFlight = new ArrayDeque<>();
+            for (int i = 0; i < frameCount; i++) {
+                if (inFlight.size() == maxFramesInFlight) {
+                    writer.write(await(inFlight.poll()));
+                }
+                long timeMillis = i * 1000L / framesPerSecond;
+                int rpm = rpmForFrame.applyAsInt(i);
+                inFlight.add(workers.submit(() -> LedStripPainter.paint(renderer.render(rpm, timeMillis))));
+            }
+            while (!inFlight.isEmpty()) {
+                writer.write(await(inFlight.poll()));
+            }
+            writer.finish();
+        } finally {
+            workers.shutdownNow();
+            writer.close();
+        }
+        return frameCount;
+    }
+
+    private static BufferedImage await(Future<BufferedImage> frame) throws IOException {
+        try {
+            return frame.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Rendering a frame failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Writes frames in order. close() is always called, finish() only after all frames were written.
+     */
+    private interface FrameWriter {
+        void write(BufferedImage frame) throws IOException;
+
+        void finish() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private static class GifWriter implements FrameWriter {
+        private final ImageOutputStream stream;
+        private final ImageWriter writer;
+        private final int delayCentiseconds;
+
+        GifWriter(File output, int frameMillis) throws IOException {
+            this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+            this.stream = ImageIO.createImageOutputStream(output);
+            if (stream == null) {
+                throw new IOException("Can't write to " + output);
+            }
+            this.delayCentiseconds = Math.max(1, frameMillis / 10);
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+        }
+
+        @Override
+        public void write(BufferedImage frame) throws IOException {
+            writer.writeToSequence(new IIOImage(frame, null, createMetadata(frame)), null);
+        }
+
+        private IIOMetadata createMetadata(BufferedImage frame) throws IOException {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+            String formatName = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = new IIOMetadataNode(formatName);
+
+            IIOMetadataNode graphicControl = new IIOMetadataNode("GraphicControlExtension");
+            graphicControl.setAttribute("disposalMethod", "none");
+            graphicControl.setAttribute("userInputFlag", "FALSE");
+            graphicControl.setAttribute("transparentColorFlag", "FALSE");
+            graphicControl.setAttribute("delayTime", String.valueOf(delayCentiseconds));
+            graphicControl.setAttribute("transparentColorIndex", "0");
+            root.appendChild(graphicControl);
+
+            // Loop forever
+            IIOMetadataNode applicationExtensions = new IIOMetadataNode("ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[] {1, 0, 0});
+            applicationExtensions.appendChild(loop);
+            root.appendChild(applicationExtensions);
+
+            metadata.mergeTree(formatName, root);
+            return metadata;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.endWriteSequence();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.dispose();
+            stream.close();
+        }
+    }
+
+    private static class PngStripWriter implements FrameWriter {
+        private final File output;
+        private final BufferedImage strip;
+        private final Graphics2D graphics;
+        private int frameIndex;
+
+        PngStripWriter(File output, int frameCount) {
+            this.output = output;
+            this.strip = new BufferedImage(LedStripPainter.WIDTH, LedStripPainter.HEIGHT * frameCount, BufferedImage.TYPE_INT_RGB);
+            this.graphics = strip.createGraphics();
+        }
+
+        @Override
+        public void write(BufferedImage frame) {
+            graphics.drawImage(frame, 0, frameIndex++ * LedStripPainter.HEIGHT, null);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!ImageIO.write(strip, "png", output)) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+
+        @Override
+        public void close() {
+            graphics.dispose();
+        }
+    }
+
+    private static class PngSequenceWriter implements FrameWriter {
+        private final File directory;
+        private final String baseName;
+        private int frameIndex;
+
+        PngSequenceWriter(File output) {
+            File parent = output.getAbsoluteFile().getParentFile();
+            String name = output.getName();
+            this.directory = parent;
+            this.baseName = name.toLowerCase().endsWith(".png") ? name.substring(0, name.length() - 4) : name;
+        }
+
+        @Override
+        public void write(BufferedImage frame) throws IOException {
+            File file = new File(directory, String.format("%s_%05d.png", baseName, frameIndex++));
+            if (!ImageIO.write(frame, "png", file)) {
+                throw new IOException("No PNG writer available");
+            }
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
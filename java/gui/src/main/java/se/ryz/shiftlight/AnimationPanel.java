@@ -0,0 +1,591 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AnimationPanel extends JPanel {
+    private JTextArea variablesTextArea;
+    private JPanel imageRowsPanel;
+    private Animation animation;
+    private final AnimationDocument document;
+    private final List<ImageRowPanel> imageRowPanels;
+    private JButton addRowButton;
+    private JButton bulkEditButton;
+    private JLabel footprintLabel;
+    private LedStripPreview ledStripPreview;
+    private FootprintPlanner footprintPlanner;
+    private final ValidationService validationService;
+    private final List<Runnable> afterValidation;
+    private final ExecutorService footprintWorker;
+    private final AtomicLong footprintGeneration;
+    private Future<?> footprintRun;
+    private int footprintImageCount;
+    private boolean refreshPending;
+    private boolean syncingAnimation;
+
+    public AnimationPanel(Animation animation) {
+        this(animation, ValidationService.DEFAULT_DEBOUNCE_MS);
+    }
+
+    /**
+     * @param animation the Animation edited by the panel
+     * @param debounceMs the delay between the last edit and its validation
+     */
+    AnimationPanel(Animation animation, int debounceMs) {
+        this.animation = animation;
+        this.document = new AnimationDocument();
+        this.imageRowPanels = new ArrayList<>();
+        this.footprintPlanner = new FootprintPlanner(DeviceProfile.DEFAULT);
+        this.validationService = new ValidationService(this::createValidationSnapshot, this::applyValidationBatch, debounceMs);
+        this.afterValidation = new ArrayList<>();
+        this.footprintWorker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shiftlight-footprint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.footprintGeneration = new AtomicLong();
+        initializeComponents();
+        setupAnimationListener();
+        setupVariablesListener();
+        syncDocumentWithAnimation();
+        refreshImageRows();
+    }
+
+    private void initializeComponents() {
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Top part: Variables text area
+        JPanel topPanel = new JPanel(new BorderLayout(5, 5));
+        JLabel variablesLabel = new JLabel("Variables");
+        variablesLabel.setFont(variablesLabel.getFont().deriveFont(Font.BOLD));
+        
+        variablesTextArea = new JTextArea(5, 40);
+        variablesTextArea.setLineWrap(true);
+        variablesTextArea.setWrapStyleWord(true);
+        variablesTextArea.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                updateVariables();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                updateVariables();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                updateVariables();
+            }
+        });
+        JScrollPane variablesScrollPane = new JScrollPane(variablesTextArea);
+        variablesScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+        variablesScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        
+        topPanel.add(variablesLabel, BorderLayout.NORTH);
+        topPanel.add(variablesScrollPane, BorderLayout.CENTER);
+
+        // Bottom part: Animation image rows
+        JPanel bottomPanel = new JPanel(new BorderLayout(5, 5));
+        JLabel animationLabel = new JLabel("Animation");
+        animationLabel.setFont(animationLabel.getFont().deriveFont(Font.BOLD));
+        
+        imageRowsPanel = new JPanel();
+        imageRowsPanel.setLayout(new BoxLayout(imageRowsPanel, BoxLayout.Y_AXIS));
+        imageRowsPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JScrollPane imageRowsScrollPane = new JScrollPane(imageRowsPanel);
+        imageRowsScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+        imageRowsScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        
+        addRowButton = new JButton("Add Image Row");
+        addRowButton.setToolTipText("All rows must have valid CSV before adding a new row");
+        addRowButton.addActionListener(e -> addImageRow());
+
+        bulkEditButton = new JButton("Bulk Edit...");
+        bulkEditButton.setToolTipText("Shift RPMs, remap LEDs or change colours of all rows");
+        bulkEditButton.addActionListener(e -> showBulkEditDialog());
+
+        footprintLabel = new JLabel();
+        footprintLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        updateButtonStates();
+        
+        JPanel bottomHeaderPanel = new JPanel(new BorderLayout());
+        bottomHeaderPanel.add(animationLabel, BorderLayout.WEST);
+        bottomHeaderPanel.add(footprintLabel, BorderLayout.CENTER);
+        JPanel rowButtonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        rowButtonsPanel.add(bulkEditButton);
+        rowButtonsPanel.add(addRowButton);
+        bottomHeaderPanel.add(rowButtonsPanel, BorderLayout.EAST);
+        
+        bottomPanel.add(bottomHeaderPanel, BorderLayout.NORTH);
+        bottomPanel.add(imageRowsScrollPane, BorderLayout.CENTER);
+
+        // Add both panels with a splitter
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, topPanel, bottomPanel);
+        splitPane.setResizeWeight(0.3); // Give 30% to top, 70% to bottom
+        splitPane.setDividerLocation(200);
+        splitPane.setOneTouchExpandable(true);
+
+        add(splitPane, BorderLayout.CENTER);
+
+        // Preview of the rows as they are edited, without programming a device
+        ledStripPreview = new LedStripPreview();
+        add(ledStripPreview, BorderLayout.SOUTH);
+    }
+
+    private void setupAnimationListener() {
+        animation.addAnimationListener(event -> {
+            if (syncingAnimation) {
+                // Images compiled by the document, the rows already show them
+                return;
+            }
+            switch (event.getEventType()) {
+                case IMAGE_ADDED:
+                case IMAGE_REMOVED:
+                case IMAGES_TRANSFORMED:
+                case ANIMATION_CLEARED:
+                    scheduleRefresh();
+                    break;
+            }
+        });
+    }
+
+    private void setupVariablesListener() {
+        // Variables are updated via document listener on variablesTextArea
+    }
+
+    /**
+     * Coalesces animation events into a single refresh of the rows on the EDT.
+     */
+    private void scheduleRefresh() {
+        if (refreshPending) {
+            return;
+        }
+        refreshPending = true;
+        SwingUtilities.invokeLater(() -> {
+            refreshPending = false;
+            syncDocumentWithAnimation();
+            refreshImageRows();
+        });
+    }
+
+    /**
+     * Brings the document rows in line with the Animation: rows whose Image was removed
+     * are dropped and Images added without a row get one holding their evaluated CSV.
+     */
+    private void syncDocumentWithAnimation() {
+        for (DocumentRow row : document.getRows()) {
+            if (row.getImageId() != Animation.NO_IMAGE_ID && animation.indexOf(row.getImageId()) < 0) {
+                document.removeRow(row);
+            }
+        }
+        for (long imageId : animation.getImageIds()) {
+            if (document.getRowForImage(imageId) == null) {
+                document.addRow(document.size(), animation.getImage(imageId).toCsvLine(), imageId);
+            }
+        }
+    }
+
+    private void updateVariables() {
+        // Every row is invalidated; they are re-validated in the background to update
+        // borders (red for invalid, gray for valid) and tooltips
+        document.setVariablesText(variablesTextArea.getText());
+        if (document.getVariablesError() != null) {
+            // Invalid variables, but don't prevent UI from working
+            System.err.println("Invalid variables: " + document.getVariablesError());
+        }
+        validationService.schedule();
+    }
+
+    private ValidationService.Snapshot createValidationSnapshot() {
+        // Only rows edited since they were last compiled need validating
+        List<String> sources = new ArrayList<>();
+        List<Integer> rowIndices = new ArrayList<>();
+        List<DocumentRow> rows = document.getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).isStale()) {
+                sources.add(rows.get(i).getSource());
+                rowIndices.add(i);
+            }
+        }
+        return new ValidationService.Snapshot(document.getVariablesText(), sources, rowIndices);
+    }
+
+    private void applyValidationBatch(ValidationService.Batch batch) {
+        // Rows edited after the snapshot have no result; a newer run is already scheduled
+        List<DocumentRow> compiledRows = new ArrayList<>();
+        for (DocumentRow row : document.getStaleRows()) {
+            if (document.applyResult(row, batch.getResult(row.getSource()))) {
+                compiledRows.add(row);
+            }
+        }
+        syncingAnimation = true;
+        try {
+            animation.replace(compiledImagesById(compiledRows));
+        } finally {
+            syncingAnimation = false;
+        }
+        for (ImageRowPanel rowPanel : imageRowPanels) {
+            rowPanel.applyValidationResult(rowPanel.getDocumentRow().getResult());
+        }
+        updateButtonStates();
+        updatePreview();
+        if (!document.hasPendingRows() && !afterValidation.isEmpty()) {
+            List<Runnable> actions = new ArrayList<>(afterValidation);
+            afterValidation.clear();
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Runs an action once every row is validated: now if no row is pending, otherwise after
+     * the background validation published its results. Used for saving and programming,
+     * which must see every row the user typed.
+     *
+     * @param action the action to run on the Event Dispatch Thread
+     */
+    public void whenValidated(Runnable action) {
+        if (document.hasPendingRows()) {
+            afterValidation.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private void refreshImageRows() {
+        ShiftlightEvents.RowRefresh event = new ShiftlightEvents.RowRefresh();
+        event.begin();
+        imageRowsPanel.removeAll();
+        imageRowPanels.clear();
+
+        // Always offer an empty row to type into
+        if (document.size() == 0) {
+            document.addRow("");
+        }
+        for (DocumentRow row : document.getRows()) {
+            ImageRowPanel rowPanel = createRowPanel(row);
+            imageRowPanels.add(rowPanel);
+            imageRowsPanel.add(rowPanel);
+        }
+
+        validationService.schedule();
+        updateButtonStates();
+        updatePreview();
+        revalidate();
+        repaint();
+        event.rowCount = imageRowPanels.size();
+        event.commit();
+    }
+
+    private ImageRowPanel createRowPanel(DocumentRow row) {
+        ImageRowPanel rowPanel = new ImageRowPanel();
+        rowPanel.setVariableParser(document.getVariableParser());
+        rowPanel.setDocumentRow(row);
+        rowPanel.setOnCsvEditedCallback(() -> {
+            document.setSource(row, rowPanel.getCsvLine());
+            validationService.schedule();
+        });
+        // Show the source as the user typed it, with its pre-computed diagnostics
+        rowPanel.setCsvLine(row.getSource());
+        rowPanel.applyValidationResult(row.getResult());
+        rowPanel.setOnRemoveCallback(() -> removeRow(row));
+        rowPanel.setOnDuplicateCallback(() -> duplicateRow(row));
+        rowPanel.setOnValidityChangedCallback(() -> updateButtonStates());
+        return rowPanel;
+    }
+
+    private void addImageRow() {
+        document.addRow("");
+        refreshImageRows();
+    }
+
+    private void removeRow(DocumentRow row) {
+        // The animation listener refreshes the rows for rows that are part of the animation
+        if (!animation.remove(row.getImageId())) {
+            document.removeRow(row);
+            refreshImageRows();
+        }
+    }
+
+    private void showBulkEditDialog() {
+        String[] operations = {
+            "Offset RPM by",
+            "Scale RPM by factor",
+            "Multiply brightness by",
+            "Rotate hue by degrees",
+            "Mirror LEDs"
+        };
+        JComboBox<String> operationComboBox = new JComboBox<>(operations);
+        JTextField valueField = new JTextField("0", 10);
+        operationComboBox.addActionListener(e -> valueField.setEnabled(operationComboBox.getSelectedIndex() != 4));
+
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Operation:"));
+        panel.add(operationComboBox);
+        panel.add(new JLabel("Value:"));
+        panel.add(valueField);
+
+        int choice = JOptionPane.showConfirmDialog(this, panel, "Bulk Edit All Rows",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        try {
+            ImageTransform transform;
+            String value = valueField.getText().trim();
+            switch (operationComboBox.getSelectedIndex()) {
+                case 0:
+                    transform = ImageTransforms.offsetRpm(Integer.parseInt(value));
+                    break;
+                case 1:
+                    transform = ImageTransforms.scaleRpm(Double.parseDouble(value));
+                    break;
+                case 2:
+                    transform = ImageTransforms.multiplyBrightness(Double.parseDouble(value));
+                    break;
+                case 3:
+                    transform = ImageTransforms.rotateHue(Double.parseDouble(value));
+                    break;
+                default:
+                    transform = ImageTransforms.remapLeds(index -> DeviceProfile.FIRMWARE_LED_COUNT + 1 - index);
+                    break;
+            }
+            applyTransform(transform);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid value: " + valueField.getText(),
+                "Bulk Edit", JOptionPane.ERROR_MESSAGE);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Nothing was changed.\n" + e.getMessage(),
+                "Bulk Edit", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Applies a transform to every row. The Animation Images the rows belong to are replaced
+     * by the transformed rows' Images, the document is what is saved and programmed.
+     * Nothing is changed if the transform fails for any row.
+     *
+     * @param transform the transform to apply
+     * @throws IllegalArgumentException if the transform fails for a row
+     */
+    public void applyTransform(ImageTransform transform) {
+        document.transformRows(null, transform);
+        // The IMAGES_TRANSFORMED event refreshes the rows once; editor-only rows fire no event
+        if (animation.replace(compiledImagesById(document.getRows())) == 0) {
+            scheduleRefresh();
+        }
+    }
+
+    /**
+     * Collects the compiled Images of rows that belong to an Animation Image, for keeping
+     * the Animation in step with the document.
+     */
+    private Map<Long, Image> compiledImagesById(Collection<DocumentRow> rows) {
+        Map<Long, Image> imagesById = new HashMap<>();
+        for (DocumentRow row : rows) {
+            if (row.isCompiled() && animation.indexOf(row.getImageId()) >= 0) {
+                imagesById.put(row.getImageId(), row.getImage());
+            }
+        }
+        return imagesById;
+    }
+
+    public boolean areAllRowsValid() {
+        return document.isAllValid();
+    }
+
+    public void updateButtonStates() {
+        if (document.hasPendingRows()) {
+            // Keep the current state until the background validation publishes its results
+            return;
+        }
+        boolean allValid = areAllRowsValid();
+        boolean isEmpty = true;
+        for (DocumentRow row : document.getRows()) {
+            isEmpty &= row.isEmpty();
+        }
+        
+        if (addRowButton != null) {
+            // Enable "Add image row" button if all rows are valid OR if there are no rows
+            addRowButton.setEnabled(allValid || isEmpty);
+        }
+        if (bulkEditButton != null) {
+            // Transforms are all-or-nothing, so every row must compile first
+            bulkEditButton.setEnabled(allValid);
+        }
+        updateFootprint();
+        // Notify parent to update save button (save still requires at least one valid row)
+        firePropertyChange("allRowsValid", !allValid, allValid);
+    }
+
+    /**
+     * Shows the footprint of the compiled rows without images and LEDs hidden by later rows.
+     * It is an upper bound: merging equivalent images is too expensive to repeat on every
+     * edit and only happens when the program is built for saving or programming, which checks
+     * the exact footprint. Stripping runs off the EDT; runs superseded by a newer one before
+     * they start are skipped, their results are never shown.
+     */
+    private void updateFootprint() {
+        if (footprintLabel == null) {
+            return;
+        }
+        List<Image> images = document.getCompiledImages();
+        long generation = footprintGeneration.incrementAndGet();
+        footprintRun = footprintWorker.submit(() -> {
+            if (footprintGeneration.get() != generation) {
+                return;
+            }
+            int imageCount = new ShadowEliminator().eliminate(images).getImages().size();
+            SwingUtilities.invokeLater(() -> {
+                if (footprintGeneration.get() == generation) {
+                    footprintImageCount = imageCount;
+                    showFootprint();
+                }
+            });
+        });
+    }
+
+    /**
+     * Gets the latest footprint build. The footprint is shown by an EDT task posted when it completes.
+     *
+     * @return the build, null if none was started
+     */
+    Future<?> getFootprintRun() {
+        return footprintRun;
+    }
+
+    ImageRowPanel getImageRowPanel(int index) {
+        return imageRowPanels.get(index);
+    }
+
+    private void showFootprint() {
+        FootprintPlanner.Footprint footprint = footprintPlanner.plan(footprintImageCount);
+        footprintLabel.setText(footprint.describe());
+        footprintLabel.setForeground(footprint.fits() ? UIManager.getColor("Label.foreground") : Color.RED);
+        // Programming merges equivalent images, so the program can only be smaller
+        footprintLabel.setToolTipText((footprint.fits() ? footprint.getProfile().getBoard() : footprint.getOverflowReason())
+            + " (before merging equivalent images)");
+    }
+
+    private void updatePreview() {
+        if (ledStripPreview != null) {
+            ledStripPreview.setImages(document.getCompiledImages());
+        }
+    }
+
+    public LedStripPreview getLedStripPreview() {
+        return ledStripPreview;
+    }
+
+    public DeviceProfile getDeviceProfile() {
+        return footprintPlanner.getProfile();
+    }
+
+    public void setDeviceProfile(DeviceProfile deviceProfile) {
+        this.footprintPlanner = new FootprintPlanner(deviceProfile);
+        // The program doesn't depend on the device, only its footprint does
+        if (footprintLabel != null) {
+            showFootprint();
+        }
+    }
+
+    public String getVariablesText() {
+        return variablesTextArea.getText();
+    }
+
+    public void setVariablesText(String text) {
+        variablesTextArea.setText(text);
+    }
+
+    /**
+     * Gets the document holding the rows as typed, with their compiled form and diagnostics.
+     *
+     * @return the editor document
+     */
+    public AnimationDocument getDocument() {
+        return document;
+    }
+
+    public String generateProgramOutput() {
+        return document.generateProgramOutput();
+    }
+
+    public List<String> getAllCsvLines() {
+        // Source lines as typed, for empty and invalid rows filtered out
+        return document.getSourceLines();
+    }
+
+    public void loadFromFile(List<String> variables, List<String> csvLines) {
+        // Clear current animation and rows
+        animation.clear();
+        document.clear();
+        
+        // Set variables; the text area listener passes them to the document
+        String variablesText = String.join("\n", variables);
+        setVariablesText(variablesText);
+        if (document.getVariablesError() != null) {
+            System.err.println("Warning: Some variables may be invalid: " + document.getVariablesError());
+        }
+        
+        // Add all CSV lines to animation (filter out empty lines), keeping the source as written
+        for (String csvLine : csvLines) {
+            if (csvLine == null) {
+                continue;
+            }
+            String trimmed = csvLine.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                long imageId = animation.add(trimmed, document.getVariableParser());
+                document.addRow(document.size(), trimmed, imageId);
+            } catch (IllegalArgumentException e) {
+                // Keep invalid lines as editor rows so they can be fixed instead of lost
+                System.err.println("Invalid CSV line: " + csvLine + " (" + e.getMessage() + ")");
+                document.addRow(trimmed);
+            }
+        }
+        
+        // refreshImageRows will be called by the animation listener; refresh now in case
+        // loading produced no animation events
+        refreshImageRows();
+    }
+
+    private void duplicateRow(DocumentRow sourceRow) {
+        String csvLine = sourceRow.getSource();
+        if (csvLine.isEmpty()) {
+            return; // Nothing to duplicate
+        }
+
+        // Insert the duplicate right after the source row
+        int rowIndex = document.indexOf(sourceRow);
+        if (rowIndex == -1) {
+            return;
+        }
+
+        // If the source row is part of the animation, add the duplicate to animation too
+        long duplicateImageId = Animation.NO_IMAGE_ID;
+        int imageIndex = animation.indexOf(sourceRow.getImageId());
+        if (imageIndex >= 0) {
+            try {
+                duplicateImageId = animation.add(imageIndex + 1, csvLine, document.getVariableParser());
+            } catch (IllegalArgumentException e) {
+                // Invalid CSV or animation full, duplicate as an editor-only row
+            }
+        }
+        DocumentRow duplicate = document.addRow(rowIndex + 1, csvLine, duplicateImageId);
+        document.applyResult(duplicate, sourceRow.getResult());
+        refreshImageRows();
+    }
+}
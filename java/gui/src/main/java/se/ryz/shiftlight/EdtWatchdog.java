@@ -0,0 +1,154 @@
+package se.ryz.shiftlight;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.PrintStream;
+
+/**
+ * Finds UI freezes: an EventQueue that times every event dispatch, and a watcher thread
+ * that samples the stack of the Event Dispatch Thread while a dispatch runs over the
+ * threshold, so the report shows where the time went rather than where it ended.
+ * Durations of all dispatches go to a histogram published over JMX as
+ * se.ryz.shiftlight:type=Edt. A dispatch that opened a modal dialog runs a nested event
+ * loop until the dialog closes; such dispatches are not timed since the EDT wasn't stuck.
+ * <p>
+ * Opt-in: start the editor with -Dshiftlight.edtWatchdog.thresholdMillis=50.
+ */
+public class EdtWatchdog extends EventQueue {
+    public static final String THRESHOLD_PROPERTY = "shiftlight.edtWatchdog.thresholdMillis";
+    public static final String OBJECT_NAME = "se.ryz.shiftlight:type=Edt";
+
+    private final long thresholdNanos;
+    private final PrintStream out;
+    private final MetricsRegistry registry;
+    private final MetricsRegistry.Histogram dispatchDuration;
+    private final MetricsRegistry.Counter stalls;
+
+    // Only used on the EDT
+    private int depth;
+    private boolean ranNestedLoop;
+    // Written by the EDT, read by the watcher
+    private volatile Thread dispatchThread;
+    private volatile long dispatchStart;
+    private volatile long dispatchSequence;
+    // Written by the watcher, read by the EDT after the dispatch
+    private volatile StackTraceElement[] stalledStack;
+    private volatile long stalledSequence = -1;
+
+    /**
+     * @param thresholdMillis dispatches taking longer than this are reported
+     * @param out where to print reports
+     */
+    public EdtWatchdog(long thresholdMillis, PrintStream out) {
+        if (thresholdMillis <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + thresholdMillis);
+        }
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+        this.out = out;
+        this.registry = new MetricsRegistry(OBJECT_NAME);
+        this.dispatchDuration = registry.histogram("Dispatch");
+        this.stalls = registry.counter("Stalls");
+    }
+
+    /**
+     * Installs a watchdog if the system property shiftlight.edtWatchdog.thresholdMillis is positive.
+     *
+     * @return the installed watchdog, or null if not enabled
+     */
+    public static EdtWatchdog installIfEnabled() {
+        long thresholdMillis = Long.getLong(THRESHOLD_PROPERTY, 0);
+        if (thresholdMillis <= 0) {
+            return null;
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis, System.err);
+        watchdog.install();
+        return watchdog;
+    }
+
+    /**
+     * Replaces the system event queue with this one and starts the watcher thread.
+     */
+    public void install() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(this);
+        registry.registerMBean();
+        Thread watcher = new Thread(this::watch, "shiftlight-edt-watchdog");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("EDT watchdog reporting dispatches over " + thresholdNanos / 1_000_000 + " ms");
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        boolean nested = depth > 0;
+        depth++;
+        ranNestedLoop = false;
+        dispatchThread = Thread.currentThread();
+        long sequence = dispatchSequence + 1;
+        long start = System.nanoTime();
+        dispatchStart = start;
+        dispatchSequence = sequence;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long duration = System.nanoTime() - start;
+            // Mark idle before reporting so the watcher doesn't sample the report itself,
+            // this also stops watching an enclosing dispatch
+            dispatchStart = 0;
+            depth--;
+            boolean waitedInNestedLoop = ranNestedLoop;
+            ranNestedLoop = nested;
+            if (!waitedInNestedLoop) {
+                dispatchDuration.recordNanos(duration);
+                if (duration > thresholdNanos) {
+                    stalls.increment();
+                    report(event, duration, stalledSequence == sequence ? stalledStack : null);
+                }
+            }
+        }
+    }
+
+    private void report(AWTEvent event, long durationNanos, StackTraceElement[] stack) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("EDT stall: %.0f ms dispatching %s from %s%n",
+            durationNanos / 1_000_000.0, event.getClass().getName(), event.getSource().getClass().getName()));
+        if (stack != null) {
+            sb.append("  EDT stack sampled after the threshold:\n");
+            for (StackTraceElement element : stack) {
+                sb.append("    at ").append(element).append("\n");
+            }
+        }
+        sb.append(String.format("  Dispatches: %d, p50/p99/max %.1f/%.1f/%.1f ms, %d stalls%n",
+            dispatchDuration.getCount(), dispatchDuration.getPercentileMillis(50),
+            dispatchDuration.getPercentileMillis(99), dispatchDuration.getMaxMillis(), stalls.get()));
+        out.print(sb);
+    }
+
+    private void watch() {
+        long intervalMillis = Math.max(1, thresholdNanos / 1_000_000 / 4);
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = dispatchStart;
+            long sequence = dispatchSequence;
+            Thread thread = dispatchThread;
+            if (start == 0 || thread == null || sequence == stalledSequence
+                || System.nanoTime() - start < thresholdNanos) {
+                continue;
+            }
+            StackTraceElement[] stack = thread.getStackTrace();
+            // Only keep the sample if the same dispatch was still running
+            if (dispatchSequence == sequence && dispatchStart == start) {
+                stalledStack = stack;
+                stalledSequence = sequence;
+            }
+        }
+    }
+}
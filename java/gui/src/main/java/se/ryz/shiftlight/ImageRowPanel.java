@@ -0,0 +1,364 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import java.awt.*;
+
+public class ImageRowPanel extends JPanel {
+    // Shared, borders are immutable and rows switch between them on every validation
+    private static final javax.swing.border.Border NORMAL_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(Color.GRAY),
+        BorderFactory.createEmptyBorder(2, 5, 2, 5)
+    );
+    private static final javax.swing.border.Border INVALID_BORDER = BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(Color.RED, 2),
+        BorderFactory.createEmptyBorder(2, 5, 2, 5)
+    );
+
+    private JTextField csvTextField;
+    private JButton startColorButton;
+    private JButton endColorButton;
+    private Color startColor;
+    private Color endColor;
+    private Image currentImage;
+    private Runnable onRemoveCallback;
+    private Runnable onDuplicateCallback;
+    private Runnable onValidityChangedCallback;
+    private Runnable onCsvEditedCallback;
+    private VariableParser variableParser;
+    private RowValidationResult validationResult;
+    private DocumentRow documentRow;
+
+    public ImageRowPanel() {
+        this.startColor = Color.BLACK;
+        this.endColor = Color.BLACK;
+        this.variableParser = null;
+        initializeComponents();
+    }
+
+    public void setVariableParser(VariableParser variableParser) {
+        this.variableParser = variableParser;
+        // Re-validate CSV with new variables and update border/tooltip
+        revalidateCsv();
+    }
+
+    public void revalidateCsv() {
+        applyValidationResult(RowValidationResult.validate(csvTextField.getText(), variableParser));
+        notifyValidityChanged();
+    }
+
+    /**
+     * Applies a validation result to this row, updating colours, border and tooltip.
+     * Results for a different source text than the one currently in the row are ignored.
+     * Does not notify the validity changed callback; batch publishers update
+     * dependent state once for all rows.
+     *
+     * @param result the validation result for this row's CSV text
+     * @return true if the result was applied
+     */
+    public boolean applyValidationResult(RowValidationResult result) {
+        if (result != null && result == validationResult) {
+            return true; // Already shown, editing the row clears it
+        }
+        if (result == null || !result.getSource().equals(getCsvLine())) {
+            return false;
+        }
+        this.validationResult = result;
+
+        if (result.isEmpty()) {
+            currentImage = null;
+            // Clear error indication for empty CSV
+            setCsvToolTip(null, null);
+            setCsvBorder(NORMAL_BORDER);
+        } else if (result.isValid()) {
+            this.currentImage = result.getImage();
+
+            // Update colors from the image, keeping the current ones while the RGB is unchanged
+            if (startColor.getRGB() != (0xFF000000 | result.getStartRgb())) {
+                startColor = new Color(result.getStartRgb());
+                startColorButton.setBackground(startColor);
+            }
+            if (endColor.getRGB() != (0xFF000000 | result.getEndRgb())) {
+                endColor = new Color(result.getEndRgb());
+                endColorButton.setBackground(endColor);
+            }
+            // Clear any error indication on successful parse
+            setCsvBorder(NORMAL_BORDER);
+            // Only show tooltip if the evaluated CSV differs from the original (i.e., has variables)
+            if (!result.getEvaluatedCsv().equals(result.getSource())) {
+                setCsvToolTip("Evaluated: ", result.getEvaluatedCsv());
+            } else {
+                setCsvToolTip(null, null);
+            }
+        } else {
+            // Visual feedback: set tooltip and red border
+            setCsvToolTip("Invalid CSV: ", result.getError());
+            setCsvBorder(INVALID_BORDER);
+        }
+        return true;
+    }
+
+    private void setCsvBorder(javax.swing.border.Border border) {
+        if (csvTextField.getBorder() != border) {
+            csvTextField.setBorder(border);
+        }
+    }
+
+    /**
+     * Sets the tooltip of the CSV text field to prefix followed by text, only building the
+     * string when the tooltip changes. Typing the same character again gives the same tooltip.
+     */
+    private void setCsvToolTip(String prefix, String text) {
+        String current = csvTextField.getToolTipText();
+        if (prefix == null) {
+            if (current != null) {
+                csvTextField.setToolTipText(null);
+            }
+        } else if (current == null || current.length() != prefix.length() + text.length()
+                || !current.startsWith(prefix) || !current.endsWith(text)) {
+            csvTextField.setToolTipText(prefix + text);
+        }
+    }
+
+    private void initializeComponents() {
+        setLayout(new BorderLayout(10, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        setMaximumSize(new Dimension(Integer.MAX_VALUE, 50)); // Prevent vertical stretching
+        setAlignmentX(Component.LEFT_ALIGNMENT); // Align to left in BoxLayout
+
+        // CSV text field on the left
+        csvTextField = new JTextField();
+        csvTextField.setPreferredSize(new Dimension(400, 30));
+        csvTextField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
+        csvTextField.setAlignmentY(Component.CENTER_ALIGNMENT);
+        csvTextField.setBorder(NORMAL_BORDER);
+        csvTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                csvEdited();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                csvEdited();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                csvEdited();
+            }
+        });
+
+        // Color picker buttons on the right
+        JPanel colorPanel = new JPanel();
+        colorPanel.setLayout(new BoxLayout(colorPanel, BoxLayout.X_AXIS));
+        colorPanel.setAlignmentY(Component.CENTER_ALIGNMENT);
+        
+        startColorButton = new JButton("Start RGB");
+        startColorButton.setPreferredSize(new Dimension(100, 30));
+        startColorButton.setMaximumSize(new Dimension(100, 30));
+        startColorButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        startColorButton.setBackground(startColor);
+        startColorButton.setOpaque(true);
+        startColorButton.setBorderPainted(true);
+        startColorButton.addActionListener(e -> pickStartColor());
+
+        endColorButton = new JButton("End RGB");
+        endColorButton.setPreferredSize(new Dimension(100, 30));
+        endColorButton.setMaximumSize(new Dimension(100, 30));
+        endColorButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        endColorButton.setBackground(endColor);
+        endColorButton.setOpaque(true);
+        endColorButton.setBorderPainted(true);
+        endColorButton.addActionListener(e -> pickEndColor());
+
+        // Arrow buttons to copy colors
+        JButton leftArrowButton = new JButton("←");
+        leftArrowButton.setPreferredSize(new Dimension(30, 30));
+        leftArrowButton.setMaximumSize(new Dimension(30, 30));
+        leftArrowButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        leftArrowButton.setToolTipText("Copy End RGB to Start RGB");
+        leftArrowButton.addActionListener(e -> copyEndToStart());
+
+        JButton rightArrowButton = new JButton("→");
+        rightArrowButton.setPreferredSize(new Dimension(30, 30));
+        rightArrowButton.setMaximumSize(new Dimension(30, 30));
+        rightArrowButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        rightArrowButton.setToolTipText("Copy Start RGB to End RGB");
+        rightArrowButton.addActionListener(e -> copyStartToEnd());
+
+        JButton duplicateButton = new JButton("Duplicate");
+        duplicateButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        duplicateButton.addActionListener(e -> {
+            if (onDuplicateCallback != null) {
+                onDuplicateCallback.run();
+            }
+        });
+
+        JButton removeButton = new JButton("Remove");
+        removeButton.setAlignmentY(Component.CENTER_ALIGNMENT);
+        removeButton.addActionListener(e -> {
+            if (onRemoveCallback != null) {
+                onRemoveCallback.run();
+            }
+        });
+
+        colorPanel.add(Box.createHorizontalStrut(5));
+        colorPanel.add(startColorButton);
+        colorPanel.add(Box.createHorizontalStrut(5));
+        colorPanel.add(leftArrowButton);
+        colorPanel.add(Box.createHorizontalStrut(2));
+        colorPanel.add(rightArrowButton);
+        colorPanel.add(Box.createHorizontalStrut(5));
+        colorPanel.add(endColorButton);
+        colorPanel.add(Box.createHorizontalStrut(5));
+        colorPanel.add(duplicateButton);
+        colorPanel.add(Box.createHorizontalStrut(5));
+        colorPanel.add(removeButton);
+
+        add(csvTextField, BorderLayout.CENTER);
+        add(colorPanel, BorderLayout.EAST);
+    }
+
+    private void csvEdited() {
+        validationResult = null;
+        if (onCsvEditedCallback != null) {
+            // Validation is done in the background and applied through applyValidationResult
+            onCsvEditedCallback.run();
+        } else {
+            revalidateCsv();
+        }
+    }
+
+    private void pickStartColor() {
+        Color newColor = JColorChooser.showDialog(this, "Pick Start RGB Color", startColor);
+        if (newColor != null) {
+            startColor = newColor;
+            startColorButton.setBackground(startColor);
+            updateCsvFromColors();
+        }
+    }
+
+    private void pickEndColor() {
+        Color newColor = JColorChooser.showDialog(this, "Pick End RGB Color", endColor);
+        if (newColor != null) {
+            endColor = newColor;
+            endColorButton.setBackground(endColor);
+            updateCsvFromColors();
+        }
+    }
+
+    private void copyStartToEnd() {
+        endColor = new Color(startColor.getRed(), startColor.getGreen(), startColor.getBlue());
+        endColorButton.setBackground(endColor);
+        updateCsvFromColors();
+    }
+
+    private void copyEndToStart() {
+        startColor = new Color(endColor.getRed(), endColor.getGreen(), endColor.getBlue());
+        startColorButton.setBackground(startColor);
+        updateCsvFromColors();
+    }
+
+    private void updateCsvFromColors() {
+        if (currentImage != null) {
+            try {
+                ImageSource source = ImageSource.parse(currentImage.toCsvLine());
+                
+                // Handle optional value: can have 9 values (without optional) or 10 values (with optional)
+                if (source.getFieldCount() < 9 || source.getFieldCount() > 10) {
+                    return; // Invalid number of parts
+                }
+                
+                source.setField(ImageSource.START_RED, String.valueOf(startColor.getRed()));
+                source.setField(ImageSource.START_GREEN, String.valueOf(startColor.getGreen()));
+                source.setField(ImageSource.START_BLUE, String.valueOf(startColor.getBlue()));
+                source.setField(ImageSource.END_RED, String.valueOf(endColor.getRed()));
+                source.setField(ImageSource.END_GREEN, String.valueOf(endColor.getGreen()));
+                source.setField(ImageSource.END_BLUE, String.valueOf(endColor.getBlue()));
+                
+                // If blinkMode is 0, remove the optional value if present
+                if (Integer.parseInt(source.getField(ImageSource.BLINK_MODE)) == 0) {
+                    source.truncate(ImageSource.OPTIONAL_VALUE);
+                }
+                
+                String updatedCsv = source.toString();
+                csvTextField.setText(updatedCsv);
+                
+                // Update current image
+                currentImage = new Image(updatedCsv);
+            } catch (IllegalArgumentException e) {
+                // Failed to update, ignore
+            }
+        }
+    }
+
+    public String getCsvLine() {
+        return csvTextField.getText().trim();
+    }
+
+    public void setCsvLine(String csvLine) {
+        csvTextField.setText(csvLine);
+    }
+
+    public void setOnRemoveCallback(Runnable callback) {
+        this.onRemoveCallback = callback;
+    }
+
+    public void setOnDuplicateCallback(Runnable callback) {
+        this.onDuplicateCallback = callback;
+    }
+
+    public Image getImage() {
+        return currentImage;
+    }
+
+    /**
+     * Gets the document row this panel edits.
+     *
+     * @return the document row, or null if the panel is not bound to a document
+     */
+    public DocumentRow getDocumentRow() {
+        return documentRow;
+    }
+
+    public void setDocumentRow(DocumentRow documentRow) {
+        this.documentRow = documentRow;
+    }
+
+    /**
+     * Gets the document of the CSV text field, for simulating typing.
+     *
+     * @return the document
+     */
+    Document getCsvDocument() {
+        return csvTextField.getDocument();
+    }
+
+    public void addCsvDocumentListener(javax.swing.event.DocumentListener listener) {
+        csvTextField.getDocument().addDocumentListener(listener);
+    }
+
+    /**
+     * Sets a callback that is run on every edit of the CSV text.
+     * When set, the row no longer validates itself on each keystroke; the owner
+     * is expected to validate in the background and call applyValidationResult.
+     *
+     * @param callback the callback to run on edits
+     */
+    public void setOnCsvEditedCallback(Runnable callback) {
+        this.onCsvEditedCallback = callback;
+    }
+
+    public void setOnValidityChangedCallback(Runnable callback) {
+        this.onValidityChangedCallback = callback;
+    }
+
+    private void notifyValidityChanged() {
+        if (onValidityChangedCallback != null) {
+            onValidityChangedCallback.run();
+        }
+    }
+}
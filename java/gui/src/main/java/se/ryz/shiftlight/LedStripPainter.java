@@ -0,0 +1,72 @@
+package se.ryz.shiftlight;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws an LedFrame as a row of round LEDs on black, for the preview and for exported images.
+ */
+public final class LedStripPainter {
+    public static final int LED_SIZE = 24;
+    public static final int LED_GAP = 6;
+    public static final int WIDTH = DeviceProfile.FIRMWARE_LED_COUNT * (LED_SIZE + LED_GAP) + LED_GAP;
+    public static final int HEIGHT = LED_SIZE + 2 * LED_GAP;
+    private static final Color LED_OFF_COLOR = new Color(40, 40, 40);
+    // Last colour of each slot, per thread as the preview and exports paint concurrently.
+    // Most frames repeat the colours of the previous one, so they paint without allocating
+    private static final ThreadLocal<Color[]> SLOT_COLORS =
+        ThreadLocal.withInitial(() -> new Color[DeviceProfile.FIRMWARE_LED_COUNT]);
+
+    private LedStripPainter() {
+    }
+
+    /**
+     * Draws a frame into a new image of WIDTH x HEIGHT pixels.
+     *
+     * @param frame the frame, with blinking already applied
+     * @return the image
+     */
+    public static BufferedImage paint(LedFrame frame) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            paint(g, frame, WIDTH, HEIGHT);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Draws a frame centered in an area starting at 0,0.
+     *
+     * @param g the graphics to draw with
+     * @param frame the frame, with blinking already applied
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public static void paint(Graphics2D g, LedFrame frame, int width, int height) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, width, height);
+
+        int stripWidth = WIDTH - 2 * LED_GAP;
+        int x = Math.max(LED_GAP, (width - stripWidth) / 2);
+        int y = (height - LED_SIZE) / 2;
+        Color[] slotColors = SLOT_COLORS.get();
+        for (int slot = 0; slot < DeviceProfile.FIRMWARE_LED_COUNT; slot++) {
+            g.setColor(frame.isLit(slot) ? slotColor(slotColors, slot, frame.getRgb(slot)) : LED_OFF_COLOR);
+            g.fillOval(x, y, LED_SIZE, LED_SIZE);
+            x += LED_SIZE + LED_GAP;
+        }
+    }
+
+    private static Color slotColor(Color[] slotColors, int slot, int rgb) {
+        Color color = slotColors[slot];
+        if (color == null || color.getRGB() != (0xFF000000 | rgb)) {
+            color = new Color(rgb);
+            slotColors[slot] = color;
+        }
+        return color;
+    }
+}
@@ -0,0 +1,291 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows the LED strip as the device would at an RPM chosen with the preview's own slider.
+ * The program is rendered into a FrameTable, so moving the slider is a table lookup and
+ * an edited row only re-renders the RPM span it covers. The strip is drawn into an
+ * off-screen image when the frame changes and a 60 fps timer repaints it, so edits
+ * and slider moves show up within one frame.
+ * Blinking and pulsing LEDs are animated with the firmware's timing by TimeDomainRenderer.
+ * A recorded RpmTrace can be played back through the preview with a PlaybackEngine,
+ * and a sweep can be exported to image files with an AnimationExporter.
+ */
+public class LedStripPreview extends JPanel {
+    private static final int FRAME_INTERVAL_MS = 1000 / 60;
+    private static final double[] PLAYBACK_SPEEDS = {0.25, 1, 4};
+    private static final int NO_PLAYBACK_RPM = -1;
+    private static final long EXPORT_SWEEP_MILLIS = 5000;
+
+    private final StripView stripView;
+    private final JSlider rpmSlider;
+    private final JLabel rpmLabel;
+    private final Timer frameTimer;
+    private final JButton playButton;
+    private final JComboBox<String> speedComboBox;
+    private final JButton exportButton;
+    private final AtomicInteger playbackRpm;
+    private PlaybackEngine playbackEngine;
+    private FrameTable frameTable;
+    private boolean frameDirty;
+    private LedFrame currentFrame;
+    private boolean blinking;
+    private final long startNanos;
+
+    public LedStripPreview() {
+        super(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createTitledBorder("Preview"));
+
+        frameTable = FrameTable.compile(List.of());
+        stripView = new StripView();
+
+        rpmLabel = new JLabel("0 RPM");
+        rpmLabel.setPreferredSize(new Dimension(80, rpmLabel.getPreferredSize().height));
+        rpmLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+
+        rpmSlider = new JSlider(JSlider.HORIZONTAL, 0, RenderEngine.MAX_RPM, 0);
+        rpmSlider.setMajorTickSpacing(2000);
+        rpmSlider.setMinorTickSpacing(500);
+        rpmSlider.setPaintTicks(true);
+        rpmSlider.setPaintLabels(true);
+        rpmSlider.addChangeListener(e -> {
+            rpmLabel.setText(rpmSlider.getValue() + " RPM");
+            frameDirty = true;
+        });
+
+        playbackRpm = new AtomicInteger(NO_PLAYBACK_RPM);
+        playButton = new JButton("Play Trace...");
+        playButton.setToolTipText("Play a recorded timestamp,rpm CSV trace through the preview");
+        playButton.addActionListener(e -> togglePlayback());
+        speedComboBox = new JComboBox<>(new String[] {"0.25x", "1x", "4x"});
+        speedComboBox.setSelectedIndex(1);
+        exportButton = new JButton("Export...");
+        exportButton.setToolTipText("Export a 0-" + RenderEngine.MAX_RPM + " RPM sweep as an animated GIF or PNG images");
+        exportButton.addActionListener(e -> exportSweep());
+
+        JPanel playbackPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        playbackPanel.add(rpmLabel);
+        playbackPanel.add(speedComboBox);
+        playbackPanel.add(playButton);
+        playbackPanel.add(exportButton);
+
+        JPanel sliderPanel = new JPanel(new BorderLayout(5, 5));
+        sliderPanel.add(rpmSlider, BorderLayout.CENTER);
+        sliderPanel.add(playbackPanel, BorderLayout.EAST);
+
+        add(stripView, BorderLayout.NORTH);
+        add(sliderPanel, BorderLayout.CENTER);
+
+        // Repaints at most once per frame, only when the frame changed or LEDs are blinking
+        startNanos = System.nanoTime();
+        frameTimer = new Timer(FRAME_INTERVAL_MS, e -> {
+            int rpm = playbackRpm.getAndSet(NO_PLAYBACK_RPM);
+            if (rpm != NO_PLAYBACK_RPM) {
+                rpmSlider.setValue(rpm);
+            }
+            if (frameDirty) {
+                frameDirty = false;
+                currentFrame = frameTable.getFrame(rpmSlider.getValue());
+                blinking = hasBlinkingLeds(currentFrame);
+            } else if (!blinking) {
+                return;
+            }
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            stripView.renderFrame(TimeDomainRenderer.applyBlink(currentFrame, elapsedMillis));
+        });
+        frameDirty = true;
+    }
+
+    /**
+     * Sets the program to preview. Only the RPM span covered by changed Images is rendered again.
+     *
+     * @param images the compiled Images in program order
+     */
+    public void setImages(List<Image> images) {
+        if (frameTable.update(images) > 0) {
+            frameDirty = true;
+        }
+    }
+
+    private static boolean hasBlinkingLeds(LedFrame frame) {
+        for (int slot = 0; slot < DeviceProfile.FIRMWARE_LED_COUNT; slot++) {
+            if (frame.isLit(slot) && frame.getBlinkRate(slot) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getRpm() {
+        return rpmSlider.getValue();
+    }
+
+    public void setRpm(int rpm) {
+        rpmSlider.setValue(Math.max(0, Math.min(RenderEngine.MAX_RPM, rpm)));
+    }
+
+    /**
+     * Plays a trace through the preview, replacing a running playback.
+     *
+     * @param trace the RPM trace
+     * @param speed playback speed, e.g. 0.25, 1 or 4
+     * @return the playback, already started
+     */
+    public PlaybackEngine play(RpmTrace trace, double speed) {
+        stopPlayback();
+        PlaybackEngine engine = new PlaybackEngine(trace, frameTable.getImages(), speed);
+        // The playback thread only publishes the RPM; the frame timer shows it on the EDT
+        engine.addSink((traceTimeMicros, rpm, frame) -> playbackRpm.set(rpm));
+        engine.setOnFinished(() -> SwingUtilities.invokeLater(() -> playbackFinished(engine)));
+        playbackEngine = engine;
+        playButton.setText("Stop");
+        engine.start();
+        return engine;
+    }
+
+    public void stopPlayback() {
+        if (playbackEngine != null) {
+            playbackEngine.stop();
+            playbackFinished(playbackEngine);
+        }
+    }
+
+    private void playbackFinished(PlaybackEngine engine) {
+        if (engine != playbackEngine) {
+            return; // Replaced by a newer playback
+        }
+        playbackEngine = null;
+        playButton.setText("Play Trace...");
+        playButton.setToolTipText(engine.getStats().describe());
+        System.out.println("Playback at " + engine.getSpeed() + "x: " + engine.getStats().describe());
+    }
+
+    private void togglePlayback() {
+        if (playbackEngine != null) {
+            stopPlayback();
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Play RPM Trace");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        try {
+            play(RpmTrace.load(file), PLAYBACK_SPEEDS[speedComboBox.getSelectedIndex()]);
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Error reading trace: " + e.getMessage(),
+                "Play Trace", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void exportSweep() {
+        AnimationExporter.Format format = (AnimationExporter.Format) JOptionPane.showInputDialog(this,
+            "Export a " + EXPORT_SWEEP_MILLIS / 1000 + " second sweep from 0 to " + RenderEngine.MAX_RPM + " RPM as:",
+            "Export", JOptionPane.PLAIN_MESSAGE, null, AnimationExporter.Format.values(), AnimationExporter.Format.GIF);
+        if (format == null) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export " + format);
+        fileChooser.setSelectedFile(new File(format == AnimationExporter.Format.GIF ? "shiftlight.gif" : "shiftlight.png"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        AnimationExporter exporter = new AnimationExporter(frameTable.getImages());
+        exportButton.setEnabled(false);
+        Thread thread = new Thread(() -> {
+            String error = null;
+            try {
+                int frameCount = exporter.exportSweep(0, RenderEngine.MAX_RPM, EXPORT_SWEEP_MILLIS, format, file);
+                System.out.println("Exported " + frameCount + " frames to " + file);
+            } catch (IOException e) {
+                error = e.getMessage();
+            } finally {
+                // Also after an unexpected exception, which the thread's handler reports
+                String exportError = error;
+                SwingUtilities.invokeLater(() -> {
+                    exportButton.setEnabled(true);
+                    if (exportError != null) {
+                        JOptionPane.showMessageDialog(this, "Error exporting: " + exportError,
+                            "Export", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            }
+        }, "shiftlight-export-sweep");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public FrameTable getFrameTable() {
+        return frameTable;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        frameTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        frameTimer.stop();
+        stopPlayback();
+        super.removeNotify();
+    }
+
+    /**
+     * Draws the LEDs into an off-screen image when a new frame is rendered and copies it on paint.
+     * The image is kept between frames and only reallocated when the view is resized.
+     */
+    private static class StripView extends JComponent {
+        private BufferedImage buffer;
+        private boolean bufferStale;
+        private LedFrame frame = new LedFrame();
+
+        StripView() {
+            setPreferredSize(new Dimension(LedStripPainter.WIDTH, LedStripPainter.HEIGHT));
+            setDoubleBuffered(true);
+        }
+
+        void renderFrame(LedFrame frame) {
+            this.frame = frame;
+            bufferStale = true;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (buffer == null || buffer.getWidth() != getWidth() || buffer.getHeight() != getHeight()) {
+                if (getWidth() <= 0 || getHeight() <= 0) {
+                    return;
+                }
+                buffer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+                bufferStale = true;
+            }
+            if (bufferStale) {
+                drawStrip(buffer);
+                bufferStale = false;
+            }
+            g.drawImage(buffer, 0, 0, null);
+        }
+
+        private void drawStrip(BufferedImage image) {
+            Graphics2D g = image.createGraphics();
+            try {
+                LedStripPainter.paint(g, frame, image.getWidth(), image.getHeight());
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SerialPortComboBox extends JComboBox<String> {
+    // Enumerating ports can take hundreds of milliseconds, it's kept off the EDT
+    private static final ExecutorService portScanner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "shiftlight-port-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean scanning;
+    private Runnable portsScannedListener;
+    
+    public SerialPortComboBox() {
+        super();
+        setEditable(false);
+        refreshPorts();
+    }
+
+    @Override
+    public void showPopup() {
+        // Refresh ports before showing the popup, the list updates when the scan is done
+        refreshPorts();
+        super.showPopup();
+    }
+
+    /**
+     * Sets a listener called on the EDT each time a port scan has updated the items.
+     *
+     * @param listener the listener, or null
+     */
+    public void setPortsScannedListener(Runnable listener) {
+        this.portsScannedListener = listener;
+    }
+
+    /**
+     * Scans the serial ports in the background and updates the items when done.
+     * Does nothing if a scan is already running.
+     */
+    public void refreshPorts() {
+        if (scanning) {
+            return;
+        }
+        scanning = true;
+        portScanner.execute(() -> {
+            List<String> portNames;
+            try {
+                portNames = SerialTransport.getPortNames();
+            } catch (RuntimeException | LinkageError e) {
+                System.err.println("Error listing serial ports: " + e.getMessage());
+                portNames = List.of(EmulatorTransport.PORT_NAME);
+            }
+            List<String> scannedPortNames = portNames;
+            SwingUtilities.invokeLater(() -> {
+                scanning = false;
+                setPortNames(scannedPortNames);
+                if (portsScannedListener != null) {
+                    portsScannedListener.run();
+                }
+            });
+        });
+    }
+
+    private void setPortNames(List<String> portNames) {
+        String selectedPort = (String) getSelectedItem();
+        
+        removeAllItems();
+        
+        for (String portName : portNames) {
+            addItem(portName);
+        }
+        
+        // Restore selection if it still exists
+        if (selectedPort != null) {
+            for (int i = 0; i < getItemCount(); i++) {
+                if (getItemAt(i).equals(selectedPort)) {
+                    setSelectedIndex(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    public String getSelectedPortName() {
+        return (String) getSelectedItem();
+    }
+}
@@ -0,0 +1,303 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+public class Shiftlight {
+    private static Animation animation;
+    private static AnimationPanel animationPanel;
+    private static JButton saveButton;
+    private static SerialPortComboBox serialPortComboBox;
+    private static StartupTimer startupTimer;
+
+    public static void main(String[] args) {
+        startupTimer = StartupTimer.start();
+        // Initialize the animation model
+        animation = new Animation();
+        // Starting the platform MBean server takes a while, it isn't needed for the first paint
+        Thread metricsInstaller = new Thread(ProtocolMetrics::install, "shiftlight-metrics-install");
+        metricsInstaller.setDaemon(true);
+        metricsInstaller.start();
+        EdtWatchdog.installIfEnabled();
+        
+        // Create and show the GUI
+        SwingUtilities.invokeLater(() -> {
+            createAndShowGUI();
+        });
+    }
+
+    private static void createAndShowGUI() {
+        JFrame frame = new JFrame("Shiftlight") {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                startupTimer.firstPaint();
+            }
+        };
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setLayout(new BorderLayout());
+
+        // Create the animation panel
+        animationPanel = new AnimationPanel(animation);
+        frame.add(animationPanel, BorderLayout.CENTER);
+
+        // Create button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        
+        // Add serial port combo box
+        JLabel serialPortLabel = new JLabel("Serial Port:");
+        serialPortComboBox = new SerialPortComboBox();
+        serialPortComboBox.setPortsScannedListener(startupTimer::portsScanned);
+        buttonPanel.add(serialPortLabel);
+        buttonPanel.add(serialPortComboBox);
+
+        // Add device profile combo box, drives the EEPROM footprint shown in the animation panel
+        JLabel deviceLabel = new JLabel("Device:");
+        JComboBox<DeviceProfile> deviceComboBox = new JComboBox<>(DeviceProfile.getBuiltInProfiles().toArray(new DeviceProfile[0]));
+        deviceComboBox.setSelectedItem(animationPanel.getDeviceProfile());
+        deviceComboBox.addActionListener(e -> animationPanel.setDeviceProfile((DeviceProfile) deviceComboBox.getSelectedItem()));
+        buttonPanel.add(deviceLabel);
+        buttonPanel.add(deviceComboBox);
+        
+        JButton loadButton = new JButton("Load");
+        loadButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                loadFromFile();
+            }
+        });
+        
+        saveButton = new JButton("Save");
+        saveButton.setToolTipText("All rows must have valid CSV before saving");
+        saveButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                saveToFile();
+            }
+        });
+        
+        // Listen to validity changes from animation panel
+        animationPanel.addPropertyChangeListener("allRowsValid", evt -> {
+            boolean allValid = (Boolean) evt.getNewValue();
+            saveButton.setEnabled(allValid);
+        });
+        
+        // Set initial state (after panel is fully initialized)
+        SwingUtilities.invokeLater(() -> {
+            saveButton.setEnabled(animationPanel.areAllRowsValid());
+        });
+        
+        JButton programButton = new JButton("Program");
+        programButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // Rows typed just before programming may still be validating
+                animationPanel.whenValidated(() -> programToShiftlight(frame));
+            }
+        });
+        
+        JButton testerButton = new JButton("Test");
+        testerButton.addActionListener(new ActionListener() {
+            private TestDialog testerDialog;
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // Built on first use, so it doesn't delay the first paint
+                if (testerDialog == null) {
+                    testerDialog = new TestDialog(frame, serialPortComboBox);
+                }
+                testerDialog.setVisible(true);
+            }
+        });
+        
+        buttonPanel.add(loadButton);
+        buttonPanel.add(saveButton);
+        buttonPanel.add(programButton);
+        buttonPanel.add(testerButton);
+        
+        frame.add(buttonPanel, BorderLayout.SOUTH);
+
+        // Set frame properties
+        frame.setSize(900, 700);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    private static void saveToFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Animation");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        
+        int result = fileChooser.showSaveDialog(null);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File selectedFile = fileChooser.getSelectedFile();
+            // Rows typed just before saving may still be validating
+            animationPanel.whenValidated(() -> handleSaveFile(selectedFile));
+        }
+    }
+
+    private static void handleSaveFile(File file) {
+        if (!animationPanel.areAllRowsValid()) {
+            JOptionPane.showMessageDialog(null, "All rows must have valid CSV before saving",
+                "Save Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            // Get variables and CSV lines from animation panel
+            String variablesText = animationPanel.getVariablesText();
+            List<String> variables = variablesText == null || variablesText.trim().isEmpty()
+                ? List.of() : Arrays.asList(variablesText.split("\n"));
+            new AnimationFile(variables, animationPanel.getAllCsvLines()).save(file);
+            
+            JOptionPane.showMessageDialog(null, "File saved successfully: " + file.getAbsolutePath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error saving file: " + e.getMessage(), 
+                "Save Error", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+    }
+
+    private static void loadFromFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Load Animation");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        
+        int result = fileChooser.showOpenDialog(null);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File selectedFile = fileChooser.getSelectedFile();
+            handleLoadFile(selectedFile);
+        }
+    }
+
+    private static void handleLoadFile(File file) {
+        try {
+            AnimationFile animationFile = AnimationFile.load(file);
+            
+            // Load into animation panel (this will replace all current rows)
+            animationPanel.loadFromFile(animationFile.getVariables(), animationFile.getCsvLines());
+            
+            JOptionPane.showMessageDialog(null, "File loaded successfully: " + file.getAbsolutePath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error loading file: " + e.getMessage(), 
+                "Load Error", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+    }
+
+    private static void programToShiftlight(JFrame parentFrame) {
+        String selectedPort = serialPortComboBox.getSelectedPortName();
+        if (selectedPort == null || selectedPort.isEmpty()) {
+            JOptionPane.showMessageDialog(parentFrame, 
+                "Please select a serial port", 
+                "No Port Selected", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // Hidden images are stripped and equivalent ones merged once, everything below uses this result
+        DeviceProgram program = animationPanel.getDocument().buildProgram();
+
+        // Refuse programs that would overflow the device instead of failing on the car
+        FootprintPlanner.Footprint footprint = new FootprintPlanner(animationPanel.getDeviceProfile())
+            .plan(program.getImageCount());
+        if (!footprint.fits()) {
+            JOptionPane.showMessageDialog(parentFrame, 
+                "Program does not fit on the device.\n" + footprint.getOverflowReason(), 
+                "Program Too Large", 
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        System.out.println("Selected Serial Port: " + selectedPort);
+
+        // Open port and wait for READY
+        DeviceClient device = openDevice(selectedPort, parentFrame);
+        if (device == null) {
+            // Error already shown in openDevice
+            return;
+        }
+
+        try (device) {
+            // Get program output, without images hidden by later rows
+            ShadowEliminator.Result shadowed = program.getShadowed();
+            if (!shadowed.isUnchanged()) {
+                System.out.println("Stripped hidden images and LEDs:\n" + shadowed.describe());
+            }
+            AnimationMinimizer.Result minimized = program.getMinimized();
+            if (!minimized.isUnchanged()) {
+                System.out.println("Merged equivalent images:\n" + minimized.describe());
+            }
+            String programOutput = program.getProgramOutput();
+            System.out.println(programOutput);
+
+            // Send HELLO and wait for OK
+            try {
+                device.hello();
+            } catch (ProtocolException e) {
+                JOptionPane.showMessageDialog(parentFrame, 
+                    "No shiftlight connected to port " + selectedPort + ".\n" +
+                    "Expected 'OK' but received: " + (e.getResponse() == null ? "(no response)" : e.getResponse()), 
+                    "Connection Failed", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            // Send program output line by line, each line is acknowledged with OK
+            try {
+                device.program(programOutput);
+                System.out.println("Upload timing: " + device.getTimingStats().describe());
+            } catch (ProtocolException e) {
+                JOptionPane.showMessageDialog(parentFrame, 
+                    "Programming failed: " + e.getMessage(), 
+                    "Programming Failed", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            JOptionPane.showMessageDialog(parentFrame, 
+                "Programming completed successfully!"
+                    + (shadowed.isUnchanged() ? "" : "\n\nHidden images and LEDs were not uploaded:\n" + shadowed.describe())
+                    + (minimized.isUnchanged() ? "" : "\n\n" + minimized.getMerges().size() + " images were merged into equivalent ones, see the log."), 
+                "Success", 
+                JOptionPane.INFORMATION_MESSAGE);
+
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(parentFrame, 
+                "Error during programming: " + e.getMessage(), 
+                "Error", 
+                JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Opens a port and waits for the device to print READY, ignoring comment lines starting with "#".
+     * Shows an error dialog and returns null if the port can't be opened or the device doesn't become ready.
+     */
+    static DeviceClient openDevice(String portName, Component parent) {
+        try {
+            DeviceClient device = DeviceClient.open(SerialTransport.forPortName(portName));
+            device.setLog(System.out::println);
+            System.out.println("Device is READY");
+            return device;
+        } catch (ProtocolException e) {
+            JOptionPane.showMessageDialog(parent, 
+                "Device did not become ready on port " + portName + ".\n" +
+                "Expected 'READY' but received: " + (e.getResponse() == null ? "(no response)" : e.getResponse()), 
+                "Connection Failed", 
+                JOptionPane.ERROR_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(parent, 
+                e.getMessage(), 
+                "Port Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+        return null;
+    }
+}
+
@@ -0,0 +1,87 @@
+package se.ryz.shiftlight;
+
+import javax.swing.SwingUtilities;
+import java.time.Instant;
+
+/**
+ * Measures editor startup and prints one line when it is done:
+ * <ul>
+ *   <li>JVM start to main(), class loading and JVM initialization</li>
+ *   <li>first paint: the main frame is painted for the first time</li>
+ *   <li>interactive: the Event Dispatch Thread has drained the events queued up to the first paint</li>
+ *   <li>ports: the background serial port scan finished</li>
+ * </ul>
+ * With -Dshiftlight.exitAfterStartup=true the application exits once startup is complete,
+ * which is used to record the class data sharing archive.
+ */
+public class StartupTimer {
+    public static final String EXIT_AFTER_STARTUP_PROPERTY = "shiftlight.exitAfterStartup";
+
+    private final long mainNanos;
+    private final long jvmToMainMillis;
+    private long firstPaintNanos;
+    private long interactiveNanos;
+    private long portsScannedNanos;
+    private boolean reported;
+
+    private StartupTimer(long mainNanos, long jvmToMainMillis) {
+        this.mainNanos = mainNanos;
+        this.jvmToMainMillis = jvmToMainMillis;
+    }
+
+    /**
+     * Starts timing, call first thing in main().
+     *
+     * @return the timer
+     */
+    public static StartupTimer start() {
+        long mainNanos = System.nanoTime();
+        long jvmToMainMillis = ProcessHandle.current().info().startInstant()
+            .map(start -> Instant.now().toEpochMilli() - start.toEpochMilli())
+            .orElse(-1L);
+        return new StartupTimer(mainNanos, jvmToMainMillis);
+    }
+
+    /**
+     * Records the first paint of the main frame. Only the first call counts.
+     * Must be called on the Event Dispatch Thread.
+     */
+    public void firstPaint() {
+        if (firstPaintNanos != 0) {
+            return;
+        }
+        firstPaintNanos = System.nanoTime();
+        // Runs after everything already queued, e.g. layout and validation results
+        SwingUtilities.invokeLater(() -> {
+            interactiveNanos = System.nanoTime();
+            reportIfComplete();
+        });
+    }
+
+    /**
+     * Records the end of the background serial port scan. Must be called on the Event Dispatch Thread.
+     */
+    public void portsScanned() {
+        if (portsScannedNanos == 0) {
+            portsScannedNanos = System.nanoTime();
+            reportIfComplete();
+        }
+    }
+
+    private void reportIfComplete() {
+        if (reported || interactiveNanos == 0 || portsScannedNanos == 0) {
+            return;
+        }
+        reported = true;
+        System.out.printf("Startup: JVM to main %s, first paint %d ms, interactive %d ms, ports scanned %d ms after main%n",
+            jvmToMainMillis >= 0 ? jvmToMainMillis + " ms" : "unknown",
+            millisSinceMain(firstPaintNanos), millisSinceMain(interactiveNanos), millisSinceMain(portsScannedNanos));
+        if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+            System.exit(0);
+        }
+    }
+
+    private long millisSinceMain(long nanos) {
+        return (nanos - mainNanos) / 1_000_000;
+    }
+}
@@ -1,7 +1,5 @@
 package se.ryz.shiftlight;
 
-import com.fazecast.jSerialComm.SerialPort;
-
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -12,6 +10,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.util.List;
 
 public class TestDialog extends JDialog {
     private JTextField textField;
@@ -19,7 +19,10 @@ public class TestDialog extends JDialog {
     private boolean updatingFromTextField = false;
     private boolean updatingFromSlider = false;
     private SerialPortComboBox serialPortComboBox;
-    private SerialPort serialPort = null;
+    private DeviceClient device = null;
+    private PlaybackEngine playbackEngine;
+    private RpmStreamSink rpmStreamSink;
+    private JButton playTraceButton;
 
     public TestDialog(JFrame parent, SerialPortComboBox serialPortComboBox) {
         super(parent, "Test", true);
@@ -187,38 +190,31 @@ public class TestDialog extends JDialog {
             return;
         }
         
-        serialPort = SerialPort.getCommPort(selectedPort);
-        if (serialPort == null) {
-            return;
-        }
-        
         // Open port and wait for READY (using the same method as Shiftlight)
-        serialPort = Shiftlight.openPortAndWaitForReady(serialPort, (JFrame) getParent());
-        if (serialPort == null) {
-            // Error already shown in openPortAndWaitForReady
-            return;
-        }
+        device = Shiftlight.openDevice(selectedPort, getParent());
+        // Error already shown in openDevice if device is null
     }
     
     private void closeSerialPort() {
-        if (serialPort != null && serialPort.isOpen()) {
-            serialPort.closePort();
-            serialPort = null;
+        stopTracePlayback();
+        if (device != null) {
+            device.close();
+            device = null;
         }
     }
     
     private void sendRpmValue(int value) {
-        if (serialPort == null || !serialPort.isOpen()) {
+        // While a trace plays its RpmStreamSink is the only writer to the device
+        if (device == null || !device.isOpen() || playbackEngine != null) {
             return;
         }
         
-        String message = "rpm=" + value + "\n";
-        System.out.println(message.trim());
+        System.out.println("rpm=" + value);
         
         try {
-            serialPort.getOutputStream().write(message.getBytes());
-            serialPort.getOutputStream().flush();
+            device.sendRpm(value);
         } catch (Exception e) {
+            ProtocolMetrics.RPM_SEND_ERRORS.increment();
             System.err.println("Error sending RPM value: " + e.getMessage());
         }
     }
@@ -248,10 +244,85 @@ public class TestDialog extends JDialog {
         
         // OK button panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        playTraceButton = new JButton("Play Trace...");
+        playTraceButton.setToolTipText("Stream a recorded timestamp,rpm CSV trace to the device");
+        playTraceButton.addActionListener(e -> toggleTracePlayback());
+        buttonPanel.add(playTraceButton);
         JButton okButton = new JButton("OK");
         okButton.addActionListener(e -> setVisible(false));
         buttonPanel.add(okButton);
         add(buttonPanel, BorderLayout.SOUTH);
     }
-}
 
+    private void toggleTracePlayback() {
+        if (playbackEngine != null) {
+            stopTracePlayback();
+            return;
+        }
+        if (device == null || !device.isOpen()) {
+            JOptionPane.showMessageDialog(this, "No serial port is open", "Play Trace", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Play RPM Trace");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String[] speeds = {"0.25x", "1x", "4x"};
+        Object speed = JOptionPane.showInputDialog(this, "Playback speed:", "Play Trace",
+            JOptionPane.QUESTION_MESSAGE, null, speeds, speeds[1]);
+        if (speed == null) {
+            return;
+        }
+
+        try {
+            RpmTrace trace = RpmTrace.load(fileChooser.getSelectedFile());
+            // The device renders the frames itself, only the RPM is streamed
+            PlaybackEngine engine = new PlaybackEngine(trace, List.of(),
+                Double.parseDouble(speed.toString().replace("x", "")));
+            rpmStreamSink = new RpmStreamSink(device.getOutputStream());
+            engine.addSink(rpmStreamSink);
+            engine.addSink((traceTimeMicros, rpm, frame) -> SwingUtilities.invokeLater(() -> {
+                // Show the streamed RPM without sending it a second time
+                updatingFromTextField = true;
+                updatingFromSlider = true;
+                slider.setValue(rpm);
+                textField.setText(String.valueOf(rpm));
+                updatingFromTextField = false;
+                updatingFromSlider = false;
+            }));
+            engine.setOnFinished(() -> SwingUtilities.invokeLater(this::stopTracePlayback));
+            playbackEngine = engine;
+            setManualRpmEnabled(false);
+            playTraceButton.setText("Stop");
+            engine.start();
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Error reading trace: " + e.getMessage(),
+                "Play Trace", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void stopTracePlayback() {
+        if (playbackEngine == null) {
+            return;
+        }
+        playbackEngine.stop();
+        rpmStreamSink.close();
+        System.out.println("Trace playback: " + playbackEngine.getStats().describe()
+            + ", " + rpmStreamSink.getSentCount() + " rpm commands sent, " + rpmStreamSink.getSkippedCount() + " skipped");
+        playbackEngine = null;
+        rpmStreamSink = null;
+        setManualRpmEnabled(true);
+        playTraceButton.setText("Play Trace...");
+    }
+
+    /**
+     * Enables or disables the text field and the slider, which send the RPM from the EDT.
+     */
+    private void setManualRpmEnabled(boolean enabled) {
+        textField.setEnabled(enabled);
+        slider.setEnabled(enabled);
+    }
+}
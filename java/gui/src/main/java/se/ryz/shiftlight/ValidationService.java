@@ -0,0 +1,200 @@
+package se.ryz.shiftlight;
+
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Validates the editor rows off the Event Dispatch Thread.
+ * Edits are debounced: a validation run starts once no edit has been
+ * scheduled for the debounce delay. The rows are snapshotted on the EDT,
+ * validated on a single worker thread and the results are published back
+ * to the EDT in one batch. A run that is superseded by a newer edit is
+ * cancelled and its results are never published.
+ */
+public class ValidationService {
+    public static final int DEFAULT_DEBOUNCE_MS = 50;
+
+    private final Supplier<Snapshot> snapshotSupplier;
+    private final Consumer<Batch> batchConsumer;
+    private final Timer debounceTimer;
+    private final ExecutorService worker;
+    private final AtomicLong generation;
+    private Future<?> currentRun;
+    // Only used on the worker; the EDT's parser is never shared
+    private final VariableParser variableParser;
+    private String parsedVariablesText;
+    private String variablesError;
+
+    public ValidationService(Supplier<Snapshot> snapshotSupplier, Consumer<Batch> batchConsumer) {
+        this(snapshotSupplier, batchConsumer, DEFAULT_DEBOUNCE_MS);
+    }
+
+    public ValidationService(Supplier<Snapshot> snapshotSupplier, Consumer<Batch> batchConsumer, int debounceMs) {
+        this.snapshotSupplier = snapshotSupplier;
+        this.batchConsumer = batchConsumer;
+        this.generation = new AtomicLong();
+        this.variableParser = new VariableParser();
+        this.debounceTimer = new Timer(debounceMs, e -> startRun());
+        this.debounceTimer.setRepeats(false);
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shiftlight-validation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a validation run after the debounce delay.
+     * Any run that is already in progress is superseded.
+     * Must be called on the Event Dispatch Thread.
+     */
+    public void schedule() {
+        generation.incrementAndGet();
+        debounceTimer.restart();
+    }
+
+    /**
+     * Stops the debounce timer and the worker thread.
+     */
+    public void shutdown() {
+        debounceTimer.stop();
+        generation.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    private void startRun() {
+        Snapshot snapshot = snapshotSupplier.get();
+        long runGeneration = generation.incrementAndGet();
+        if (currentRun != null) {
+            currentRun.cancel(true);
+        }
+        currentRun = worker.submit(() -> validate(snapshot, runGeneration));
+    }
+
+    private void validate(Snapshot snapshot, long runGeneration) {
+        ShiftlightEvents.AnimationValidation event = new ShiftlightEvents.AnimationValidation();
+        event.begin();
+        event.rowCount = snapshot.getSources().size();
+        // Typing in a row leaves the variables as they were, they are only parsed when changed
+        if (parsedVariablesText == null || !parsedVariablesText.equals(snapshot.getVariablesText())) {
+            variablesError = null;
+            try {
+                variableParser.parseVariables(snapshot.getVariablesText());
+            } catch (IllegalArgumentException e) {
+                variablesError = e.getMessage();
+            }
+            parsedVariablesText = snapshot.getVariablesText();
+        }
+
+        Map<String, RowValidationResult> results = new LinkedHashMap<>();
+        List<String> sources = snapshot.getSources();
+        for (int i = 0; i < sources.size(); i++) {
+            if (generation.get() != runGeneration || Thread.currentThread().isInterrupted()) {
+                event.superseded = true;
+                event.distinctRows = results.size();
+                event.commit();
+                return; // Superseded by a newer edit
+            }
+            String trimmed = sources.get(i).trim();
+            if (!results.containsKey(trimmed)) {
+                // Rows with the same text share the result, the event names the first of them
+                RowValidationResult result = RowValidationResult.validate(trimmed, variableParser, snapshot.getRowIndices().get(i));
+                results.put(trimmed, result);
+                if (!result.isValid()) {
+                    event.invalidRows++;
+                }
+            }
+        }
+        event.distinctRows = results.size();
+        event.variablesValid = variablesError == null;
+        event.commit();
+
+        Batch batch = new Batch(runGeneration, variablesError, results);
+        SwingUtilities.invokeLater(() -> {
+            if (generation.get() == runGeneration) {
+                batchConsumer.accept(batch);
+            }
+        });
+    }
+
+    /**
+     * The editor state captured on the EDT at the start of a validation run.
+     */
+    public static class Snapshot {
+        private final String variablesText;
+        private final List<String> sources;
+        private final List<Integer> rowIndices;
+
+        /**
+         * Captures the rows to validate.
+         *
+         * @param variablesText the variable definitions
+         * @param sources the CSV text of the rows to validate
+         * @param rowIndices the 0-based position of each of these rows in the animation
+         */
+        public Snapshot(String variablesText, List<String> sources, List<Integer> rowIndices) {
+            this.variablesText = variablesText;
+            this.sources = sources;
+            this.rowIndices = rowIndices;
+        }
+
+        public String getVariablesText() {
+            return variablesText;
+        }
+
+        public List<String> getSources() {
+            return sources;
+        }
+
+        public List<Integer> getRowIndices() {
+            return rowIndices;
+        }
+    }
+
+    /**
+     * The results of one validation run, keyed by trimmed source text.
+     */
+    public static class Batch {
+        private final long generation;
+        private final String variablesError;
+        private final Map<String, RowValidationResult> results;
+
+        Batch(long generation, String variablesError, Map<String, RowValidationResult> results) {
+            this.generation = generation;
+            this.variablesError = variablesError;
+            this.results = new HashMap<>(results);
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Gets the error from parsing the variables, if any.
+         *
+         * @return the error message, or null if the variables were valid
+         */
+        public String getVariablesError() {
+            return variablesError;
+        }
+
+        /**
+         * Gets the result for a row's source text.
+         *
+         * @param source the CSV text of the row
+         * @return the result, or null if the row was edited after the snapshot was taken
+         */
+        public RowValidationResult getResult(String source) {
+            return results.get(source.trim());
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package se.ryz.shiftlight;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The host side of the serial protocol spoken by shiftlight.ino, over any SerialTransport.
+ * The device answers every command with a line "OK" or "ERR: ..." and may print comment
+ * lines starting with "#" at any time; those are skipped.
+ * Progress messages go to the log set with setLog(), the client itself doesn't print.
+ */
+public class DeviceClient implements AutoCloseable {
+    public static final int BAUD_RATE = 9600;
+    public static final int RESPONSE_TIMEOUT_MS = 2000;
+    /** Time for the port to settle after opening resets the device. */
+    private static final int RESET_DELAY_MS = 100;
+    private static final int POLL_INTERVAL_MS = 10;
+    /** Ports opened so far, to count reconnects. */
+    private static final Set<String> OPENED_PORTS = ConcurrentHashMap.newKeySet();
+
+    private final SerialTransport transport;
+    private final StringBuilder pendingInput;
+    private final ProtocolTimingStats timingStats;
+    private Consumer<String> log;
+    private long bytesReceived;
+
+    private DeviceClient(SerialTransport transport, int baudRate) {
+        this.transport = transport;
+        this.pendingInput = new StringBuilder();
+        this.timingStats = new ProtocolTimingStats(baudRate);
+        this.log = message -> { };
+    }
+
+    /**
+     * Opens a transport at the firmware's baud rate and waits for the device to print READY.
+     *
+     * @param transport the transport, not yet opened
+     * @return the client for the open device
+     * @throws IOException if the port can't be opened or the device doesn't become ready
+     */
+    public static DeviceClient open(SerialTransport transport) throws IOException {
+        return open(transport, BAUD_RATE);
+    }
+
+    /**
+     * Opens a transport and waits for the device to print READY.
+     *
+     * @param transport the transport, not yet opened
+     * @param baudRate the baud rate, must match Serial.begin() in the firmware
+     * @return the client for the open device
+     * @throws IOException if the port can't be opened or the device doesn't become ready
+     */
+    public static DeviceClient open(SerialTransport transport, int baudRate) throws IOException {
+        transport.setBaudRate(baudRate);
+        // Opening the port resets an Arduino
+        if (!transport.open()) {
+            ProtocolMetrics.DEVICE_OPEN_FAILURES.increment();
+            throw new IOException("Failed to open serial port: " + transport.getName());
+        }
+        DeviceClient client = new DeviceClient(transport, baudRate);
+        try {
+            Thread.sleep(RESET_DELAY_MS);
+            client.expect("READY", RESPONSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ProtocolMetrics.DEVICE_OPEN_FAILURES.increment();
+            transport.close();
+            throw new IOException("Interrupted while waiting for " + transport.getName(), e);
+        } catch (IOException e) {
+            ProtocolMetrics.DEVICE_OPEN_FAILURES.increment();
+            transport.close();
+            throw e;
+        }
+        ProtocolMetrics.DEVICE_OPENS.increment();
+        ProtocolMetrics.OPEN_DEVICES.add(1);
+        if (!OPENED_PORTS.add(transport.getName())) {
+            ProtocolMetrics.RECONNECTS.increment();
+        }
+        return client;
+    }
+
+    /**
+     * Sets where progress messages such as each line sent during program() go.
+     * Messages are dropped until a log is set.
+     *
+     * @param log the log, e.g. System.out::println
+     */
+    public void setLog(Consumer<String> log) {
+        this.log = log;
+    }
+
+    public SerialTransport getTransport() {
+        return transport;
+    }
+
+    public String getPortName() {
+        return transport.getName();
+    }
+
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    /**
+     * Gets the timing of the commands sent with sendCommand() and program().
+     *
+     * @return the timing stats
+     */
+    public ProtocolTimingStats getTimingStats() {
+        return timingStats;
+    }
+
+    /**
+     * Gets the stream to the device, for writers that don't wait for responses such as RpmStreamSink.
+     *
+     * @return the output stream of the transport
+     */
+    public OutputStream getOutputStream() {
+        return transport.getOutputStream();
+    }
+
+    /**
+     * Checks that a shiftlight is listening: sends HELLO and waits for OK.
+     *
+     * @throws IOException if the device doesn't answer OK
+     */
+    public void hello() throws IOException {
+        log.accept("Sending HELLO...");
+        writeLine("HELLO");
+        expect("OK", RESPONSE_TIMEOUT_MS);
+        log.accept("Received OK, shiftlight connected");
+    }
+
+    /**
+     * Sends a command and waits for the device to answer OK.
+     *
+     * @param line the command, without newline
+     * @throws ProtocolException if the first line printed in response isn't OK
+     * @throws IOException if writing fails
+     */
+    public void sendCommand(String line) throws IOException {
+        ShiftlightEvents.CommandSent event = new ShiftlightEvents.CommandSent();
+        event.begin();
+        long writeStart = System.nanoTime();
+        int bytesSent = writeLine(line);
+        long writeEnd = System.nanoTime();
+        long bytesReceivedBefore = bytesReceived;
+        String response = readLine(System.currentTimeMillis() + RESPONSE_TIMEOUT_MS);
+        if (event.shouldCommit()) {
+            event.port = transport.getName();
+            event.command = line;
+            event.bytesSent = bytesSent;
+            event.bytesReceived = (int) (bytesReceived - bytesReceivedBefore);
+            event.response = response;
+            event.commit();
+        }
+        if (!"OK".equals(response)) {
+            ProtocolMetrics.recordUnexpectedResponse(response);
+            throw new ProtocolException("Expected 'OK' for line: " + line, response);
+        }
+        long ackNanos = System.nanoTime() - writeEnd;
+        timingStats.recordCommand(bytesSent, (int) (bytesReceived - bytesReceivedBefore),
+            writeEnd - writeStart, ackNanos);
+        ProtocolMetrics.ACK_LATENCY.recordNanos(ackNanos);
+    }
+
+    /**
+     * Uploads a program as produced by AnimationDocument.generateProgramOutput(), BEGIN and END included.
+     *
+     * @param programOutput the program, one command per line
+     * @throws IOException if a line isn't acknowledged
+     */
+    public void program(String programOutput) throws IOException {
+        long start = System.nanoTime();
+        try {
+            for (String line : programOutput.split("\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                log.accept("Sending: " + line);
+                sendCommand(line);
+                log.accept("Received OK for line: " + line);
+            }
+        } catch (IOException e) {
+            ProtocolMetrics.PROGRAM_FAILURES.increment();
+            throw e;
+        }
+        ProtocolMetrics.PROGRAM_UPLOADS.increment();
+        ProtocolMetrics.PROGRAM_DURATION.recordNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the program stored on the device.
+     *
+     * @return the image lines printed by LIST, with 0-based LED indices
+     * @throws IOException if the device doesn't answer as expected
+     */
+    public List<String> list() throws IOException {
+        writeLine("LIST");
+        long deadline = System.currentTimeMillis() + RESPONSE_TIMEOUT_MS;
+        String line = readLine(deadline);
+        if (!"BEGIN".equals(line)) {
+            ProtocolMetrics.recordUnexpectedResponse(line);
+            throw new ProtocolException("Expected 'BEGIN' for LIST", line);
+        }
+        List<String> images = new ArrayList<>();
+        while (!"END".equals(line = readLine(deadline))) {
+            if (line == null) {
+                ProtocolMetrics.RESPONSE_TIMEOUTS.increment();
+                throw new ProtocolException("Expected 'END' for LIST", String.join("\n", images));
+            }
+            images.add(line);
+        }
+        line = readLine(deadline);
+        if (!"OK".equals(line)) {
+            ProtocolMetrics.recordUnexpectedResponse(line);
+            throw new ProtocolException("Expected 'OK' for LIST", line);
+        }
+        return images;
+    }
+
+    /**
+     * Sends an RPM without waiting for the response, like the test slider does.
+     *
+     * @param rpm the RPM, 0-9999
+     * @throws IOException if writing fails
+     */
+    public void sendRpm(int rpm) throws IOException {
+        writeLine("rpm=" + rpm);
+        ProtocolMetrics.RPM_SENT.mark();
+    }
+
+    @Override
+    public void close() {
+        if (transport.isOpen()) {
+            transport.close();
+            ProtocolMetrics.OPEN_DEVICES.add(-1);
+        }
+    }
+
+    private int writeLine(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+        OutputStream outputStream = transport.getOutputStream();
+        outputStream.write(bytes);
+        outputStream.flush();
+        ProtocolMetrics.LINES_SENT.increment();
+        ProtocolMetrics.BYTES_SENT.add(bytes.length);
+        return bytes.length;
+    }
+
+    /**
+     * Reads lines until one equals the expected line, skipping others.
+     *
+     * @throws ProtocolException with the skipped lines if the expected line doesn't arrive in time
+     */
+    private void expect(String expected, int timeoutMs) throws ProtocolException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        StringBuilder otherLines = new StringBuilder();
+        String line;
+        while ((line = readLine(deadline)) != null) {
+            if (line.equals(expected)) {
+                return;
+            }
+            if (otherLines.length() > 0) {
+                otherLines.append("\n");
+            }
+            otherLines.append(line);
+        }
+        ProtocolMetrics.RESPONSE_TIMEOUTS.increment();
+        throw new ProtocolException("Expected '" + expected + "'", otherLines.length() > 0 ? otherLines.toString() : null);
+    }
+
+    /**
+     * Reads the next line that is neither empty nor a comment.
+     *
+     * @return the trimmed line, or null if none arrived before the deadline
+     */
+    private String readLine(long deadline) {
+        ShiftlightEvents.SerialReadWait event = new ShiftlightEvents.SerialReadWait();
+        event.begin();
+        event.timeout = deadline - System.currentTimeMillis();
+        long bytesReceivedBefore = bytesReceived;
+        String line = null;
+        try {
+            line = pollLine(deadline, event);
+            return line;
+        } finally {
+            if (event.shouldCommit()) {
+                event.port = transport.getName();
+                event.bytesRead = (int) (bytesReceived - bytesReceivedBefore);
+                event.timedOut = line == null;
+                event.commit();
+            }
+        }
+    }
+
+    private String pollLine(long deadline, ShiftlightEvents.SerialReadWait event) {
+        try {
+            while (true) {
+                int newlineIndex;
+                while ((newlineIndex = pendingInput.indexOf("\n")) >= 0) {
+                    String line = pendingInput.substring(0, newlineIndex).trim();
+                    pendingInput.delete(0, newlineIndex + 1);
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        return line;
+                    }
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    return null;
+                }
+                int available = transport.bytesAvailable();
+                if (available > 0) {
+                    byte[] buffer = new byte[available];
+                    int bytesRead = transport.read(buffer, buffer.length);
+                    if (bytesRead > 0) {
+                        bytesReceived += bytesRead;
+                        ProtocolMetrics.BYTES_RECEIVED.add(bytesRead);
+                        pendingInput.append(new String(buffer, 0, bytesRead, StandardCharsets.US_ASCII));
+                        continue;
+                    }
+                }
+                event.polls++;
+                Thread.sleep(POLL_INTERVAL_MS); // Small delay to avoid busy waiting
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
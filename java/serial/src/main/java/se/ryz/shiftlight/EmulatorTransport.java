@@ -0,0 +1,350 @@
+package se.ryz.shiftlight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A SerialTransport connected to a FirmwareEmulator instead of a device, shown as the
+ * EMULATOR port. Bytes travel at the configured baud rate, 10 bits per byte, in both
+ * directions. On the device side the transport models:
+ * <ul>
+ *   <li>the reset on open, bytes sent before the boot delay has passed are lost</li>
+ *   <li>the AVR receive buffer, bytes arriving while it is full are lost</li>
+ *   <li>the time loop() takes per received byte and a processing delay per line</li>
+ *   <li>EEPROM write time reported by the emulator</li>
+ *   <li>optional faults: dropped and corrupted bytes and dropped response lines</li>
+ * </ul>
+ * The emulator processes each byte as soon as it is written, and the timing is computed
+ * ahead; responses become readable when their last byte would have arrived. Writes block
+ * until the bytes are on the line, like a serial port without an output buffer.
+ */
+public class EmulatorTransport implements SerialTransport {
+    public static final String PORT_NAME = "EMULATOR";
+    public static final int DEFAULT_BAUD_RATE = 9600;
+    /** Serial.begin() uses a 64 byte receive buffer on AVR boards. */
+    public static final int AVR_RX_BUFFER_BYTES = 64;
+    private static final int BITS_PER_BYTE = 10;
+
+    private static EmulatorTransport shared;
+
+    private final FirmwareEmulator emulator;
+    private final OutputStream outputStream;
+    private final Deque<TimedByte> received;
+    private final Deque<Long> rxBufferConsumeTimes;
+    private int baudRate;
+    private long bootDelayNanos;
+    private long loopNanos;
+    private long lineDelayNanos;
+    private int rxBufferBytes;
+    private Faults faults;
+    private Random faultRandom;
+    private boolean open;
+    private long bootCompleteAt;
+    private long txFreeAt;
+    private long rxFreeAt;
+    private long deviceFreeAt;
+    private long sentBytes;
+    private long lostBytes;
+
+    public EmulatorTransport(FirmwareEmulator emulator) {
+        this.emulator = emulator;
+        this.outputStream = new EmulatorOutputStream();
+        this.received = new ArrayDeque<>();
+        this.rxBufferConsumeTimes = new ArrayDeque<>();
+        this.baudRate = DEFAULT_BAUD_RATE;
+        this.rxBufferBytes = AVR_RX_BUFFER_BYTES;
+        this.faults = Faults.NONE;
+        this.faultRandom = new Random(faults.seed);
+    }
+
+    /**
+     * Gets the emulator behind the EMULATOR port, shared so a program survives reopening the port.
+     *
+     * @return the shared transport
+     */
+    public static synchronized EmulatorTransport getShared() {
+        if (shared == null) {
+            shared = new EmulatorTransport(new FirmwareEmulator(DeviceProfile.DEFAULT));
+        }
+        return shared;
+    }
+
+    public FirmwareEmulator getEmulator() {
+        return emulator;
+    }
+
+    @Override
+    public String getName() {
+        return PORT_NAME;
+    }
+
+    @Override
+    public synchronized void setBaudRate(int baudRate) {
+        if (baudRate <= 0) {
+            throw new IllegalArgumentException("Baud rate must be positive, got: " + baudRate);
+        }
+        this.baudRate = baudRate;
+    }
+
+    /**
+     * Sets the time from opening the port until the firmware prints READY.
+     * An Uno's bootloader takes about 1.6 seconds.
+     *
+     * @param bootDelayMillis the boot delay
+     */
+    public synchronized void setBootDelayMillis(long bootDelayMillis) {
+        this.bootDelayNanos = checkNotNegative(bootDelayMillis, "Boot delay") * 1_000_000;
+    }
+
+    /**
+     * Sets the time one loop() iteration takes. loop() consumes one received byte per iteration.
+     *
+     * @param loopMicros the loop time
+     */
+    public synchronized void setLoopMicros(long loopMicros) {
+        this.loopNanos = checkNotNegative(loopMicros, "Loop time") * 1000;
+    }
+
+    /**
+     * Sets the extra time the device needs to process a complete line before it replies.
+     *
+     * @param lineDelayMicros the processing delay per line
+     */
+    public synchronized void setLineDelayMicros(long lineDelayMicros) {
+        this.lineDelayNanos = checkNotNegative(lineDelayMicros, "Line delay") * 1000;
+    }
+
+    public synchronized void setRxBufferBytes(int rxBufferBytes) {
+        if (rxBufferBytes < 1) {
+            throw new IllegalArgumentException("Receive buffer must hold at least 1 byte, got: " + rxBufferBytes);
+        }
+        this.rxBufferBytes = rxBufferBytes;
+    }
+
+    public synchronized void setFaults(Faults faults) {
+        this.faults = faults;
+        this.faultRandom = new Random(faults.seed);
+    }
+
+    private static long checkNotNegative(long value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative, got: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized boolean open() {
+        long now = System.nanoTime();
+        open = true;
+        received.clear();
+        rxBufferConsumeTimes.clear();
+        bootCompleteAt = now + bootDelayNanos;
+        txFreeAt = now;
+        rxFreeAt = bootCompleteAt;
+        deviceFreeAt = bootCompleteAt;
+        transmitLines(emulator.boot(), bootCompleteAt);
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        received.clear();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized int bytesAvailable() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (TimedByte timedByte : received) {
+            if (timedByte.time > now) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int length) {
+        long now = System.nanoTime();
+        int count = 0;
+        while (count < length && !received.isEmpty() && received.peekFirst().time <= now) {
+            buffer[count++] = received.pollFirst().value;
+        }
+        return count;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Gets the number of bytes written to the device.
+     *
+     * @return the bytes sent
+     */
+    public synchronized long getSentBytes() {
+        return sentBytes;
+    }
+
+    /**
+     * Gets the number of bytes the device never received: sent during boot, while its
+     * receive buffer was full or dropped by fault injection.
+     *
+     * @return the bytes lost
+     */
+    public synchronized long getLostBytes() {
+        return lostBytes;
+    }
+
+    private long byteNanos() {
+        return BITS_PER_BYTE * 1_000_000_000L / baudRate;
+    }
+
+    /**
+     * Sends bytes to the device and returns when the last one has arrived.
+     */
+    private synchronized long transmit(byte[] bytes, int offset, int length) throws IOException {
+        if (!open) {
+            throw new IOException("Port " + PORT_NAME + " is not open");
+        }
+        long arrival = Math.max(System.nanoTime(), txFreeAt);
+        for (int i = offset; i < offset + length; i++) {
+            arrival += byteNanos();
+            sentBytes++;
+            deliver(bytes[i], arrival);
+        }
+        txFreeAt = arrival;
+        return arrival;
+    }
+
+    private void deliver(byte value, long arrival) {
+        if (arrival < bootCompleteAt || faultRandom.nextDouble() < faults.dropByteProbability) {
+            lostBytes++;
+            return;
+        }
+        if (faultRandom.nextDouble() < faults.corruptByteProbability) {
+            value ^= (byte) (1 << faultRandom.nextInt(8));
+        }
+        while (!rxBufferConsumeTimes.isEmpty() && rxBufferConsumeTimes.peekFirst() <= arrival) {
+            rxBufferConsumeTimes.pollFirst();
+        }
+        if (rxBufferConsumeTimes.size() >= rxBufferBytes) {
+            lostBytes++;
+            return;
+        }
+        long consumedAt = Math.max(arrival, deviceFreeAt);
+        rxBufferConsumeTimes.addLast(consumedAt);
+        deviceFreeAt = consumedAt + loopNanos;
+
+        List<String> output = emulator.receive(value);
+        if (value == '\n' || value == '\r') {
+            long replyAt = consumedAt + lineDelayNanos + emulator.takeBusyMicros() * 1000;
+            deviceFreeAt = Math.max(deviceFreeAt, replyAt);
+            transmitLines(output, replyAt);
+        }
+    }
+
+    /**
+     * Queues lines printed with Serial.println() for the host.
+     */
+    private void transmitLines(List<String> lines, long at) {
+        long arrival = Math.max(at, rxFreeAt);
+        for (String line : lines) {
+            if (faultRandom.nextDouble() < faults.dropLineProbability) {
+                continue;
+            }
+            for (byte value : (line + "\r\n").getBytes(StandardCharsets.US_ASCII)) {
+                arrival += byteNanos();
+                received.addLast(new TimedByte(value, arrival));
+            }
+        }
+        rxFreeAt = arrival;
+    }
+
+    private static void waitUntil(long deadline) throws InterruptedIOException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing to " + PORT_NAME);
+            }
+        }
+    }
+
+    /**
+     * Faults to inject. Each probability is applied per byte or per response line, drawn
+     * from a Random with the given seed so failing runs can be repeated.
+     */
+    public static class Faults {
+        public static final Faults NONE = new Faults(0, 0, 0, 0);
+
+        private final double dropByteProbability;
+        private final double corruptByteProbability;
+        private final double dropLineProbability;
+        private final long seed;
+
+        /**
+         * @param dropByteProbability probability that a byte sent to the device is lost
+         * @param corruptByteProbability probability that a bit of a byte sent to the device flips
+         * @param dropLineProbability probability that a line printed by the device is lost
+         * @param seed seed for the fault sequence
+         */
+        public Faults(double dropByteProbability, double corruptByteProbability, double dropLineProbability, long seed) {
+            checkProbability(dropByteProbability);
+            checkProbability(corruptByteProbability);
+            checkProbability(dropLineProbability);
+            this.dropByteProbability = dropByteProbability;
+            this.corruptByteProbability = corruptByteProbability;
+            this.dropLineProbability = dropLineProbability;
+            this.seed = seed;
+        }
+
+        private static void checkProbability(double probability) {
+            if (probability < 0 || probability > 1) {
+                throw new IllegalArgumentException("Probability must be in range 0-1, got: " + probability);
+            }
+        }
+    }
+
+    private static class TimedByte {
+        private final byte value;
+        private final long time;
+
+        TimedByte(byte value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    private class EmulatorOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            waitUntil(transmit(bytes, offset, length));
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Java port of the firmware's serial protocol: readSerialLine and loop() in shiftlight.ino
+ * and the parsing, EEPROM and rendering code of Display.cpp, including their error messages
+ * and quirks. Images are stored in an emulated EEPROM laid out as described by the
+ * DeviceProfile, so a program survives a reboot like it does on the device.
+ * The emulator has no notion of time; EmulatorTransport adds serial line timing. Work the
+ * device would be busy with, i.e. EEPROM writes, is reported by takeBusyMicros().
+ */
+public class FirmwareEmulator {
+    public static final int MAX_LINE_LENGTH = 256;
+    public static final String ERROR_PREFIX = "ERR: ";
+    /** Time to write one EEPROM byte on an AVR, EEPROM.put() skips bytes that are unchanged. */
+    public static final long EEPROM_WRITE_MICROS_PER_BYTE = 3300;
+    private static final int MAX_BIT_INDEX = LedFrame.SLOT_COUNT - 1;
+    private static final int INVALID_BITMASK = 0xFFFF;
+
+    private final DeviceProfile profile;
+    private final byte[] eeprom;
+    private final List<FirmwareImage> images;
+    private final char[] inputBuffer;
+    private int inputIndex;
+    private boolean discardingLine;
+    private boolean readingImages;
+    private LedFrame colorResult;
+    private int rpm;
+    private long busyMicros;
+
+    /**
+     * Creates an emulator with erased EEPROM.
+     *
+     * @param profile the board to emulate
+     */
+    public FirmwareEmulator(DeviceProfile profile) {
+        this.profile = profile;
+        this.eeprom = new byte[profile.getEepromBytes()];
+        Arrays.fill(eeprom, (byte) 0xFF);
+        this.images = new ArrayList<>();
+        this.inputBuffer = new char[MAX_LINE_LENGTH];
+        this.colorResult = new LedFrame();
+    }
+
+    public DeviceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Runs setup(): reads the images from EEPROM, renders RPM 0 and prints READY.
+     * Receive state from before the reset is lost.
+     *
+     * @return the lines printed
+     */
+    public synchronized List<String> boot() {
+        List<String> output = new ArrayList<>();
+        inputIndex = 0;
+        discardingLine = false;
+        readingImages = false;
+        readImagesFromEeprom(output);
+        processRpm(0);
+        output.add("READY");
+        return output;
+    }
+
+    /**
+     * Feeds one received byte to readSerialLine and processes the line it completes.
+     *
+     * @param b the byte received
+     * @return the lines printed in response, usually none
+     */
+    public synchronized List<String> receive(int b) {
+        List<String> output = new ArrayList<>();
+        String line = readSerialLine((char) (b & 0xFF), output);
+        if (line != null) {
+            processLine(line, output);
+        }
+        return output;
+    }
+
+    /**
+     * Feeds a string followed by a newline, as if sent by the host.
+     *
+     * @param line the line to send
+     * @return the lines printed in response
+     */
+    public synchronized List<String> sendLine(String line) {
+        List<String> output = new ArrayList<>();
+        for (char c : (line + "\n").toCharArray()) {
+            output.addAll(receive(c));
+        }
+        return output;
+    }
+
+    /**
+     * Gets and clears the time the device spent on EEPROM writes since the last call.
+     *
+     * @return the busy time in microseconds
+     */
+    public synchronized long takeBusyMicros() {
+        long micros = busyMicros;
+        busyMicros = 0;
+        return micros;
+    }
+
+    public synchronized int getRpm() {
+        return rpm;
+    }
+
+    /**
+     * Gets the colours the strip shows for the last RPM, before blinking is applied.
+     *
+     * @return a copy of the firmware's ColorResult
+     */
+    public synchronized LedFrame getFrame() {
+        LedFrame frame = new LedFrame();
+        for (int slot = 0; slot < LedFrame.SLOT_COUNT; slot++) {
+            frame.setPacked(slot, colorResult.getPacked(slot));
+        }
+        return frame;
+    }
+
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    /**
+     * Gets a copy of the emulated EEPROM.
+     *
+     * @return the EEPROM contents
+     */
+    public synchronized byte[] getEeprom() {
+        return eeprom.clone();
+    }
+
+    private String readSerialLine(char inChar, List<String> output) {
+        if (inChar == '\n' || inChar == '\r') {
+            if (discardingLine) {
+                output.add(ERROR_PREFIX + "Line too long, discarded");
+                discardingLine = false;
+                inputIndex = 0;
+                return null;
+            }
+            if (inputIndex == 0) {
+                return null;
+            }
+            int start = 0;
+            while (start < inputIndex && (inputBuffer[start] == ' ' || inputBuffer[start] == '\t')) {
+                start++;
+            }
+            int end = inputIndex - 1;
+            while (end >= start && (inputBuffer[end] == ' ' || inputBuffer[end] == '\t')) {
+                end--;
+            }
+            int trimmedLength = end - start + 1;
+            inputIndex = 0;
+            if (trimmedLength <= 0 || inputBuffer[start] == '#') {
+                return null;
+            }
+            return new String(inputBuffer, start, trimmedLength);
+        }
+        if (discardingLine) {
+            return null;
+        }
+        if (inputIndex < MAX_LINE_LENGTH) {
+            inputBuffer[inputIndex++] = inChar;
+        } else {
+            inputIndex = 0;
+            discardingLine = true;
+        }
+        return null;
+    }
+
+    private void processLine(String line, List<String> output) {
+        if (line.startsWith("rpm=")) {
+            int value = atoi(line, 4);
+            if (value >= 0 && value <= RenderEngine.MAX_RPM) {
+                processRpm(value);
+                output.add("OK");
+            } else {
+                output.add(ERROR_PREFIX + "RPM out of range: " + value + " (valid range: 0-" + RenderEngine.MAX_RPM + ")");
+            }
+        } else if (line.equalsIgnoreCase("BEGIN")) {
+            images.clear();
+            readingImages = true;
+            output.add("OK");
+        } else if (line.equalsIgnoreCase("END")) {
+            if (readingImages) {
+                readingImages = false;
+                if (writeImagesToEeprom() < 0) {
+                    output.add(ERROR_PREFIX + "Program does not fit in EEPROM");
+                } else {
+                    output.add("OK");
+                }
+            }
+        } else if (line.equalsIgnoreCase("LIST")) {
+            output.add("BEGIN");
+            for (FirmwareImage image : images) {
+                output.add(image.toListLine());
+            }
+            output.add("END");
+            output.add("OK");
+        } else if (line.toUpperCase().contains("HELLO")) {
+            output.add("OK");
+        } else if (readingImages) {
+            FirmwareImage image = parseImage(line, output);
+            // Like Display::addImage, an image that doesn't fit the table is dropped without a reply
+            if (image != null && images.size() < profile.getMaxImages()) {
+                images.add(image);
+                output.add("OK");
+            }
+        } else {
+            output.add(ERROR_PREFIX + "Unknown command: " + line);
+        }
+    }
+
+    /**
+     * Port of Display::parseImageFromString. Returns null, after printing the error, for invalid lines.
+     */
+    private static FirmwareImage parseImage(String csv, List<String> output) {
+        int bracketStart = csv.indexOf('[');
+        int bracketEnd = csv.indexOf(']');
+        if (bracketStart < 0 || bracketEnd < 0 || bracketEnd <= bracketStart) {
+            output.add(ERROR_PREFIX + "Missing or invalid brackets");
+            return null;
+        }
+
+        FirmwareImage image = new FirmwareImage();
+        String bitmaskPart = csv.substring(bracketStart + 1, Math.min(bracketEnd, bracketStart + 1 + 127));
+        // strtok skips empty tokens
+        for (String rawToken : bitmaskPart.split(",")) {
+            if (rawToken.isEmpty()) {
+                continue;
+            }
+            String token = trimSpaces(rawToken);
+            int dash = token.indexOf('-');
+            if (dash >= 0) {
+                int rangeStart = atoi(token.substring(0, dash), 0);
+                int rangeEnd = atoi(token, dash + 1);
+                if (rangeStart < 0 || rangeStart > MAX_BIT_INDEX || rangeEnd < 0 || rangeEnd > MAX_BIT_INDEX) {
+                    output.add(ERROR_PREFIX + "Invalid bitmask range: " + rangeStart + "-" + rangeEnd);
+                    return null;
+                }
+                for (int i = Math.min(rangeStart, rangeEnd); i <= Math.max(rangeStart, rangeEnd); i++) {
+                    image.bitmask |= 1 << i;
+                }
+            } else {
+                int bitIndex = atoi(token, 0);
+                if (bitIndex < 0 || bitIndex > MAX_BIT_INDEX) {
+                    output.add(ERROR_PREFIX + "Invalid bitmask value: " + bitIndex);
+                    return null;
+                }
+                image.bitmask |= 1 << bitIndex;
+            }
+        }
+
+        int pos = bracketEnd + 1;
+        while (pos < csv.length() && (csv.charAt(pos) == ' ' || csv.charAt(pos) == '\t')) {
+            pos++;
+        }
+        if (pos < csv.length() && csv.charAt(pos) == ',') {
+            pos++;
+        }
+        int[] values = new int[11];
+        int valueIndex = 0;
+        while (pos < csv.length() && valueIndex < 11) {
+            while (pos < csv.length() && (csv.charAt(pos) == ' ' || csv.charAt(pos) == '\t')) {
+                pos++;
+            }
+            if (pos >= csv.length()) {
+                break;
+            }
+            int comma = csv.indexOf(',', pos);
+            String value = csv.substring(pos, comma >= 0 ? comma : csv.length());
+            values[valueIndex++] = atoi(value.substring(0, Math.min(value.length(), 31)), 0);
+            if (comma < 0) {
+                break;
+            }
+            pos = comma + 1;
+        }
+        if (valueIndex != 10) {
+            output.add(ERROR_PREFIX + "Invalid number of CSV values: " + valueIndex + " (expected 10)");
+            return null;
+        }
+
+        image.startRpm = values[0];
+        image.endRpm = values[1];
+        for (int i = 0; i < 6; i++) {
+            image.colors[i] = values[2 + i] & 0xFF;
+        }
+        int blinkValue = values[8];
+        if (blinkValue < 0 || blinkValue > 2) {
+            output.add(ERROR_PREFIX + "Invalid blink value: " + blinkValue + " (expected 0-2)");
+            return null;
+        }
+        image.bitmask |= blinkValue << 14;
+        int frequencyValue = values[9];
+        if (frequencyValue < 0 || frequencyValue > 255) {
+            output.add(ERROR_PREFIX + "Invalid frequency value: " + frequencyValue + " (expected 0-255)");
+            return null;
+        }
+        image.frequency = frequencyValue;
+        return image;
+    }
+
+    private static String trimSpaces(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && (s.charAt(start) == ' ' || s.charAt(start) == '\t')) {
+            start++;
+        }
+        while (end > start + 1 && (s.charAt(end - 1) == ' ' || s.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        return s.substring(start, end);
+    }
+
+    /**
+     * C atoi() from an offset: leading whitespace, an optional sign and digits, 0 if there are none.
+     * The result is truncated to a 16-bit AVR int.
+     */
+    private static int atoi(String s, int from) {
+        int pos = from;
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        boolean negative = false;
+        if (pos < s.length() && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+            negative = s.charAt(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+            value = (value * 10 + (s.charAt(pos) - '0')) & 0xFFFF_FFFFL;
+            pos++;
+        }
+        return (short) (negative ? -value : value);
+    }
+
+    private void processRpm(int rpm) {
+        this.rpm = rpm;
+        colorResult = new LedFrame();
+        for (FirmwareImage image : images) {
+            if (rpm >= image.startRpm && rpm <= image.endRpm) {
+                image.calculateColors(rpm, colorResult);
+            }
+        }
+    }
+
+    /**
+     * Port of Display::writeImagesToEEPROM.
+     *
+     * @return the number of images written, or -1 if they don't fit
+     */
+    private int writeImagesToEeprom() {
+        int intBytes = profile.getIntBytes();
+        if (intBytes + (long) images.size() * profile.getImageBytes() > eeprom.length) {
+            return -1;
+        }
+        int address = put(0, images.size(), intBytes);
+        for (FirmwareImage image : images) {
+            int imageAddress = address;
+            address = put(address, image.bitmask, intBytes);
+            address = put(address, image.startRpm, intBytes);
+            address = put(address, image.endRpm, intBytes);
+            for (int color : image.colors) {
+                address = put(address, color, 1);
+            }
+            put(address, image.frequency, 1);
+            address = imageAddress + profile.getImageBytes();
+        }
+        return images.size();
+    }
+
+    private void readImagesFromEeprom(List<String> output) {
+        images.clear();
+        int intBytes = profile.getIntBytes();
+        int readCount = get(0, intBytes);
+        if (readCount < 0 || readCount > profile.getMaxImages()
+                || intBytes + (long) readCount * profile.getImageBytes() > eeprom.length) {
+            return;
+        }
+        int address = intBytes;
+        for (int i = 0; i < readCount; i++) {
+            FirmwareImage image = new FirmwareImage();
+            image.bitmask = get(address, intBytes) & 0xFFFF;
+            image.startRpm = get(address + intBytes, intBytes);
+            image.endRpm = get(address + 2 * intBytes, intBytes);
+            for (int c = 0; c < 6; c++) {
+                image.colors[c] = eeprom[address + 3 * intBytes + c] & 0xFF;
+            }
+            image.frequency = eeprom[address + 3 * intBytes + 6] & 0xFF;
+            images.add(image);
+            address += profile.getImageBytes();
+        }
+        output.add("# Read " + readCount + " images from EEPROM");
+    }
+
+    /**
+     * Writes a little-endian value like EEPROM.put(), which only writes bytes that differ.
+     */
+    private int put(int address, int value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            byte b = (byte) (value >> (8 * i));
+            if (eeprom[address + i] != b) {
+                eeprom[address + i] = b;
+                busyMicros += EEPROM_WRITE_MICROS_PER_BYTE;
+            }
+        }
+        return address + bytes;
+    }
+
+    /**
+     * Reads a signed little-endian value.
+     */
+    private int get(int address, int bytes) {
+        int value = 0;
+        for (int i = bytes - 1; i >= 0; i--) {
+            value = (value << 8) | (eeprom[address + i] & 0xFF);
+        }
+        int shift = 32 - 8 * bytes;
+        return (value << shift) >> shift;
+    }
+
+    /**
+     * Display::Image: LED bits 0-13 and the blink rate in bits 14-15 of the bitmask.
+     */
+    private static class FirmwareImage {
+        private int bitmask;
+        private int startRpm;
+        private int endRpm;
+        private final int[] colors = new int[6];
+        private int frequency;
+
+        void calculateColors(int rpm, LedFrame result) {
+            int clamped = Math.max(startRpm, Math.min(endRpm, rpm));
+            int offset = clamped - startRpm;
+            int span = endRpm - startRpm;
+            int proportion = FixedPointKernel.proportion(offset, span);
+            int red = FixedPointKernel.interpolate(colors[0], colors[3], offset, span, proportion);
+            int green = FixedPointKernel.interpolate(colors[1], colors[4], offset, span, proportion);
+            int blue = FixedPointKernel.interpolate(colors[2], colors[5], offset, span, proportion);
+            int blinkRate = (bitmask >> 14) & 0x3;
+            for (int slot = 0; slot <= MAX_BIT_INDEX; slot++) {
+                if ((bitmask & (1 << slot)) != 0) {
+                    result.set(slot, red, green, blue, blinkRate);
+                }
+            }
+        }
+
+        /**
+         * Port of Display::printAllImages for one image.
+         */
+        String toListLine() {
+            List<Integer> bits = new ArrayList<>();
+            for (int bit = 0; bit <= MAX_BIT_INDEX; bit++) {
+                if ((bitmask & (1 << bit)) != 0) {
+                    bits.add(bit);
+                }
+            }
+            StringBuilder sb = new StringBuilder("[");
+            int i = 0;
+            while (i < bits.size()) {
+                int rangeStart = bits.get(i);
+                int rangeEnd = rangeStart;
+                while (i + 1 < bits.size() && bits.get(i + 1) == rangeEnd + 1) {
+                    rangeEnd = bits.get(++i);
+                }
+                i++;
+                if (sb.length() > 1) {
+                    sb.append(",");
+                }
+                if (rangeStart == rangeEnd) {
+                    sb.append(rangeStart);
+                } else if (rangeEnd == rangeStart + 1) {
+                    sb.append(rangeStart).append(",").append(rangeEnd);
+                } else {
+                    sb.append(rangeStart).append("-").append(rangeEnd);
+                }
+            }
+            sb.append("],").append(startRpm).append(",").append(endRpm);
+            for (int color : colors) {
+                sb.append(",").append(color);
+            }
+            sb.append(",").append((bitmask >> 14) & 0x3).append(",").append(frequency);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package se.ryz.shiftlight;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortInvalidPortException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A SerialTransport over a serial port, using jSerialComm.
+ */
+public class JSerialCommTransport implements SerialTransport {
+    private final SerialPort port;
+
+    /**
+     * Creates a transport for a serial port.
+     *
+     * @param portName the system port name or path
+     * @throws IOException if there is no port by that name
+     */
+    public JSerialCommTransport(String portName) throws IOException {
+        try {
+            this.port = SerialPort.getCommPort(portName);
+        } catch (SerialPortInvalidPortException e) {
+            throw new IOException("Invalid serial port: " + portName, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return port.getSystemPortName();
+    }
+
+    @Override
+    public void setBaudRate(int baudRate) {
+        port.setBaudRate(baudRate);
+    }
+
+    @Override
+    public boolean open() {
+        return port.openPort();
+    }
+
+    @Override
+    public void close() {
+        port.closePort();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+    @Override
+    public int bytesAvailable() {
+        return port.bytesAvailable();
+    }
+
+    @Override
+    public int read(byte[] buffer, int length) {
+        return port.readBytes(buffer, length);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return port.getOutputStream();
+    }
+}
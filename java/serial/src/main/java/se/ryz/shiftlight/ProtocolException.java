@@ -0,0 +1,28 @@
+package se.ryz.shiftlight;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a shiftlight doesn't answer as the serial protocol expects.
+ */
+public class ProtocolException extends IOException {
+    private final String response;
+
+    /**
+     * @param message what was expected
+     * @param response what the device printed instead, null if it printed nothing
+     */
+    public ProtocolException(String message, String response) {
+        super(message + ", received: " + (response == null ? "(no response)" : response));
+        this.response = response;
+    }
+
+    /**
+     * Gets the lines the device printed instead of the expected response.
+     *
+     * @return the response, or null if the device printed nothing
+     */
+    public String getResponse() {
+        return response;
+    }
+}
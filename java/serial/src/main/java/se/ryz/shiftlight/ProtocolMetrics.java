@@ -0,0 +1,59 @@
+package se.ryz.shiftlight;
+
+/**
+ * Metrics of all traffic to shiftlight devices, across DeviceClient instances, published
+ * over JMX as se.ryz.shiftlight:type=Protocol. Unlike ProtocolTimingStats, which times the
+ * commands of one client, these survive reconnects and cover the whole run.
+ */
+public final class ProtocolMetrics {
+    public static final String OBJECT_NAME = "se.ryz.shiftlight:type=Protocol";
+    /** Seconds between text dumps of the metrics to System.out, off when 0. */
+    public static final String DUMP_SECONDS_PROPERTY = "shiftlight.metrics.dumpSeconds";
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry(OBJECT_NAME);
+
+    static final MetricsRegistry.Counter DEVICE_OPENS = REGISTRY.counter("DeviceOpens");
+    static final MetricsRegistry.Counter DEVICE_OPEN_FAILURES = REGISTRY.counter("DeviceOpenFailures");
+    /** Opens of a port that was opened before in this run. */
+    static final MetricsRegistry.Counter RECONNECTS = REGISTRY.counter("Reconnects");
+    static final MetricsRegistry.Gauge OPEN_DEVICES = REGISTRY.gauge("OpenDevices");
+    static final MetricsRegistry.Counter LINES_SENT = REGISTRY.counter("LinesSent");
+    static final MetricsRegistry.Counter BYTES_SENT = REGISTRY.counter("BytesSent");
+    static final MetricsRegistry.Counter BYTES_RECEIVED = REGISTRY.counter("BytesReceived");
+    static final MetricsRegistry.Counter RESPONSE_TIMEOUTS = REGISTRY.counter("ResponseTimeouts");
+    static final MetricsRegistry.Counter ERR_RESPONSES = REGISTRY.counter("ErrResponses");
+    static final MetricsRegistry.Histogram ACK_LATENCY = REGISTRY.histogram("AckLatency");
+    static final MetricsRegistry.Counter PROGRAM_UPLOADS = REGISTRY.counter("ProgramUploads");
+    static final MetricsRegistry.Counter PROGRAM_FAILURES = REGISTRY.counter("ProgramFailures");
+    static final MetricsRegistry.Histogram PROGRAM_DURATION = REGISTRY.histogram("ProgramDuration");
+    static final MetricsRegistry.Meter RPM_SENT = REGISTRY.meter("RpmSent");
+    static final MetricsRegistry.Counter RPM_SEND_ERRORS = REGISTRY.counter("RpmSendErrors");
+
+    private ProtocolMetrics() {
+    }
+
+    /**
+     * Registers the MBean and, if the system property shiftlight.metrics.dumpSeconds is
+     * positive, starts dumping the metrics to System.out at that period.
+     */
+    public static void install() {
+        REGISTRY.registerMBean();
+        long dumpSeconds = Long.getLong(DUMP_SECONDS_PROPERTY, 0);
+        if (dumpSeconds > 0) {
+            REGISTRY.startPeriodicDump(dumpSeconds, System.out);
+        }
+    }
+
+    /**
+     * Counts a response that wasn't the expected one.
+     *
+     * @param response the line read, null on timeout
+     */
+    static void recordUnexpectedResponse(String response) {
+        if (response == null) {
+            RESPONSE_TIMEOUTS.increment();
+        } else if (response.startsWith("ERR")) {
+            ERR_RESPONSES.increment();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package se.ryz.shiftlight;
+
+import java.util.Arrays;
+
+/**
+ * Timing of the commands a DeviceClient sent: how long each write took and how long the
+ * device took to acknowledge it. The time the bytes need on the line follows from the
+ * byte counts and the baud rate; the rest of the elapsed time was spent waiting for the
+ * device, or for the host to notice its answer. The most recent acknowledgements are
+ * kept for percentiles. Thread safe.
+ */
+public class ProtocolTimingStats {
+    private static final int MAX_SAMPLES = 1 << 16;
+    private static final int BITS_PER_BYTE = 10;
+
+    private final int baudRate;
+    private final long[] ackNanos;
+    private long commandCount;
+    private long bytesSent;
+    private long bytesReceived;
+    private long totalWriteNanos;
+    private long totalAckNanos;
+
+    /**
+     * @param baudRate the baud rate of the line, used to compute the time on the line
+     */
+    public ProtocolTimingStats(int baudRate) {
+        this.baudRate = baudRate;
+        this.ackNanos = new long[MAX_SAMPLES];
+    }
+
+    /**
+     * Records an acknowledged command.
+     *
+     * @param bytesSent bytes of the command, including the newline
+     * @param bytesReceived bytes of the response, including comment lines
+     * @param writeNanos time spent writing the command
+     * @param ackNanos time from the end of the write until the response was read
+     */
+    public synchronized void recordCommand(int bytesSent, int bytesReceived, long writeNanos, long ackNanos) {
+        this.ackNanos[(int) (commandCount % MAX_SAMPLES)] = ackNanos;
+        commandCount++;
+        this.bytesSent += bytesSent;
+        this.bytesReceived += bytesReceived;
+        totalWriteNanos += writeNanos;
+        totalAckNanos += ackNanos;
+    }
+
+    public synchronized void reset() {
+        commandCount = 0;
+        bytesSent = 0;
+        bytesReceived = 0;
+        totalWriteNanos = 0;
+        totalAckNanos = 0;
+    }
+
+    public synchronized long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Gets the time from the start of the first write to the last response, summed over commands.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public synchronized double getElapsedMillis() {
+        return (totalWriteNanos + totalAckNanos) / 1_000_000.0;
+    }
+
+    /**
+     * Gets the time the bytes sent and received need on the line at the baud rate.
+     *
+     * @return the line time in milliseconds
+     */
+    public synchronized double getLineMillis() {
+        return (bytesSent + bytesReceived) * BITS_PER_BYTE * 1000.0 / baudRate;
+    }
+
+    /**
+     * Gets the elapsed time not explained by bytes on the line.
+     *
+     * @return the waiting time in milliseconds
+     */
+    public synchronized double getWaitMillis() {
+        return Math.max(0, getElapsedMillis() - getLineMillis());
+    }
+
+    /**
+     * Gets a percentile of the acknowledgement latency.
+     *
+     * @param percentile the percentile, 0-100
+     * @return the latency in milliseconds, 0 if no command was recorded
+     */
+    public synchronized double getAckPercentileMillis(double percentile) {
+        int count = (int) Math.min(commandCount, MAX_SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(ackNanos, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+
+    /**
+     * Describes the stats on one line for logs.
+     *
+     * @return e.g. "42 commands in 1650 ms: 1500 ms on the line at 9600 baud, 150 ms waiting, ack p50/p95/p99 31/45/52 ms"
+     */
+    public synchronized String describe() {
+        return String.format("%d commands in %.0f ms: %.0f ms on the line at %d baud, %.0f ms waiting, ack p50/p95/p99 %.1f/%.1f/%.1f ms",
+            commandCount, getElapsedMillis(), getLineMillis(), baudRate, getWaitMillis(),
+            getAckPercentileMillis(50), getAckPercentileMillis(95), getAckPercentileMillis(99));
+    }
+}
@@ -0,0 +1,97 @@
+package se.ryz.shiftlight;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the RPM of a playback to a device as "rpm=" commands, like TestDialog does
+ * for its slider. Writes happen on a separate thread so a slow serial line never stalls
+ * the playback; while a write is in progress only the latest RPM is kept, and an RPM
+ * equal to the last one sent is not sent again.
+ */
+public class RpmStreamSink implements PlaybackEngine.FrameSink, AutoCloseable {
+    private final OutputStream outputStream;
+    private final ExecutorService writer;
+    private final AtomicInteger pendingRpm;
+    private final AtomicBoolean writeScheduled;
+    private int lastSentRpm;
+    private volatile long sentCount;
+    private volatile long skippedCount;
+
+    /**
+     * @param outputStream the output stream of an open serial port
+     */
+    public RpmStreamSink(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "shiftlight-rpm-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingRpm = new AtomicInteger();
+        this.writeScheduled = new AtomicBoolean();
+        this.lastSentRpm = -1;
+    }
+
+    @Override
+    public void frameRendered(long traceTimeMicros, int rpm, LedFrame frame) {
+        pendingRpm.set(rpm);
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.execute(this::writePending);
+        } else {
+            skippedCount++;
+        }
+    }
+
+    private void writePending() {
+        writeScheduled.set(false);
+        int rpm = pendingRpm.get();
+        if (rpm == lastSentRpm) {
+            return;
+        }
+        try {
+            byte[] bytes = ("rpm=" + rpm + "\n").getBytes(StandardCharsets.US_ASCII);
+            outputStream.write(bytes);
+            outputStream.flush();
+            lastSentRpm = rpm;
+            sentCount++;
+            ProtocolMetrics.LINES_SENT.increment();
+            ProtocolMetrics.BYTES_SENT.add(bytes.length);
+            ProtocolMetrics.RPM_SENT.mark();
+        } catch (IOException e) {
+            ProtocolMetrics.RPM_SEND_ERRORS.increment();
+            System.err.println("Error sending RPM value: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of "rpm=" commands written.
+     *
+     * @return the number of commands
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Gets the number of RPMs replaced by a newer one before they could be written.
+     *
+     * @return the number of skipped RPMs
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Stops the writer thread. The output stream is not closed.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package se.ryz.shiftlight;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The byte stream to a shiftlight: a real serial port or the in-process FirmwareEmulator.
+ * Mirrors the part of jSerialComm's SerialPort the application uses.
+ */
+public interface SerialTransport {
+
+    /**
+     * Gets a transport for a name shown in the SerialPortComboBox.
+     *
+     * @param portName a system port name, or EmulatorTransport.PORT_NAME
+     * @return the transport, not yet opened
+     * @throws IOException if there is no port by that name
+     */
+    static SerialTransport forPortName(String portName) throws IOException {
+        if (EmulatorTransport.PORT_NAME.equals(portName)) {
+            return EmulatorTransport.getShared();
+        }
+        return new JSerialCommTransport(portName);
+    }
+
+    /**
+     * Lists the names forPortName() accepts: the system's serial ports and the emulator.
+     *
+     * @return the port names, the emulator last
+     */
+    static List<String> getPortNames() {
+        List<String> names = new ArrayList<>();
+        for (SerialPort port : SerialPort.getCommPorts()) {
+            names.add(port.getSystemPortName());
+        }
+        // In-process firmware emulator, for trying the protocol without a device
+        names.add(EmulatorTransport.PORT_NAME);
+        return names;
+    }
+
+    String getName();
+
+    void setBaudRate(int baudRate);
+
+    /**
+     * Opens the transport. Opening resets the device, which then prints READY.
+     *
+     * @return true if the transport was opened
+     */
+    boolean open();
+
+    void close();
+
+    boolean isOpen();
+
+    /**
+     * Gets the number of received bytes that can be read without blocking.
+     *
+     * @return the number of bytes available
+     */
+    int bytesAvailable();
+
+    /**
+     * Reads received bytes without blocking.
+     *
+     * @param buffer the buffer to read into
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read
+     */
+    int read(byte[] buffer, int length);
+
+    OutputStream getOutputStream();
+}
@@ -0,0 +1,140 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmulatorTransportTest {
+    private static final int BAUD_RATE = 115200;
+
+    private final EmulatorTransport transport = new EmulatorTransport(new FirmwareEmulator(DeviceProfile.DEFAULT));
+
+    private void write(String text) throws IOException {
+        OutputStream outputStream = transport.getOutputStream();
+        outputStream.write(text.getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+    }
+
+    /**
+     * Reads the lines that arrive within a time limit.
+     */
+    private List<String> readLines(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        StringBuilder text = new StringBuilder();
+        while (System.currentTimeMillis() < deadline) {
+            byte[] buffer = new byte[256];
+            int count = transport.read(buffer, buffer.length);
+            text.append(new String(buffer, 0, count, StandardCharsets.US_ASCII));
+            Thread.sleep(1);
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : text.toString().split("\r\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void uploadsAndListsAProgramWithDeviceClient() throws IOException {
+        List<Image> images = List.of(
+            new Image("[1-13],0,4999,0,0,40,0,0,255,0"),
+            new Image("[12,13],5000,9999,255,0,0,255,0,0,2,50"));
+        String program = DeviceProgram.build(images, List.of(images.get(0).toProgramLine(), images.get(1).toProgramLine()))
+            .getProgramOutput();
+        List<String> log = new ArrayList<>();
+        try (DeviceClient device = DeviceClient.open(transport, BAUD_RATE)) {
+            device.setLog(log::add);
+            device.hello();
+            device.program(program);
+            assertEquals(List.of("[0-12],0,4999,0,0,40,0,0,255,0,0", "[11,12],5000,9999,255,0,0,255,0,0,2,50"), device.list());
+            device.sendCommand("rpm=6000");
+            assertEquals(5, device.getTimingStats().getCommandCount());
+        }
+        assertEquals(6000, transport.getEmulator().getRpm());
+        assertEquals("Sending HELLO...", log.get(0));
+        assertEquals("Received OK for line: END", log.get(log.size() - 1));
+        assertEquals(0, transport.getLostBytes());
+        assertFalse(transport.isOpen());
+    }
+
+    @Test
+    void reportsErrResponsesAsProtocolExceptions() throws IOException {
+        try (DeviceClient device = DeviceClient.open(transport, BAUD_RATE)) {
+            ProtocolException e = assertThrows(ProtocolException.class, () -> device.sendCommand("rpm=12000"));
+            assertEquals("ERR: RPM out of range: 12000 (valid range: 0-9999)", e.getResponse());
+            ProtocolException badImage = assertThrows(ProtocolException.class, () -> device.program("BEGIN\n[1],0,1\nEND"));
+            assertEquals("ERR: Invalid number of CSV values: 2 (expected 10)", badImage.getResponse());
+        }
+    }
+
+    @Test
+    void losesBytesSentDuringBoot() throws Exception {
+        transport.setBaudRate(BAUD_RATE);
+        transport.setBootDelayMillis(200);
+        transport.open();
+        write("HELLO\n");
+        assertEquals(6, transport.getLostBytes());
+        assertEquals(List.of("READY"), readLines(300));
+        write("HELLO\n");
+        assertEquals(List.of("OK"), readLines(50));
+    }
+
+    @Test
+    void losesBytesWhileTheReceiveBufferIsFull() throws Exception {
+        transport.setBaudRate(BAUD_RATE);
+        transport.setLoopMicros(1000);
+        transport.open();
+        String command = "rpm=1234" + " ".repeat(100) + "\n";
+        write(command);
+        assertTrue(transport.getLostBytes() > 0, "Lost " + transport.getLostBytes());
+        assertEquals(command.length(), transport.getSentBytes());
+
+        // The same line fits when loop() keeps up with the baud rate
+        EmulatorTransport fast = new EmulatorTransport(new FirmwareEmulator(DeviceProfile.DEFAULT));
+        fast.setBaudRate(BAUD_RATE);
+        fast.open();
+        fast.getOutputStream().write(command.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(0, fast.getLostBytes());
+        assertEquals(1234, fast.getEmulator().getRpm());
+    }
+
+    @Test
+    void injectsFaultsReproducibly() throws Exception {
+        transport.setBaudRate(BAUD_RATE);
+        transport.setFaults(new EmulatorTransport.Faults(1, 0, 0, 1));
+        transport.open();
+        write("HELLO\n");
+        assertEquals(6, transport.getLostBytes());
+        assertEquals(List.of("READY"), readLines(20));
+
+        transport.setFaults(new EmulatorTransport.Faults(0, 0, 1, 1));
+        write("HELLO\n");
+        assertEquals(List.of(), readLines(20));
+
+        List<List<String>> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            transport.setFaults(new EmulatorTransport.Faults(0, 0.05, 0, 42));
+            StringBuilder commands = new StringBuilder();
+            for (int rpm = 1000; rpm < 1100; rpm++) {
+                commands.append("rpm=").append(rpm).append('\n');
+            }
+            write(commands.toString());
+            runs.add(readLines(100));
+        }
+        assertEquals(runs.get(0), runs.get(1));
+        assertTrue(runs.get(0).stream().anyMatch(line -> !line.equals("OK")), "Some corrupted lines should fail");
+
+        assertThrows(IllegalArgumentException.class, () -> new EmulatorTransport.Faults(1.5, 0, 0, 0));
+    }
+}
@@ -0,0 +1,93 @@
+package se.ryz.shiftlight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FirmwareEmulatorTest {
+    private static final List<Image> IMAGES = List.of(
+        new Image("[1-3],1000,2000,255,0,0,0,0,255,0"),
+        new Image("[2,13],1500,9999,0,255,0,0,255,0,1,100"));
+
+    private final FirmwareEmulator emulator = new FirmwareEmulator(DeviceProfile.DEFAULT);
+
+    private void upload(List<Image> images) {
+        assertEquals(List.of("OK"), emulator.sendLine("BEGIN"));
+        for (Image image : images) {
+            assertEquals(List.of("OK"), emulator.sendLine(image.toProgramLine()));
+        }
+        assertEquals(List.of("OK"), emulator.sendLine("END"));
+    }
+
+    @Test
+    void bootsWithErasedEepromAndAnswersHello() {
+        assertEquals(List.of("READY"), emulator.boot());
+        assertEquals(List.of("OK"), emulator.sendLine("HELLO"));
+        assertEquals(List.of("OK"), emulator.sendLine("  hello shiftlight\t"));
+        assertEquals(List.of("BEGIN", "END", "OK"), emulator.sendLine("LIST"));
+    }
+
+    @Test
+    void listsTheUploadedProgramAfterAReboot() {
+        emulator.boot();
+        upload(IMAGES);
+        List<String> listed = emulator.sendLine("LIST");
+        assertEquals(List.of("BEGIN", "[0-2],1000,2000,255,0,0,0,0,255,0,0", "[1,12],1500,9999,0,255,0,0,255,0,1,100", "END", "OK"), listed);
+
+        assertEquals(List.of("# Read 2 images from EEPROM", "READY"), emulator.boot());
+        assertEquals(listed, emulator.sendLine("LIST"));
+        assertEquals(2, emulator.getImageCount());
+    }
+
+    @Test
+    void rendersTheSameFramesAsTheHost() {
+        emulator.boot();
+        upload(IMAGES);
+        RenderEngine engine = new RenderEngine(IMAGES);
+        for (int rpm = 0; rpm <= RenderEngine.MAX_RPM; rpm += 50) {
+            assertEquals(List.of("OK"), emulator.sendLine("rpm=" + rpm));
+            assertEquals(rpm, emulator.getRpm());
+            assertEquals(engine.render(rpm).toString(), emulator.getFrame().toString(), "Frame at " + rpm + " RPM");
+        }
+    }
+
+    @Test
+    void reportsErrorsLikeTheFirmware() {
+        emulator.boot();
+        assertEquals(List.of("ERR: RPM out of range: 10000 (valid range: 0-9999)"), emulator.sendLine("rpm=10000"));
+        assertEquals(List.of("ERR: RPM out of range: -1 (valid range: 0-9999)"), emulator.sendLine("rpm=-1"));
+        assertEquals(List.of("ERR: Unknown command: [1],0,1,0,0,0,0,0,0,0"), emulator.sendLine("[1],0,1,0,0,0,0,0,0,0"));
+        assertEquals(List.of(), emulator.sendLine("# comment"));
+
+        emulator.sendLine("BEGIN");
+        assertEquals(List.of("ERR: Missing or invalid brackets"), emulator.sendLine("1,0,1,0,0,0,0,0,0,0"));
+        assertEquals(List.of("ERR: Invalid bitmask value: 14"), emulator.sendLine("[14],0,1,0,0,0,0,0,0,0"));
+        assertEquals(List.of("ERR: Invalid number of CSV values: 9 (expected 10)"), emulator.sendLine("[1],0,1,0,0,0,0,0,0,0"));
+        assertEquals(List.of("ERR: Invalid blink value: 3 (expected 0-2)"), emulator.sendLine("[1],0,1,0,0,0,0,0,0,3,0"));
+        assertEquals(List.of("OK"), emulator.sendLine("END"));
+        assertEquals(0, emulator.getImageCount());
+    }
+
+    @Test
+    void discardsLinesLongerThanTheInputBuffer() {
+        emulator.boot();
+        String tooLong = "HELLO" + " ".repeat(FirmwareEmulator.MAX_LINE_LENGTH);
+        assertEquals(List.of("ERR: Line too long, discarded"), emulator.sendLine(tooLong));
+        assertEquals(List.of("OK"), emulator.sendLine("HELLO"));
+    }
+
+    @Test
+    void dropsImagesThatDontFitTheTable() {
+        emulator.boot();
+        emulator.sendLine("BEGIN");
+        int maxImages = DeviceProfile.DEFAULT.getMaxImages();
+        for (int i = 0; i < maxImages; i++) {
+            assertEquals(List.of("OK"), emulator.sendLine("[1],0," + i + ",0,0,0,0,0,0,0,0"));
+        }
+        assertEquals(List.of(), emulator.sendLine("[1],0,9999,0,0,0,0,0,0,0,0"));
+        assertEquals(List.of("OK"), emulator.sendLine("END"));
+        assertEquals(maxImages, emulator.getImageCount());
+    }
+}
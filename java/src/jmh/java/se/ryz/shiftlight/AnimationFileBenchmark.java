@@ -0,0 +1,74 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an animation file: reading and splitting it into sections, and compiling its rows
+ * as the Load button does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnimationFileBenchmark {
+    @Param({"10", "50", "1000"})
+    public int imageCount;
+
+    private File file;
+    private List<String> fileLines;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("shiftlight-benchmark", ".txt");
+        new AnimationFile(Arrays.asList(BenchmarkPrograms.VARIABLES_TEXT.split("\n")),
+            BenchmarkPrograms.csvLines(imageCount, true)).save(file);
+        fileLines = Files.readAllLines(file.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public AnimationFile parse() {
+        return AnimationFile.parse(fileLines);
+    }
+
+    @Benchmark
+    public AnimationFile load() throws IOException {
+        return AnimationFile.load(file);
+    }
+
+    @Benchmark
+    public List<Image> loadAndCompile() throws IOException {
+        AnimationFile animationFile = AnimationFile.load(file);
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(animationFile.getVariablesText());
+        for (String csvLine : animationFile.getCsvLines()) {
+            document.addRow(csvLine);
+        }
+        document.compileStaleRows();
+        return document.getCompiledImages();
+    }
+}
@@ -0,0 +1,70 @@
+package se.ryz.shiftlight;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Programs used by the benchmarks. Rows differ in LEDs, RPM range and colours so that
+ * nothing is hidden or merged when the program is generated, like a hand-written program.
+ */
+final class BenchmarkPrograms {
+    static final String VARIABLES_TEXT = "idle=900\nshift=6500\nlimit=7200\nredline=7500\nstep=25";
+    static final String PLAIN_CSV_LINE = "[1,2,3-6,9],3000,6500,0,255,0,255,0,0,1,128";
+    static final String VARIABLE_CSV_LINE = "[1,2,3-6,9],idle+step*4,(shift+limit)/2,0,255,0,255,0,0,1,128";
+
+    private BenchmarkPrograms() {
+    }
+
+    /**
+     * Creates rows with the CSV syntax the editor accepts.
+     *
+     * @param count the number of rows
+     * @param withVariables whether RPMs are written as expressions over VARIABLES_TEXT
+     * @return the rows
+     */
+    static List<String> csvLines(int count, boolean withVariables) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int led = i % DeviceProfile.FIRMWARE_LED_COUNT + 1;
+            // Ranges of rows sharing an LED never touch, so rows can't be merged
+            int startRpm = (i * 9) % (RenderEngine.MAX_RPM - 8);
+            int endRpm = startRpm + 7;
+            // Variable names may contain "-", so variables are only followed by other operators
+            String start = withVariables ? "idle*0+" + startRpm : String.valueOf(startRpm);
+            String end = withVariables ? "(step*2+" + endRpm + ")-step*2" : String.valueOf(endRpm);
+            lines.add("[" + led + "]," + start + "," + end
+                + "," + (i % 256) + ",0," + (255 - i % 256) + ",255," + (i % 128) + ",0,0");
+        }
+        return lines;
+    }
+
+    /**
+     * Creates a document with compiled rows.
+     *
+     * @param count the number of rows
+     * @return the document
+     */
+    static AnimationDocument document(int count) {
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(VARIABLES_TEXT);
+        for (String line : csvLines(count, false)) {
+            document.addRow(line);
+        }
+        document.compileStaleRows();
+        return document;
+    }
+
+    /**
+     * Builds an expression nesting parentheses to a depth, e.g. ((idle+step)*2) for depth 2.
+     *
+     * @param depth the nesting depth
+     * @return the expression
+     */
+    static String nestedExpression(int depth) {
+        String expression = "idle";
+        for (int level = 0; level < depth; level++) {
+            expression = "(" + expression + (level % 2 == 0 ? "+step" : "*2") + ")";
+        }
+        return expression;
+    }
+}
@@ -0,0 +1,44 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of RPM expressions with variables at increasing parenthesis nesting depths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpressionBenchmark {
+    @Param({"0", "1", "4", "16"})
+    public int depth;
+
+    private VariableParser variableParser;
+    private String expression;
+
+    @Setup
+    public void setUp() {
+        variableParser = new VariableParser();
+        variableParser.parseVariables(BenchmarkPrograms.VARIABLES_TEXT);
+        expression = BenchmarkPrograms.nestedExpression(depth);
+    }
+
+    @Benchmark
+    public int evaluateExpression() {
+        return variableParser.evaluateExpression(expression);
+    }
+}
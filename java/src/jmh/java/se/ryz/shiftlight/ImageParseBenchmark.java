@@ -0,0 +1,63 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a single CSV row into an Image and formatting it back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageParseBenchmark {
+    private VariableParser variableParser;
+    private Image image;
+    private List<Integer> ledIndices;
+
+    @Setup
+    public void setUp() {
+        variableParser = new VariableParser();
+        variableParser.parseVariables(BenchmarkPrograms.VARIABLES_TEXT);
+        image = new Image(BenchmarkPrograms.PLAIN_CSV_LINE);
+        ledIndices = image.getLedIndices();
+    }
+
+    @Benchmark
+    public Image parsePlainCsv() {
+        return new Image(BenchmarkPrograms.PLAIN_CSV_LINE);
+    }
+
+    @Benchmark
+    public Image parseCsvWithVariables() {
+        return new Image(BenchmarkPrograms.VARIABLE_CSV_LINE, variableParser);
+    }
+
+    @Benchmark
+    public String toCsvLine() {
+        return image.toCsvLine();
+    }
+
+    @Benchmark
+    public String toProgramLine() {
+        return image.toProgramLine();
+    }
+
+    @Benchmark
+    public String formatLedIndices() {
+        return Image.formatLedIndices(ledIndices, 0);
+    }
+}
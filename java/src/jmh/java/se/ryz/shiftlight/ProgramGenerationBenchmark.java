@@ -0,0 +1,56 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the program sent by the Program button, with and without compiling the rows first.
+ * The firmware takes at most 40 images; 1000 shows how generation scales.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgramGenerationBenchmark {
+    @Param({"10", "50", "1000"})
+    public int imageCount;
+
+    private AnimationDocument compiledDocument;
+    private List<String> csvLines;
+
+    @Setup
+    public void setUp() {
+        compiledDocument = BenchmarkPrograms.document(imageCount);
+        csvLines = BenchmarkPrograms.csvLines(imageCount, true);
+    }
+
+    @Benchmark
+    public String generateProgramOutput() {
+        return compiledDocument.generateProgramOutput();
+    }
+
+    @Benchmark
+    public String compileAndGenerateProgramOutput() {
+        AnimationDocument document = new AnimationDocument();
+        document.setVariablesText(BenchmarkPrograms.VARIABLES_TEXT);
+        for (String csvLine : csvLines) {
+            document.addRow(csvLine);
+        }
+        document.compileStaleRows();
+        return document.generateProgramOutput();
+    }
+}
@@ -0,0 +1,81 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained rate of "rpm=" commands sent without waiting for the OK, like the test slider
+ * and trace playback do, to the firmware emulator. When commands arrive faster than loop()
+ * consumes them the AVR receive buffer overflows; lostBytes counts the bytes the device
+ * never saw, summed over all measured iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RpmStreamBenchmark {
+    @Param({"9600", "115200"})
+    public int baudRate;
+
+    private EmulatorTransport transport;
+    private DeviceClient device;
+    private byte[] readBuffer;
+    private int rpm;
+
+    @Setup
+    public void setUp() throws IOException {
+        transport = new EmulatorTransport(new FirmwareEmulator(DeviceProfile.DEFAULT));
+        transport.setLoopMicros(SerialUploadBenchmark.UNO_LOOP_MICROS);
+        device = DeviceClient.open(transport, baudRate);
+        readBuffer = new byte[1024];
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class StreamLoss {
+        public long lostBytes;
+        private long lostBytesAtStart;
+
+        @Setup(Level.Iteration)
+        public void reset(RpmStreamBenchmark benchmark) {
+            lostBytesAtStart = benchmark.transport.getLostBytes();
+        }
+
+        void update(EmulatorTransport transport) {
+            lostBytes = transport.getLostBytes() - lostBytesAtStart;
+        }
+    }
+
+    @Benchmark
+    public void sendRpm(StreamLoss loss) throws IOException {
+        rpm = (rpm + 37) % (RenderEngine.MAX_RPM + 1);
+        device.sendRpm(rpm);
+        // Discard the OKs so they don't pile up
+        while (transport.bytesAvailable() > 0) {
+            transport.read(readBuffer, readBuffer.length);
+        }
+        loss.update(transport);
+    }
+}
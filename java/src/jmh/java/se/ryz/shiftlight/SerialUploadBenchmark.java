@@ -0,0 +1,104 @@
+package se.ryz.shiftlight;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploading a program through DeviceClient to the firmware emulator at the baud rate the
+ * firmware uses and at 115200 baud. The emulator paces bytes like a serial line and takes
+ * UNO_LOOP_MICROS per received byte like loop() does.
+ * <ul>
+ *   <li>upload: wall time of a whole program, HELLO to END. The aux counters split it into
+ *   time the bytes need on the line and time spent waiting; they are totals over all
+ *   measured uploads, divide by uploads for per-upload values.</li>
+ *   <li>ackLatency: sampled time from sending one program line to reading its OK,
+ *   reported as percentiles.</li>
+ * </ul>
+ */
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerialUploadBenchmark {
+    /** Rough time of one loop() iteration on an Uno, mostly strip.show() for 13 LEDs. */
+    static final long UNO_LOOP_MICROS = 450;
+
+    @Param({"9600", "115200"})
+    public int baudRate;
+
+    @Param({"10", "40"})
+    public int imageCount;
+
+    private DeviceClient device;
+    private String[] programLines;
+    private int nextLine;
+
+    @Setup
+    public void setUp() throws IOException {
+        EmulatorTransport transport = new EmulatorTransport(new FirmwareEmulator(DeviceProfile.DEFAULT));
+        transport.setLoopMicros(UNO_LOOP_MICROS);
+        device = DeviceClient.open(transport, baudRate);
+        programLines = BenchmarkPrograms.document(imageCount).generateProgramOutput().split("\n");
+    }
+
+    @TearDown
+    public void tearDown() {
+        device.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class UploadTiming {
+        public long uploads;
+        public double lineMillis;
+        public double waitMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            uploads = 0;
+            lineMillis = 0;
+            waitMillis = 0;
+        }
+    }
+
+    /**
+     * The same commands as Shiftlight.programToShiftlight, without its logging.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void upload(UploadTiming timing) throws IOException {
+        ProtocolTimingStats stats = device.getTimingStats();
+        stats.reset();
+        device.sendCommand("HELLO");
+        for (String line : programLines) {
+            device.sendCommand(line);
+        }
+        timing.uploads++;
+        timing.lineMillis += stats.getLineMillis();
+        timing.waitMillis += stats.getWaitMillis();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void ackLatency() throws IOException {
+        device.sendCommand(programLines[nextLine]);
+        nextLine = (nextLine + 1) % programLines.length;
+    }
+}